@@ -0,0 +1,33 @@
+package benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmark suite once per thread count with GC allocation profiling enabled.
+ * <p>
+ * Usage: {@code BenchmarkRunner [include-regex] [thread-counts]}, for example
+ * {@code BenchmarkRunner LibraryBenchmark 1,4,16}. Both arguments are optional; the defaults run every
+ * benchmark at 1, 4 and 16 threads.
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException {
+        String include = args.length > 0 ? args[0] : "benchmarks\\..*Benchmark";
+        String threadCounts = args.length > 1 ? args[1] : "1,4,16";
+
+        for (String threads : threadCounts.split(",")) {
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .include(include)
+                    .threads(Integer.parseInt(threads.trim()))
+                    .addProfiler(GCProfiler.class)
+                    .result("jmh-result-" + threads.trim() + "t.json")
+                    .resultFormat(ResultFormatType.JSON);
+
+            new Runner(options.build()).run();
+        }
+    }
+}
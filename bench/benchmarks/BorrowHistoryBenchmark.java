@@ -0,0 +1,98 @@
+package benchmarks;
+
+import entities.items.LibraryItem;
+import entities.people.Member;
+import entities.transactions.BorrowHistoryStore;
+import entities.transactions.BorrowRecord;
+import enums.LibraryItemType;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Analytics over a year of returned loans, held as {@link BorrowRecord} objects in a list and as rows of a
+ * {@link BorrowHistoryStore}. Each pair of benchmarks computes the same figure both ways.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+@State(Scope.Benchmark)
+public class BorrowHistoryBenchmark {
+
+    @Param({"1000000", "5000000"})
+    public int historySize;
+
+    private List<BorrowRecord> records;
+    private BorrowHistoryStore store;
+    private LocalDate from;
+    private LocalDate to;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        LibraryFixtures.useReferenceClock();
+        Random random = new Random(LibraryFixtures.DEFAULT_SEED);
+        List<LibraryItem> items = LibraryFixtures.createItems(50_000, LibraryFixtures.DEFAULT_SEED);
+        List<Member> members = LibraryFixtures.createMembers(10_000);
+
+        to = LibraryFixtures.REFERENCE_DATE;
+        from = to.minusDays(365);
+        records = new ArrayList<>(historySize);
+        store = new BorrowHistoryStore();
+        for (int i = 0; i < historySize; i++) {
+            LocalDate borrowDate = from.plusDays(random.nextInt(365));
+            BorrowRecord record = new BorrowRecord();
+            record.setItem(items.get(random.nextInt(items.size())));
+            record.setMember(members.get(random.nextInt(members.size())));
+            record.setBorrowDate(borrowDate);
+            record.setDueDate(borrowDate.plusDays(14));
+            record.setReturnDate(borrowDate.plusDays(random.nextInt(30)));
+            records.add(record);
+            store.append(record);
+        }
+    }
+
+    @Benchmark
+    public double averageDurationRecords() {
+        return records.stream()
+                .filter(record -> !record.getBorrowDate().isBefore(from) && !record.getBorrowDate().isAfter(to))
+                .mapToLong(BorrowRecord::getBorrowDurationInDays)
+                .average()
+                .orElse(0);
+    }
+
+    @Benchmark
+    public double averageDurationColumns() {
+        return store.durationStatistics(from, to).getAverage();
+    }
+
+    @Benchmark
+    public long lateReturnsRecords() {
+        return records.stream()
+                .filter(record -> !record.getBorrowDate().isBefore(from) && !record.getBorrowDate().isAfter(to))
+                .filter(BorrowRecord::isOverdue)
+                .count();
+    }
+
+    @Benchmark
+    public long lateReturnsColumns() {
+        long[] histogram = store.latenessHistogram(from, to, 30);
+        return Arrays.stream(histogram).sum() - histogram[0];
+    }
+
+    @Benchmark
+    public Map<LibraryItemType, Long> typeMixRecords() {
+        return records.stream()
+                .filter(record -> !record.getBorrowDate().isBefore(from) && !record.getBorrowDate().isAfter(to))
+                .collect(Collectors.groupingBy(record -> record.getItem().getItemType(), Collectors.counting()));
+    }
+
+    @Benchmark
+    public Map<LibraryItemType, Long> typeMixColumns() {
+        return store.typeMix(from, to);
+    }
+}
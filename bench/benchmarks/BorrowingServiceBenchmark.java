@@ -0,0 +1,76 @@
+package benchmarks;
+
+import entities.items.LibraryItem;
+import entities.people.Member;
+import entities.transactions.BorrowRecord;
+import interfaces.LoanPolicy;
+import org.openjdk.jmh.annotations.*;
+import services.BorrowingService;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BorrowingServiceBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int activeLoans;
+
+    private BorrowingService borrowingService;
+    private List<Member> members;
+    private int nextMember;
+
+    /**
+     * Loans are spread over the last 60 days, so with loan periods of one to four weeks a little over half of
+     * them are overdue.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        LibraryFixtures.useReferenceClock();
+        borrowingService = new BorrowingService();
+        Random random = new Random(LibraryFixtures.DEFAULT_SEED);
+        members = LibraryFixtures.createMembers(Math.max(1, activeLoans / 5));
+        List<LibraryItem> items = LibraryFixtures.createItems(activeLoans * 10 / 9 + 10, LibraryFixtures.DEFAULT_SEED)
+                .stream()
+                .filter(item -> item instanceof LoanPolicy)
+                .limit(activeLoans)
+                .toList();
+
+        LocalDate today = LibraryFixtures.REFERENCE_DATE;
+        List<BorrowRecord> records = new ArrayList<>(items.size());
+        for (LibraryItem item : items) {
+            LocalDate borrowDate = today.minusDays(random.nextInt(60));
+            BorrowRecord record = new BorrowRecord();
+            record.setItem(item);
+            record.setMember(members.get(random.nextInt(members.size())));
+            record.setBorrowDate(borrowDate);
+            record.setDueDate(borrowDate.plusDays(((LoanPolicy) item).getMaxLoanDays()));
+            records.add(record);
+        }
+        borrowingService.addBorrowRecords(records);
+    }
+
+    @Benchmark
+    public double calculateTotalFines() {
+        return borrowingService.calculateTotalFines();
+    }
+
+    @Benchmark
+    public int scanOverdue() {
+        return borrowingService.getOverdueBorrows().size();
+    }
+
+    @Benchmark
+    public double calculateMemberFines() {
+        nextMember = (nextMember + 1) % members.size();
+        return borrowingService.calculateMemberFines(members.get(nextMember));
+    }
+}
@@ -0,0 +1,180 @@
+package benchmarks;
+
+import entities.items.AudioBook;
+import entities.items.LibraryItem;
+import entities.people.Member;
+import entities.transactions.BorrowRecord;
+import enums.MemberStatus;
+import interfaces.LoanPolicy;
+import jdbc.BorrowRecordDAO;
+import jdbc.DatabaseManager;
+import jdbc.ItemDAO;
+import jdbc.MemberDAO;
+import org.openjdk.jmh.annotations.*;
+import util.LibraryClock;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The JDBC layer against the in-memory H2 database used by {@link DatabaseManager}. Every trial recreates the
+ * schema and seeds it from {@link LibraryFixtures} with a fixed seed: a quarter of the loanable items are on
+ * loan and a third of those are overdue.
+ * <p>
+ * The same benchmarks run twice: {@link Throughput} reports ops/s and {@link Latency} reports the sampled
+ * latency distribution, including p99, in microseconds. The row cache is cleared before every
+ * {@code findById}, so it measures the query; {@code findByIdCached} measures the warm cache.
+ */
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public abstract class DaoBenchmark {
+
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public static class Throughput extends DaoBenchmark {
+    }
+
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public static class Latency extends DaoBenchmark {
+    }
+
+    @Param({"1000", "10000", "100000"})
+    public int tableSize;
+
+    private DatabaseManager dbManager;
+    private ItemDAO itemDAO;
+    private MemberDAO memberDAO;
+    private BorrowRecordDAO recordDAO;
+
+    private String[] itemIds;
+    private String[] borrowedItemIds;
+    // One lock per borrowed item, at the same index
+    private Object[] loanLocks;
+    private List<Member> members;
+    private final AtomicLong insertSequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        dbManager = new DatabaseManager();
+        dbManager.createTables();
+        itemDAO = new ItemDAO(dbManager);
+        memberDAO = new MemberDAO(dbManager);
+        recordDAO = new BorrowRecordDAO(dbManager, itemDAO, memberDAO);
+
+        List<LibraryItem> items = LibraryFixtures.createItems(tableSize, LibraryFixtures.DEFAULT_SEED);
+        members = LibraryFixtures.createMembers(Math.max(1, tableSize / 10));
+        Random random = new Random(LibraryFixtures.DEFAULT_SEED);
+        members.forEach(member -> member.setStatus(MemberStatus.values()[random.nextInt(MemberStatus.values().length)]));
+
+        var conn = dbManager.getConnection();
+        conn.setAutoCommit(false);
+        itemDAO.mergeItems(conn, items);
+        memberDAO.mergeMembers(conn, members);
+
+        LocalDate today = LibraryClock.today();
+        List<BorrowRecord> records = new ArrayList<>();
+        List<String> borrowed = new ArrayList<>();
+        for (int i = 0; i < items.size(); i += 4) {
+            LibraryItem item = items.get(i);
+            if (!(item instanceof LoanPolicy policy))
+                continue;
+
+            LocalDate borrowDate = today.minusDays(i % 3 == 0 ? policy.getMaxLoanDays() + 5 : 1);
+            BorrowRecord record = new BorrowRecord();
+            record.setItem(item);
+            record.setMember(members.get(random.nextInt(members.size())));
+            record.setBorrowDate(borrowDate);
+            record.setDueDate(borrowDate.plusDays(policy.getMaxLoanDays()));
+            records.add(record);
+            borrowed.add(item.getId());
+            itemDAO.updateAvailability(conn, item.getId(), false);
+        }
+        recordDAO.insertRecords(conn, records);
+        conn.commit();
+        conn.setAutoCommit(true);
+
+        itemIds = items.stream().map(LibraryItem::getId).toArray(String[]::new);
+        borrowedItemIds = borrowed.toArray(String[]::new);
+        loanLocks = new Object[borrowedItemIds.length];
+        Arrays.setAll(loanLocks, i -> new Object());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        dbManager.close();
+    }
+
+    @Benchmark
+    public void insertItem() throws SQLException {
+        long sequence = insertSequence.incrementAndGet();
+        itemDAO.insertItem(new AudioBook("BENCH-" + sequence, "Benchmark Recording " + sequence));
+    }
+
+    @Benchmark
+    public Optional<LibraryItem> findById() throws SQLException {
+        String id = itemIds[ThreadLocalRandom.current().nextInt(itemIds.length)];
+        itemDAO.invalidateCache(id);
+        return itemDAO.findById(id);
+    }
+
+    @Benchmark
+    public Optional<LibraryItem> findByIdCached() throws SQLException {
+        return itemDAO.findById(itemIds[ThreadLocalRandom.current().nextInt(itemIds.length)]);
+    }
+
+    @Benchmark
+    public List<LibraryItem> findAll() throws SQLException {
+        return itemDAO.findAll();
+    }
+
+    @Benchmark
+    public List<Member> findByStatus() throws SQLException {
+        return memberDAO.findByStatus(MemberStatus.ACTIVE);
+    }
+
+    @Benchmark
+    public List<BorrowRecord> findActiveRecords() throws SQLException {
+        return recordDAO.findActiveRecords();
+    }
+
+    @Benchmark
+    public List<BorrowRecord> findOverdueRecords() throws SQLException {
+        return recordDAO.findOverdueRecords();
+    }
+
+    /**
+     * Returns a borrowed item and borrows it again in the same invocation, so the table keeps the same number
+     * of open loans across iterations. The score covers both statements. Each loan has its own lock, which keeps
+     * two threads from cycling the same loan at once.
+     */
+    @Benchmark
+    public boolean returnItem() throws SQLException {
+        int index = ThreadLocalRandom.current().nextInt(borrowedItemIds.length);
+        String itemId = borrowedItemIds[index];
+        synchronized (loanLocks[index]) {
+            boolean returned = recordDAO.returnItem(itemId, LibraryClock.today());
+            if (returned) {
+                LibraryItem item = itemDAO.findById(itemId).orElseThrow();
+                BorrowRecord record = new BorrowRecord();
+                record.setItem(item);
+                record.setMember(members.get(0));
+                record.setBorrowDate(LibraryClock.today());
+                record.setDueDate(LibraryClock.today().plusDays(7));
+                recordDAO.insertRecord(record);
+                itemDAO.updateAvailability(itemId, false);
+            }
+            return returned;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package benchmarks;
+
+import entities.Library;
+import entities.LibraryStatistics;
+import entities.items.Book;
+import entities.items.LibraryItem;
+import entities.people.Member;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hot paths of {@link Library}. Thread counts are chosen on the command line, see {@link BenchmarkRunner}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LibraryBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int catalogSize;
+
+    private Library library;
+    private String[] itemIds;
+    private String[] keywords;
+    private List<Member> members;
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    // Borrow and return grow the library's record list, so every iteration starts from a fresh catalog
+    @Setup(Level.Iteration)
+    public void setUp() {
+        List<LibraryItem> items = LibraryFixtures.createItems(catalogSize, LibraryFixtures.DEFAULT_SEED);
+        members = LibraryFixtures.createMembers(Math.max(1, catalogSize / 10));
+        library = LibraryFixtures.createLibrary(items, members);
+        itemIds = items.stream()
+                .map(LibraryItem::getId)
+                .toArray(String[]::new);
+
+        Random random = new Random(LibraryFixtures.DEFAULT_SEED);
+        keywords = new String[64];
+        for (int i = 0; i < keywords.length; i++)
+            keywords[i] = LibraryFixtures.randomKeyword(random);
+        threadCounter.set(0);
+    }
+
+    /**
+     * Gives every benchmark thread its own slice of loanable items, so borrow and return measure the
+     * uncontended path rather than failed borrows of items another thread holds.
+     */
+    @State(Scope.Thread)
+    public static class BorrowerState {
+        private Member member;
+        private String[] slice;
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void setUp(LibraryBenchmark benchmark) {
+            int thread = benchmark.threadCounter.getAndIncrement();
+            member = benchmark.members.get(thread % benchmark.members.size());
+            String[] loanable = benchmark.library.getLoanableItems().stream()
+                    .map(LibraryItem::getId)
+                    .toArray(String[]::new);
+            slice = Arrays.stream(loanable)
+                    .filter(id -> Math.floorMod(id.hashCode(), 64) == thread % 64)
+                    .toArray(String[]::new);
+            if (slice.length == 0)
+                slice = loanable;
+            next = 0;
+        }
+
+        String nextItemId() {
+            String id = slice[next];
+            next = (next + 1) % slice.length;
+            return id;
+        }
+    }
+
+    @Benchmark
+    public Optional<LibraryItem> findItemById() {
+        return library.findItemById(itemIds[ThreadLocalRandom.current().nextInt(itemIds.length)]);
+    }
+
+    @Benchmark
+    public List<LibraryItem> searchItems() {
+        return library.searchItems(keywords[ThreadLocalRandom.current().nextInt(keywords.length)]);
+    }
+
+    @Benchmark
+    public List<Book> searchBooks() {
+        return library.searchBooks(keywords[ThreadLocalRandom.current().nextInt(keywords.length)]);
+    }
+
+    @Benchmark
+    public void borrowAndReturn(BorrowerState state, Blackhole blackhole) {
+        String itemId = state.nextItemId();
+        blackhole.consume(library.borrowItem(itemId, state.member));
+        blackhole.consume(library.returnItem(itemId));
+    }
+
+    @Benchmark
+    public String generateLibraryReport() {
+        return library.generateLibraryReport();
+    }
+
+    @Benchmark
+    public LibraryStatistics generateStatistics() {
+        return library.getStats().generateStatistics();
+    }
+}
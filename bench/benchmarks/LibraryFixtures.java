@@ -0,0 +1,143 @@
+package benchmarks;
+
+import entities.Library;
+import entities.items.*;
+import entities.people.Member;
+import enums.LibraryItemType;
+import enums.MovieGenre;
+import util.LibraryClock;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Deterministic catalogs for benchmarks. The same size and seed always produce the same items, titles and
+ * members, so runs on different machines or commits compare like with like.
+ */
+public final class LibraryFixtures {
+    public static final long DEFAULT_SEED = 42L;
+
+    /**
+     * The day benchmarks that depend on dates run on, so due dates and fines come out the same on every run.
+     */
+    public static final LocalDate REFERENCE_DATE = LocalDate.of(2024, 6, 1);
+
+    /**
+     * The default mix: 40% books, 20% magazines, 20% DVDs, 10% audio books and 10% reference books.
+     */
+    public static final Map<LibraryItemType, Integer> DEFAULT_MIX = Collections.unmodifiableMap(new EnumMap<>(Map.of(
+            LibraryItemType.BOOK, 4,
+            LibraryItemType.MAGAZINE, 2,
+            LibraryItemType.DVD, 2,
+            LibraryItemType.AUDIO_BOOK, 1,
+            LibraryItemType.REFERENCE_BOOK, 1)));
+
+    private static final String[] TITLE_WORDS = {
+            "Java", "Patterns", "Effective", "Clean", "Code", "Concurrency", "Practice", "Modern", "Systems",
+            "Design", "Architecture", "Data", "Algorithms", "Networks", "History", "Science", "Art", "Music",
+            "Travel", "Cooking", "Garden", "Ocean", "Mountain", "City", "Night", "Journey", "Secrets", "Guide"
+    };
+
+    private static final String[] PEOPLE = {
+            "Joshua Bloch", "Robert Martin", "Brian Goetz", "Martin Fowler", "Kent Beck", "Donald Knuth",
+            "Barbara Liskov", "Grace Hopper", "Ada Lovelace", "Alan Turing", "Edsger Dijkstra", "Niklaus Wirth"
+    };
+
+    private static final MovieGenre[] GENRES = MovieGenre.values();
+
+    private LibraryFixtures() {
+    }
+
+    /**
+     * Stops the library clock at {@link #REFERENCE_DATE}.
+     */
+    public static void useReferenceClock() {
+        LibraryClock.install(LibraryClock.fixed(REFERENCE_DATE));
+    }
+
+    public static List<LibraryItem> createItems(int count, long seed) {
+        return createItems(count, seed, DEFAULT_MIX);
+    }
+
+    /**
+     * Builds items whose types follow the given relative weights. Types are laid out in a repeating pattern
+     * rather than drawn at random, so every prefix of the catalog has close to the requested mix.
+     */
+    public static List<LibraryItem> createItems(int count, long seed, Map<LibraryItemType, Integer> mix) {
+        List<LibraryItemType> pattern = new ArrayList<>();
+        new EnumMap<>(mix).forEach((type, weight) -> pattern.addAll(Collections.nCopies(weight, type)));
+        if (pattern.isEmpty())
+            throw new IllegalArgumentException("Item mix must have at least one positive weight");
+
+        Random random = new Random(seed);
+        List<LibraryItem> items = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            String title = randomTitle(random);
+
+            LibraryItem item = switch (pattern.get(i % pattern.size())) {
+                case BOOK -> {
+                    Book book = new Book(String.format("978-%010d", i), title, pick(random, PEOPLE));
+                    book.setPublicationYear(1950 + random.nextInt(70));
+                    book.setPageCount(80 + random.nextInt(900));
+                    yield book;
+                }
+                case MAGAZINE -> {
+                    Magazine magazine = new Magazine(title, "ISSUE-" + i,
+                            LocalDate.of(2000, 1, 1).plusDays(random.nextInt(9000)));
+                    magazine.setPublisher(pick(random, PEOPLE) + " Publishing");
+                    yield magazine;
+                }
+                case DVD -> {
+                    DVD dvd = new DVD("DVD-" + i, title, pick(random, PEOPLE),
+                            GENRES[random.nextInt(GENRES.length)], 60 + random.nextInt(120));
+                    dvd.setStudio(pick(random, PEOPLE) + " Studios");
+                    yield dvd;
+                }
+                case AUDIO_BOOK -> new AudioBook("AB-" + i, title)
+                        .setNarrator(pick(random, PEOPLE))
+                        .setDurationMinutes(120 + random.nextInt(900));
+                case REFERENCE_BOOK -> new ReferenceBook("REF-" + i, title, pick(random, TITLE_WORDS));
+            };
+            items.add(item);
+        }
+        return items;
+    }
+
+    public static List<Member> createMembers(int count) {
+        List<Member> members = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++)
+            members.add(new Member(i, "Member " + i, "member" + i + "@example.com"));
+        return members;
+    }
+
+    /**
+     * Builds a library through {@link Library#restore}, which skips the per-item duplicate scan of
+     * {@code addItem} so that large catalogs are cheap to set up.
+     */
+    public static Library createLibrary(int itemCount, int memberCount, long seed) {
+        return createLibrary(createItems(itemCount, seed), createMembers(memberCount));
+    }
+
+    public static Library createLibrary(List<LibraryItem> items, List<Member> members) {
+        Library library = new Library();
+        library.restore(items, members, List.of(), Runnable::run);
+        return library;
+    }
+
+    public static String randomKeyword(Random random) {
+        return pick(random, TITLE_WORDS);
+    }
+
+    private static String randomTitle(Random random) {
+        int words = 2 + random.nextInt(3);
+        StringBuilder title = new StringBuilder(pick(random, TITLE_WORDS));
+        for (int i = 1; i < words; i++)
+            title.append(' ').append(pick(random, TITLE_WORDS));
+        return title.toString();
+    }
+
+    private static String pick(Random random, String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
@@ -0,0 +1,76 @@
+package benchmarks;
+
+import entities.Library;
+import entities.items.Book;
+import entities.people.Member;
+import entities.transactions.Reservation;
+import exceptions.ReservationException;
+import org.openjdk.jmh.annotations.*;
+import services.ReservationService;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reserve and cancel traffic on a few popular titles that are all on loan, so every reservation joins a queue.
+ * {@code queueDepth} members are already waiting for each title, and every thread reserves and cancels as a
+ * member of its own.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ReservationBenchmark {
+
+    @Param({"1", "16"})
+    public int hotTitles;
+
+    @Param({"0", "1000"})
+    public int queueDepth;
+
+    private ReservationService reservationService;
+    private Book[] titles;
+    private final AtomicInteger threadCounter = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws ReservationException {
+        // A member may only reserve two books at a time, so each queue gets members of its own
+        List<Member> members = LibraryFixtures.createMembers(hotTitles * queueDepth + 1);
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < hotTitles; i++)
+            books.add(new Book("978-" + i, "Popular title " + i, "Author " + i));
+
+        Library library = LibraryFixtures.createLibrary(new ArrayList<>(books), members);
+        reservationService = library.getReservationService();
+        titles = books.toArray(new Book[0]);
+        for (int t = 0; t < titles.length; t++) {
+            library.borrowItem(titles[t].getId(), members.get(0));
+            for (int i = 1; i <= queueDepth; i++)
+                reservationService.reserve(titles[t], members.get(t * queueDepth + i));
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ReserverState {
+        private Member member;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(ReservationBenchmark benchmark) {
+            int thread = benchmark.threadCounter.getAndIncrement();
+            member = new Member(1_000_000 + thread, "Reserver " + thread, "reserver" + thread + "@example.com");
+            next = thread;
+        }
+    }
+
+    @Benchmark
+    public boolean reserveAndCancel(ReserverState state) throws ReservationException {
+        Book title = titles[state.next++ % titles.length];
+        Reservation reservation = reservationService.reserve(title, state.member);
+        return reservationService.cancel(reservation);
+    }
+}
@@ -0,0 +1,86 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import util.TimingWheel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hold expiry with millions of pending deadlines spread over the next {@value #HORIZON_DAYS} days, as the
+ * reservation service keeps them. {@code advanceOneTick} moves the clock a minute and reschedules whatever
+ * fired at the far end of the horizon, so the number pending stays constant. {@code scanAll} is the periodic
+ * scan the wheel replaces: it checks every deadline for the same minute.
+ * <p>
+ * The wheel is guarded by a lock, as in the reservation service, so runs with more than one thread measure
+ * that lock as well.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Benchmark)
+public class TimingWheelBenchmark {
+    private static final long TICK_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final int HORIZON_DAYS = 30;
+    private static final long HORIZON_MILLIS = TimeUnit.DAYS.toMillis(HORIZON_DAYS);
+
+    @Param({"1000000", "4000000"})
+    public int pendingDeadlines;
+
+    private TimingWheel<long[]> wheel;
+    private long[] deadlines;
+    private long now;
+    private SplittableRandom random;
+    private final List<long[]> fired = new ArrayList<>();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        random = new SplittableRandom(LibraryFixtures.DEFAULT_SEED);
+        now = 0;
+        wheel = new TimingWheel<>(TICK_MILLIS, now);
+        deadlines = new long[pendingDeadlines];
+        for (int i = 0; i < pendingDeadlines; i++) {
+            deadlines[i] = 1 + random.nextLong(HORIZON_MILLIS);
+            wheel.schedule(new long[]{deadlines[i]}, deadlines[i]);
+        }
+    }
+
+    @Benchmark
+    public int advanceOneTick() {
+        synchronized (wheel) {
+            now += TICK_MILLIS;
+            fired.clear();
+            wheel.advanceTo(now, fired::add);
+
+            long horizon = now + HORIZON_MILLIS;
+            for (long[] deadline : fired) {
+                deadline[0] = horizon - random.nextLong(TICK_MILLIS);
+                wheel.schedule(deadline, deadline[0]);
+            }
+            return fired.size();
+        }
+    }
+
+    @Benchmark
+    public boolean scheduleAndCancel() {
+        synchronized (wheel) {
+            long deadline = now + 1 + random.nextLong(HORIZON_MILLIS);
+            return wheel.cancel(wheel.schedule(new long[]{deadline}, deadline));
+        }
+    }
+
+    @Benchmark
+    public int scanAll() {
+        long cutoff = now + TICK_MILLIS;
+        int due = 0;
+        for (long deadline : deadlines) {
+            if (deadline <= cutoff)
+                due++;
+        }
+        return due;
+    }
+}
@@ -0,0 +1,340 @@
+package workload;
+
+import entities.items.Book;
+import entities.items.LibraryItem;
+import entities.people.Member;
+import entities.transactions.BorrowRecord;
+import metrics.LibraryMetrics;
+import metrics.LockStats;
+import services.BorrowingService;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Measures how borrow and return throughput of {@link BorrowingService} scales with the number of threads.
+ * Every thread runs a closed loop of borrow followed by return. Two scenarios are measured:
+ * <ul>
+ *     <li>{@code LOW_CONTENTION}: each thread has its own member and its own items.</li>
+ *     <li>{@code HIGH_CONTENTION}: all threads borrow a handful of hot items for a single member whose borrow
+ *     quota is enforced, so most attempts are refused.</li>
+ * </ul>
+ * For each thread count the harness prints throughput, speedup and Jain's fairness index over per-thread
+ * operation counts. It also prints how busy the service's locks were, sampled from a monitoring thread, and
+ * the mean hold time derived from that. Each loan is tracked on the side, and the run fails if an item is
+ * ever lent to two borrowers at once, a return loses its record or the member quota is exceeded.
+ * <p>
+ * With {@code locks=on} the service's instrumented locks are timed as well, and the exact wait and hold
+ * percentiles per lock are printed for the highest thread count. These cover the warmup too.
+ * <p>
+ * Usage: {@code BorrowScalabilityHarness [threads=1,2,4,8,16,32,64] [seconds=3] [warmup=1] [locks=off]}
+ */
+public class BorrowScalabilityHarness {
+    private static final int ITEMS_PER_THREAD = 32;
+    private static final int HOT_ITEMS = 8;
+    private static final int MEMBER_QUOTA = 5;
+    private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    enum Scenario {
+        LOW_CONTENTION, HIGH_CONTENTION
+    }
+
+    record Result(Scenario scenario, int threads, double opsPerSecond, double fairness, long minThreadOps,
+                  long maxThreadOps, LockUsage borrowLock, LockUsage recordWriteLock, double recordReadLockedShare,
+                  long violations, Map<String, Long> failures, List<LockStats> lockStats) {
+    }
+
+    record LockUsage(double heldShare, double meanQueueLength, double meanHoldMicros) {
+    }
+
+    private final int[] threadCounts;
+    private final long measureNanos;
+    private final long warmupNanos;
+
+    public BorrowScalabilityHarness(int[] threadCounts, int seconds, int warmupSeconds) {
+        this.threadCounts = threadCounts.clone();
+        this.measureNanos = TimeUnit.SECONDS.toNanos(seconds);
+        this.warmupNanos = TimeUnit.SECONDS.toNanos(warmupSeconds);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            if (parts.length != 2)
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            options.put(parts[0].trim(), parts[1].trim());
+        }
+
+        int[] threadCounts = Arrays.stream(options.getOrDefault("threads", "1,2,4,8,16,32,64").split(","))
+                .mapToInt(value -> Integer.parseInt(value.trim()))
+                .toArray();
+        BorrowScalabilityHarness harness = new BorrowScalabilityHarness(threadCounts,
+                Integer.parseInt(options.getOrDefault("seconds", "3")),
+                Integer.parseInt(options.getOrDefault("warmup", "1")));
+        LibraryMetrics.setLockInstrumentationEnabled("on".equalsIgnoreCase(options.getOrDefault("locks", "off")));
+
+        long violations = 0;
+        for (Scenario scenario : Scenario.values()) {
+            List<Result> results = new ArrayList<>();
+            for (int threads : threadCounts)
+                results.add(harness.run(scenario, threads));
+            System.out.println(format(results));
+            violations += results.stream().mapToLong(Result::violations).sum();
+        }
+
+        if (violations > 0) {
+            System.out.println("FAILED: " + violations + " consistency violations");
+            System.exit(1);
+        }
+        System.out.println("No item was ever lent twice, no return lost its record and the quota held.");
+    }
+
+    public Result run(Scenario scenario, int threads) throws InterruptedException {
+        BorrowingService service = new BorrowingService(new BorrowingService.BorrowingConfig.Builder()
+                .allowMultipleBorrows(false)
+                .maxBorrowsPerMember(MEMBER_QUOTA)
+                .build());
+
+        int itemCount = scenario == Scenario.LOW_CONTENTION ? threads * ITEMS_PER_THREAD : HOT_ITEMS;
+        List<LibraryItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++)
+            items.add(new Book(String.format("978-%010d", i), "Scalability " + i, "Harness"));
+
+        List<Member> members = new ArrayList<>();
+        for (int i = 1; i <= (scenario == Scenario.LOW_CONTENTION ? threads : 1); i++)
+            members.add(new Member(i, "Member " + i, "member" + i + "@example.com"));
+
+        RunState state = new RunState(itemCount, scenario == Scenario.HIGH_CONTENTION);
+        long[] threadOps = new long[threads];
+        CountDownLatch ready = new CountDownLatch(threads);
+        List<Thread> workers = new ArrayList<>(threads);
+
+        for (int t = 0; t < threads; t++) {
+            int threadIndex = t;
+            Thread worker = new Thread(() -> {
+                ready.countDown();
+                threadOps[threadIndex] = scenario == Scenario.LOW_CONTENTION
+                        ? runLowContention(service, state, items, members.get(threadIndex), threadIndex)
+                        : runHighContention(service, state, items, members.get(0));
+            }, "scalability-" + scenario.name().toLowerCase(Locale.ROOT) + "-" + t);
+            workers.add(worker);
+            worker.start();
+        }
+
+        ready.await();
+        LockSampler sampler = new LockSampler(service, state);
+        Thread samplerThread = new Thread(sampler, "scalability-lock-sampler");
+        samplerThread.setDaemon(true);
+        samplerThread.start();
+
+        LockSupport.parkNanos(warmupNanos);
+        long start = System.nanoTime();
+        state.measuring = true;
+        LockSupport.parkNanos(measureNanos);
+        state.measuring = false;
+        long elapsed = System.nanoTime() - start;
+        state.stopped = true;
+
+        for (Thread worker : workers)
+            worker.join();
+        samplerThread.join();
+
+        state.checkQuiescent(service, items);
+        return summarize(scenario, threads, threadOps, elapsed, state, sampler, service);
+    }
+
+    private long runLowContention(BorrowingService service, RunState state, List<LibraryItem> items,
+                                  Member member, int threadIndex) {
+        long ops = 0;
+        int next = 0;
+        while (!state.stopped) {
+            int index = threadIndex * ITEMS_PER_THREAD + next;
+            next = (next + 1) % ITEMS_PER_THREAD;
+            ops += borrowAndReturn(service, state, items.get(index), index, member);
+        }
+        return ops;
+    }
+
+    private long runHighContention(BorrowingService service, RunState state, List<LibraryItem> items, Member member) {
+        long ops = 0;
+        while (!state.stopped) {
+            int index = ThreadLocalRandom.current().nextInt(items.size());
+            ops += borrowAndReturn(service, state, items.get(index), index, member);
+        }
+        return ops;
+    }
+
+    // Returns the number of service calls made while measuring: the borrow attempt and, if it succeeded, the return
+    private long borrowAndReturn(BorrowingService service, RunState state, LibraryItem item, int index, Member member) {
+        boolean measuring = state.measuring;
+        BorrowingService.BorrowResult result = service.borrowItem(item, member);
+        if (measuring)
+            state.borrowAttempts.increment();
+
+        if (!result.isSuccess()) {
+            if (measuring)
+                state.failures.computeIfAbsent(result.getMessage().replaceAll("item \\S+ by member \\d+", "item <id> by member <id>"),
+                        key -> new LongAdder()).increment();
+            return measuring ? 1 : 0;
+        }
+
+        BorrowRecord record = result.getRecord();
+        if (!state.holders.compareAndSet(index, null, record))
+            state.violation("Item " + item.getId() + " lent twice");
+        if (state.memberLoans.incrementAndGet() > MEMBER_QUOTA && state.sharedMember)
+            state.violation("Member quota exceeded");
+
+        // Released before the return so the next borrower's check does not race with this thread's bookkeeping
+        state.memberLoans.decrementAndGet();
+        state.holders.set(index, null);
+        if (service.returnItem(item).isEmpty())
+            state.violation("Return of " + item.getId() + " found no active record");
+        if (measuring)
+            state.returns.increment();
+        return measuring ? 2 : 0;
+    }
+
+    private Result summarize(Scenario scenario, int threads, long[] threadOps, long elapsedNanos,
+                             RunState state, LockSampler sampler, BorrowingService service) {
+        long total = 0;
+        double sumOfSquares = 0;
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (long ops : threadOps) {
+            total += ops;
+            sumOfSquares += (double) ops * ops;
+            min = Math.min(min, ops);
+            max = Math.max(max, ops);
+        }
+        double fairness = sumOfSquares == 0 ? 1.0 : (double) total * total / (threads * sumOfSquares);
+
+        long borrows = state.borrowAttempts.sum();
+        // Every successful borrow and every return takes the record write lock once
+        long writeLocks = state.returns.sum() * 2;
+        Map<String, Long> failures = new TreeMap<>();
+        state.failures.forEach((message, count) -> failures.put(message, count.sum()));
+
+        return new Result(scenario, threads, total / (elapsedNanos / 1e9), fairness, min, max,
+                sampler.usage(sampler.borrowHeld, sampler.borrowQueued, borrows, elapsedNanos),
+                sampler.usage(sampler.writeHeld, sampler.recordQueued, writeLocks, elapsedNanos),
+                sampler.samples == 0 ? 0 : (double) sampler.readHeld / sampler.samples,
+                state.violations.sum(), failures,
+                LibraryMetrics.isLockInstrumentationEnabled() ? service.getLockStats() : List.of());
+    }
+
+    private static String format(List<Result> results) {
+        StringBuilder out = new StringBuilder();
+        Result first = results.get(0);
+        double baseline = first.opsPerSecond() / first.threads();
+
+        out.append(String.format("%n%s%n", first.scenario()));
+        out.append(String.format("%7s %12s %8s %8s %9s %10s %10s %10s %10s %10s %10s %6s%n",
+                "threads", "ops/s", "speedup", "jain", "min/max", "borrow %", "queue", "b-hold us",
+                "write %", "w-hold us", "read %", "errors"));
+        for (Result result : results) {
+            double speedup = result.opsPerSecond() / baseline;
+            out.append(String.format("%7d %12.0f %8.2f %8.3f %9s %10.1f %10.2f %10.2f %10.1f %10.2f %10.1f %6d%n",
+                    result.threads(), result.opsPerSecond(), speedup, result.fairness(),
+                    String.format("%.2f", result.maxThreadOps() == 0 ? 0.0 : (double) result.minThreadOps() / result.maxThreadOps()),
+                    result.borrowLock().heldShare() * 100, result.borrowLock().meanQueueLength(),
+                    result.borrowLock().meanHoldMicros(),
+                    result.recordWriteLock().heldShare() * 100, result.recordWriteLock().meanHoldMicros(),
+                    result.recordReadLockedShare() * 100, result.violations()));
+        }
+
+        Result last = results.get(results.size() - 1);
+        if (!last.failures().isEmpty()) {
+            out.append(String.format("Refused borrows at %d threads:%n", last.threads()));
+            last.failures().forEach((message, count) -> out.append(String.format("  %10d  %s%n", count, message)));
+        }
+        if (!last.lockStats().isEmpty()) {
+            out.append(String.format("Lock contention at %d threads:%n", last.threads()));
+            last.lockStats().forEach(stats -> out.append("  ").append(stats).append(System.lineSeparator()));
+        }
+        return out.toString();
+    }
+
+    private static final class RunState {
+        private final AtomicReferenceArray<BorrowRecord> holders;
+        private final AtomicInteger memberLoans = new AtomicInteger();
+        private final boolean sharedMember;
+        private final LongAdder borrowAttempts = new LongAdder();
+        private final LongAdder returns = new LongAdder();
+        private final LongAdder violations = new LongAdder();
+        private final ConcurrentMap<String, LongAdder> failures = new ConcurrentHashMap<>();
+        private volatile boolean measuring;
+        private volatile boolean stopped;
+
+        private RunState(int items, boolean sharedMember) {
+            this.holders = new AtomicReferenceArray<>(items);
+            this.sharedMember = sharedMember;
+        }
+
+        private void violation(String message) {
+            violations.increment();
+            System.err.println("VIOLATION: " + message);
+        }
+
+        private void checkQuiescent(BorrowingService service, List<LibraryItem> items) {
+            if (!service.getActiveBorrows().isEmpty())
+                violation(service.getActiveBorrows().size() + " records still open after all returns");
+            for (LibraryItem item : items) {
+                if (!item.getAvailable())
+                    violation("Item " + item.getId() + " left unavailable after all returns");
+            }
+        }
+    }
+
+    // Polls the lock state while the run is measured; the share of samples that saw a lock held estimates its utilization
+    private static final class LockSampler implements Runnable {
+        private final BorrowingService service;
+        private final RunState state;
+        private long samples;
+        private long borrowHeld;
+        private long borrowQueued;
+        private long writeHeld;
+        private long readHeld;
+        private long recordQueued;
+
+        private LockSampler(BorrowingService service, RunState state) {
+            this.service = service;
+            this.state = state;
+        }
+
+        @Override
+        public void run() {
+            while (!state.stopped) {
+                if (state.measuring) {
+                    BorrowingService.LockState lockState = service.getLockState();
+                    samples++;
+                    if (lockState.borrowLockHeld())
+                        borrowHeld++;
+                    borrowQueued += lockState.borrowLockQueueLength();
+                    if (lockState.recordWriteLocked())
+                        writeHeld++;
+                    if (lockState.recordReadHolds() > 0)
+                        readHeld++;
+                    recordQueued += lockState.recordLockQueueLength();
+                }
+                LockSupport.parkNanos(SAMPLE_INTERVAL_NANOS);
+            }
+        }
+
+        private LockUsage usage(long held, long queued, long acquisitions, long elapsedNanos) {
+            if (samples == 0)
+                return new LockUsage(0, 0, 0);
+            double heldShare = (double) held / samples;
+            double meanHoldMicros = acquisitions == 0 ? 0 : heldShare * elapsedNanos / acquisitions / 1_000;
+            return new LockUsage(heldShare, (double) queued / samples, meanHoldMicros);
+        }
+    }
+}
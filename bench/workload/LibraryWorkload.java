@@ -0,0 +1,233 @@
+package workload;
+
+import benchmarks.LibraryFixtures;
+import entities.Library;
+import entities.items.LibraryItem;
+import entities.people.Member;
+import metrics.LatencyHistogram;
+import metrics.LatencySnapshot;
+import services.BorrowingService;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+/**
+ * Macro-benchmark that drives a synthetic {@link Library} with a realistic mix of searches, borrows, returns,
+ * renewals and reports from many threads at once.
+ * <p>
+ * The load is open-loop: a dispatcher issues requests on a fixed schedule regardless of how fast earlier ones
+ * finish, and each latency is measured from the request's scheduled start. When the library falls behind, the
+ * queueing delay shows up in the percentiles instead of silently lowering the offered load. Item popularity
+ * follows a Zipf distribution, so a few titles see most of the borrowing contention.
+ * <p>
+ * Usage: {@code LibraryWorkload [key=value ...]} with keys {@code items}, {@code members}, {@code threads},
+ * {@code rate}, {@code duration}, {@code warmup}, {@code zipf}, {@code seed}, {@code types} and {@code ops};
+ * see {@link WorkloadConfig}.
+ */
+public class LibraryWorkload {
+    private static final int RENEWAL_DAYS = 7;
+    private static final long DRAIN_TIMEOUT_SECONDS = 30;
+    private static final Pattern BORROW_FAILURE_PREFIX = Pattern.compile("^Borrow failed for item \\S+ by member -?\\d+: ");
+
+    private final WorkloadConfig config;
+    private final Library library;
+    private final List<LibraryItem> itemsByPopularity;
+    private final List<Member> members;
+    private final ZipfDistribution popularity;
+    private final WorkloadOperation[] operationPattern;
+    private final Queue<String> loans = new ConcurrentLinkedQueue<>();
+
+    private final Map<WorkloadOperation, LatencyHistogram> latencies = new EnumMap<>(WorkloadOperation.class);
+    private final Map<WorkloadOperation, LongAdder> successes = new EnumMap<>(WorkloadOperation.class);
+    private final ConcurrentMap<String, LongAdder> errors = new ConcurrentHashMap<>();
+
+    public static void main(String[] args) throws InterruptedException {
+        WorkloadConfig config = WorkloadConfig.parse(args);
+        System.out.println("Workload: " + config);
+
+        LibraryWorkload workload = new LibraryWorkload(config);
+        System.out.println(workload.run());
+    }
+
+    public LibraryWorkload(WorkloadConfig config) {
+        this.config = config;
+
+        List<LibraryItem> items = LibraryFixtures.createItems(config.items(), config.seed(), config.itemMix());
+        this.members = LibraryFixtures.createMembers(config.members());
+        this.library = LibraryFixtures.createLibrary(items, members);
+
+        // Popularity ranks are shuffled across the catalog so that every item type has hot and cold titles
+        this.itemsByPopularity = new ArrayList<>(items);
+        Collections.shuffle(itemsByPopularity, new Random(config.seed()));
+        this.popularity = new ZipfDistribution(items.size(), config.zipfExponent());
+
+        List<WorkloadOperation> pattern = new ArrayList<>();
+        new EnumMap<>(config.operationMix()).forEach((operation, weight) -> pattern.addAll(Collections.nCopies(weight, operation)));
+        this.operationPattern = pattern.toArray(WorkloadOperation[]::new);
+
+        for (WorkloadOperation operation : WorkloadOperation.values()) {
+            latencies.put(operation, new LatencyHistogram());
+            successes.put(operation, new LongAdder());
+        }
+    }
+
+    /**
+     * Runs the warm-up and the measured interval, waits for queued requests to finish and returns the report.
+     */
+    public String run() throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(config.threads(), config.threads(), 0L,
+                TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), new WorkloadThreadFactory());
+        executor.prestartAllCoreThreads();
+
+        Random random = new Random(config.seed());
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(config.warmupSeconds());
+        long end = measureStart + TimeUnit.SECONDS.toNanos(config.durationSeconds());
+
+        for (long n = 0; ; n++) {
+            long intendedStart = start + n * 1_000_000_000L / config.ratePerSecond();
+            if (intendedStart >= end)
+                break;
+
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0)
+                LockSupport.parkNanos(wait);
+
+            WorkloadOperation operation = operationPattern[random.nextInt(operationPattern.length)];
+            boolean measured = intendedStart >= measureStart;
+            executor.execute(() -> execute(operation, intendedStart, measured));
+        }
+
+        executor.shutdown();
+        int abandoned = executor.awaitTermination(DRAIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                ? 0
+                : executor.shutdownNow().size();
+        return report(System.nanoTime() - measureStart, abandoned);
+    }
+
+    private void execute(WorkloadOperation operation, long intendedStartNanos, boolean measured) {
+        String error;
+        try {
+            error = perform(operation, ThreadLocalRandom.current());
+        } catch (RuntimeException e) {
+            error = e.getClass().getSimpleName() + ": " + e.getMessage();
+        }
+
+        if (!measured)
+            return;
+
+        long latency = System.nanoTime() - intendedStartNanos;
+        latencies.get(operation).record(latency);
+        if (error == null)
+            successes.get(operation).increment();
+        else
+            errors.computeIfAbsent(operation + ": " + error, key -> new LongAdder()).increment();
+    }
+
+    // Returns null on success, otherwise the reason the library gave for refusing the request
+    private String perform(WorkloadOperation operation, Random random) {
+        return switch (operation) {
+            case SEARCH -> {
+                library.searchItems(LibraryFixtures.randomKeyword(random));
+                yield null;
+            }
+            case BORROW -> {
+                LibraryItem item = popularItem(random);
+                Member member = members.get(random.nextInt(members.size()));
+                BorrowingService.BorrowResult result = library.borrowItem(item.getId(), member);
+                if (!result.isSuccess())
+                    yield BORROW_FAILURE_PREFIX.matcher(result.getMessage()).replaceFirst("");
+                loans.add(item.getId());
+                yield null;
+            }
+            case RETURN -> {
+                String id = loans.poll();
+                yield library.returnItem(id != null ? id : popularItem(random).getId())
+                        ? null
+                        : "Item has no active loan";
+            }
+            case RENEW -> library.renewItem(popularItem(random).getId(), RENEWAL_DAYS)
+                    ? null
+                    : "Item is not on loan or not renewable";
+            case REPORT -> {
+                library.generateLibraryReport();
+                yield null;
+            }
+        };
+    }
+
+    private LibraryItem popularItem(Random random) {
+        return itemsByPopularity.get(popularity.sample(random));
+    }
+
+    private String report(long elapsedNanos, int abandoned) {
+        double seconds = elapsedNanos / 1e9;
+        Map<WorkloadOperation, LatencySnapshot> snapshots = new EnumMap<>(WorkloadOperation.class);
+        latencies.forEach((operation, histogram) -> snapshots.put(operation, histogram.snapshot()));
+        LatencySnapshot all = snapshots.values().stream().reduce(LatencySnapshot.empty(), LatencySnapshot::merge);
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Completed %d requests in %.1f s: %.1f ops/s (target %d ops/s), %d abandoned%n%n",
+                all.getCount(), seconds, all.getCount() / seconds, config.ratePerSecond(), abandoned));
+
+        report.append(String.format("%-8s %10s %10s %10s %10s %10s %10s %10s %10s%n",
+                "op", "count", "ok", "ops/s", "p50 us", "p90 us", "p99 us", "p99.9 us", "max us"));
+        for (WorkloadOperation operation : WorkloadOperation.values())
+            appendLatencyRow(report, operation.name(), snapshots.get(operation), successes.get(operation).sum(), seconds);
+        long totalSuccesses = successes.values().stream().mapToLong(LongAdder::sum).sum();
+        appendLatencyRow(report, "ALL", all, totalSuccesses, seconds);
+
+        report.append(String.format("%nLatency histogram, all operations%n"));
+        appendHistogram(report, all);
+
+        report.append(String.format("%nErrors%n"));
+        if (errors.isEmpty())
+            report.append(String.format("  none%n"));
+        errors.entrySet().stream()
+                .sorted(Map.Entry.<String, LongAdder>comparingByValue(Comparator.comparingLong(LongAdder::sum)).reversed())
+                .forEach(entry -> report.append(String.format("  %10d  %s%n", entry.getValue().sum(), entry.getKey())));
+        return report.toString();
+    }
+
+    private static void appendLatencyRow(StringBuilder report, String name, LatencySnapshot snapshot, long ok, double seconds) {
+        report.append(String.format("%-8s %10d %10d %10.1f %10d %10d %10d %10d %10d%n",
+                name, snapshot.getCount(), ok, snapshot.getCount() / seconds,
+                micros(snapshot.p50Nanos()), micros(snapshot.percentileNanos(90)),
+                micros(snapshot.p99Nanos()), micros(snapshot.p999Nanos()), micros(snapshot.getMaxNanos())));
+    }
+
+    // One row per power of two microseconds
+    private static void appendHistogram(StringBuilder report, LatencySnapshot snapshot) {
+        long below = 0;
+        for (long upperMicros = 1; below < snapshot.getCount(); upperMicros <<= 1) {
+            long atOrBelow = snapshot.countAtOrBelow(TimeUnit.MICROSECONDS.toNanos(upperMicros) - 1);
+            long rowCount = atOrBelow - below;
+            below = atOrBelow;
+            if (rowCount == 0)
+                continue;
+
+            double share = 100.0 * rowCount / snapshot.getCount();
+            report.append(String.format("  %8d - %-8d us %10d %6.2f%% %s%n", upperMicros / 2, upperMicros,
+                    rowCount, share, "#".repeat((int) Math.round(share / 2))));
+        }
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    private static class WorkloadThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "workload-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
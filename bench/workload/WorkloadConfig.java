@@ -0,0 +1,83 @@
+package workload;
+
+import benchmarks.LibraryFixtures;
+import enums.LibraryItemType;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Settings for {@link LibraryWorkload}, read from {@code key=value} arguments. Mixes are relative weights
+ * written as {@code NAME:weight} pairs separated by commas, for example {@code ops=search:60,borrow:20}.
+ */
+public record WorkloadConfig(int items, int members, int threads, int ratePerSecond, int durationSeconds,
+                             int warmupSeconds, double zipfExponent, long seed,
+                             Map<LibraryItemType, Integer> itemMix,
+                             Map<WorkloadOperation, Integer> operationMix) {
+
+    public static final Map<WorkloadOperation, Integer> DEFAULT_OPERATION_MIX = Map.of(
+            WorkloadOperation.SEARCH, 55,
+            WorkloadOperation.BORROW, 20,
+            WorkloadOperation.RETURN, 17,
+            WorkloadOperation.RENEW, 6,
+            WorkloadOperation.REPORT, 2);
+
+    public WorkloadConfig {
+        if (items <= 0 || members <= 0 || threads <= 0 || ratePerSecond <= 0 || durationSeconds <= 0 || warmupSeconds < 0)
+            throw new IllegalArgumentException("Sizes, threads, rate and duration must be positive");
+        itemMix = Map.copyOf(itemMix);
+        operationMix = Map.copyOf(operationMix);
+    }
+
+    public static WorkloadConfig parse(String... args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0)
+                throw new IllegalArgumentException("Expected key=value but got: " + arg);
+            values.put(arg.substring(0, separator).trim().toLowerCase(Locale.ROOT), arg.substring(separator + 1).trim());
+        }
+
+        return new WorkloadConfig(
+                Integer.parseInt(values.getOrDefault("items", "50000")),
+                Integer.parseInt(values.getOrDefault("members", "5000")),
+                Integer.parseInt(values.getOrDefault("threads", "16")),
+                Integer.parseInt(values.getOrDefault("rate", "5000")),
+                Integer.parseInt(values.getOrDefault("duration", "30")),
+                Integer.parseInt(values.getOrDefault("warmup", "5")),
+                Double.parseDouble(values.getOrDefault("zipf", "1.0")),
+                Long.parseLong(values.getOrDefault("seed", String.valueOf(LibraryFixtures.DEFAULT_SEED))),
+                values.containsKey("types")
+                        ? parseMix(values.get("types"), LibraryItemType.class)
+                        : LibraryFixtures.DEFAULT_MIX,
+                values.containsKey("ops")
+                        ? parseMix(values.get("ops"), WorkloadOperation.class)
+                        : DEFAULT_OPERATION_MIX);
+    }
+
+    private static <E extends Enum<E>> Map<E, Integer> parseMix(String spec, Class<E> type) {
+        Map<E, Integer> mix = new EnumMap<>(type);
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.split(":");
+            if (parts.length != 2)
+                throw new IllegalArgumentException("Expected NAME:weight but got: " + entry);
+            int weight = Integer.parseInt(parts[1].trim());
+            if (weight < 0)
+                throw new IllegalArgumentException("Weight must not be negative: " + entry);
+            if (weight > 0)
+                mix.put(Enum.valueOf(type, parts[0].trim().toUpperCase(Locale.ROOT)), weight);
+        }
+        if (mix.isEmpty())
+            throw new IllegalArgumentException("Mix must have at least one positive weight: " + spec);
+        return mix;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d items %s, %d members, %d threads, %d ops/s for %d s (+%d s warm-up), zipf %.2f, ops %s",
+                items, new EnumMap<>(itemMix), members, threads, ratePerSecond, durationSeconds, warmupSeconds,
+                zipfExponent, new EnumMap<>(operationMix));
+    }
+}
@@ -0,0 +1,5 @@
+package workload;
+
+public enum WorkloadOperation {
+    SEARCH, BORROW, RETURN, RENEW, REPORT
+}
@@ -2,22 +2,35 @@ package entities;
 
 import entities.items.Book;
 import entities.items.DVD;
+import entities.items.ItemIdDictionary;
 import entities.items.LibraryItem;
 import entities.items.Magazine;
 import entities.people.Member;
+import entities.people.MemberRegistry;
+import entities.transactions.BorrowHistoryStore;
 import entities.transactions.BorrowRecord;
 import enums.LibraryItemType;
+import enums.MemberStatus;
 import exceptions.BorrowException;
 import exceptions.ItemNotFoundException;
+import interfaces.LibraryChangeListener;
 import interfaces.LoanPolicy;
+import metrics.*;
 import services.BorrowingService;
+import services.ReservationService;
+import util.StringPool;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.Serializable;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -26,23 +39,44 @@ import java.util.stream.Stream;
 
 public class Library implements Serializable {
     private static final long serialVersionUID = 1L;
+    private static final int OPEN_LOANS_INITIAL_CAPACITY = 1024;
 
     private final transient BorrowingService borrowingService;
+    private final transient ReservationService reservationService;
 
     private final static int MAX_REPORT_ITEMS = 5;
 
+    // Only time anything while lock instrumentation is enabled
+    private transient LockMonitor itemsMonitor = new LockMonitor("Library.items");
+    private transient LockMonitor itemMonitor = new LockMonitor("Library.item");
+
     private final List<LibraryItem> items;
-    private final List<Member> members;
+    // Id to dense ordinal for every item ever added, and which of them are in the catalog
+    private final ItemIdDictionary itemIds;
+    private final MemberRegistry members;
+    // Open loans; returned ones move to the history store
     private final List<BorrowRecord> borrowRecords;
+    // Open loan of each item by ordinal; replaced by a larger copy when an ordinal falls past its end. Read without
+    // a lock, changed under the library's monitor
+    private volatile AtomicReferenceArray<BorrowRecord> openLoansByItem;
+    private final BorrowHistoryStore borrowHistory;
 
     private final AtomicInteger totalBorrowOperations = new AtomicInteger(0);
     private final ConcurrentHashMap<LibraryItemType, AtomicInteger> borrowCountByType;
 
+    private transient volatile List<LibraryChangeListener> changeListeners;
+
     public Library() {
         borrowingService = new BorrowingService();
+        reservationService = ReservationService.attachTo(borrowingService);
+        reservationService.addHoldListener(hold -> notifyListeners(listener -> listener.holdReady(hold)));
+        reservationService.addItemListener(item -> notifyListeners(listener -> listener.itemUpdated(item)));
         this.items = new CopyOnWriteArrayList<>();
-        this.members = new CopyOnWriteArrayList<>();
+        this.members = new MemberRegistry();
         this.borrowRecords = new CopyOnWriteArrayList<>();
+        this.itemIds = new ItemIdDictionary();
+        this.openLoansByItem = new AtomicReferenceArray<>(OPEN_LOANS_INITIAL_CAPACITY);
+        this.borrowHistory = new BorrowHistoryStore(itemIds);
 
         this.borrowCountByType = new ConcurrentHashMap<>();
         for (LibraryItemType type : LibraryItemType.values()) {
@@ -54,24 +88,124 @@ public class Library implements Serializable {
         return borrowingService;
     }
 
+    public ReservationService getReservationService() {
+        return reservationService;
+    }
+
+    /**
+     * Loans that have been returned, stored column by column for analytics.
+     */
+    public BorrowHistoryStore getBorrowHistory() {
+        return borrowHistory;
+    }
+
+    public int getTotalBorrowOperations() {
+        return totalBorrowOperations.get();
+    }
+
+    public Map<LibraryItemType, Integer> getBorrowCountByType() {
+        Map<LibraryItemType, Integer> counts = new EnumMap<>(LibraryItemType.class);
+        borrowCountByType.forEach((type, count) -> counts.put(type, count.get()));
+        return counts;
+    }
+
+    public void addChangeListener(LibraryChangeListener listener) {
+        changeListeners().add(Objects.requireNonNull(listener, "Listener cannot be null"));
+    }
+
+    public void removeChangeListener(LibraryChangeListener listener) {
+        changeListeners().remove(listener);
+    }
+
+    private List<LibraryChangeListener> changeListeners() {
+        List<LibraryChangeListener> listeners = changeListeners;
+        if (listeners == null) {
+            synchronized (this) {
+                listeners = changeListeners;
+                if (listeners == null) {
+                    listeners = new CopyOnWriteArrayList<>();
+                    changeListeners = listeners;
+                }
+            }
+        }
+        return listeners;
+    }
+
+    // Monitors keep no state worth saving; a deserialized library starts with fresh ones
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        itemsMonitor = new LockMonitor("Library.items");
+        itemMonitor = new LockMonitor("Library.item");
+    }
+
+    private void notifyListeners(Consumer<LibraryChangeListener> event) {
+        List<LibraryChangeListener> listeners = changeListeners;
+        if (listeners == null)
+            return;
+
+        for (LibraryChangeListener listener : listeners) {
+            try {
+                event.accept(listener);
+            } catch (RuntimeException e) {
+                System.err.println("Change listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Fills an empty library with data loaded from storage. Each collection and its index is built as a
+     * separate task on {@code executor}. Listeners are not notified because the data is already persisted.
+     */
+    public void restore(Collection<? extends LibraryItem> loadedItems, Collection<Member> loadedMembers,
+                        Collection<BorrowRecord> activeRecords, Executor executor) {
+        if (!items.isEmpty() || !members.isEmpty() || !borrowRecords.isEmpty())
+            throw new IllegalStateException("Library must be empty before restoring");
+
+        CompletableFuture.allOf(
+                CompletableFuture.runAsync(() -> {
+                    for (LibraryItem item : loadedItems)
+                        itemIds.add(item);
+                    items.addAll(loadedItems);
+                }, executor),
+                CompletableFuture.runAsync(() -> members.addAll(loadedMembers), executor),
+                CompletableFuture.runAsync(() -> {
+                    borrowRecords.addAll(activeRecords);
+                    for (BorrowRecord record : activeRecords)
+                        putOpenLoan(itemIds.intern(record.getItem()), record);
+                    borrowingService.addBorrowRecords(activeRecords);
+                }, executor)
+        ).join();
+    }
+
     public boolean addItem(LibraryItem item) {
         if (item == null || item.getId() == null)
             return false;
 
+        long request = itemsMonitor.beforeAcquire();
         synchronized (items) {
-            boolean exists = items.stream().anyMatch(b -> b.equals(item));
-            if (exists)
-                return false;
-
-            return this.items.add(item);
+            long acquired = itemsMonitor.acquired(request, "addItem");
+            try {
+                if (itemIds.add(item) < 0)
+                    return false;
+
+                this.items.add(item);
+            } finally {
+                itemsMonitor.released(acquired, "addItem");
+            }
         }
+        notifyListeners(listener -> listener.itemAdded(item));
+        return true;
     }
 
+    /**
+     * Registers a member. Returns {@code false} if another member already has the same id or email.
+     */
     public boolean addMember(Member member) {
-        if (member == null)
+        if (member == null || !members.add(member))
             return false;
 
-        return members.add(member);
+        notifyListeners(listener -> listener.memberAdded(member));
+        return true;
     }
 
     public int addMultipleItems(LibraryItem... items) {
@@ -87,46 +221,114 @@ public class Library implements Serializable {
     }
 
     public boolean removeItem(String id) {
-        return this.items.removeIf(b -> b.getId().equals(id));
+        Optional<LibraryItem> item;
+        long request = itemsMonitor.beforeAcquire();
+        synchronized (items) {
+            long acquired = itemsMonitor.acquired(request, "removeItem");
+            try {
+                item = findItemById(id);
+                if (item.isEmpty() || !itemIds.remove(id) || !this.items.remove(item.get()))
+                    return false;
+            } finally {
+                itemsMonitor.released(acquired, "removeItem");
+            }
+        }
+        notifyListeners(listener -> listener.itemRemoved(item.get()));
+        return true;
     }
 
     public Book searchBook(String title, String author) {
-        if (items == null || items.isEmpty())
-            return null;
+        return Instrumentation.timed(Operation.SEARCH, "Library.searchBook", "title", title, "author", author,
+                new SearchEvent(), (event, match) -> describeSearch(event, "searchBook", title + " / " + author,
+                        match == null ? 0 : 1), () -> {
+            if (items == null || items.isEmpty())
+                return null;
 
-        return getItemsByType(LibraryItemType.BOOK).stream()
-                .map(item -> (Book) item)
-                .filter(book -> book.getTitle().toLowerCase().contains(title.toLowerCase()) ||
-                        book.getAuthor().toLowerCase().contains(author.toLowerCase()))
-                .findFirst().orElse(null);
+            return getItemsByType(LibraryItemType.BOOK).stream()
+                    .map(item -> (Book) item)
+                    .filter(book -> book.getTitle().toLowerCase().contains(title.toLowerCase()) ||
+                            book.getAuthor().toLowerCase().contains(author.toLowerCase()))
+                    .findFirst().orElse(null);
+        });
     }
 
     public List<LibraryItem> searchItems(String keyword) {
-        if (items == null || items.isEmpty())
-            return null;
-        return items.stream()
-                .filter(item -> item.getTitle().toLowerCase().contains(keyword.toLowerCase()))
-                .toList();
-
+        return Instrumentation.timed(Operation.SEARCH, "Library.searchItems", "keyword", keyword, null, null,
+                new SearchEvent(), (event, matches) -> describeSearch(event, "searchItems", keyword, matches), () -> {
+            if (items == null || items.isEmpty())
+                return null;
+            return items.stream()
+                    .filter(item -> item.getTitle().toLowerCase().contains(keyword.toLowerCase()))
+                    .toList();
+        });
     }
 
     public List<Book> findAllBookByAuthor(String author) {
-        if (items == null || items.isEmpty() || author == null || author.isBlank())
-            return null;
-        return getItemsByType(LibraryItemType.BOOK).stream()
-                .map(item -> (Book) item)
-                .filter(book -> book.getAuthor().equals(author))
-                .toList();
+        return Instrumentation.timed(Operation.SEARCH, "Library.findAllBookByAuthor", "author", author, null, null,
+                new SearchEvent(), (event, matches) -> describeSearch(event, "findAllBookByAuthor", author, matches),
+                () -> {
+            if (items == null || items.isEmpty() || author == null || author.isBlank())
+                return null;
+            return getItemsByType(LibraryItemType.BOOK).stream()
+                    .map(item -> (Book) item)
+                    .filter(book -> book.getAuthor().equals(author))
+                    .toList();
+        });
     }
 
     public Optional<LibraryItem> findItemById(String id) {
-        if (items == null || items.isEmpty() || id == null || id.isBlank())
+        if (id == null || id.isBlank())
             return Optional.empty();
 
-        return items.stream()
-                .filter(item -> item.getId().equals(id))
-                .findFirst();
+        return itemIds.find(id);
+    }
+
+    /**
+     * The dense ordinal of {@code id}, or {@code -1} if no item with that id was ever added.
+     */
+    public int getItemOrdinal(String id) {
+        return itemIds.ordinalOf(id);
+    }
+
+    public ItemIdDictionary getItemIds() {
+        return itemIds;
+    }
+
+    public Optional<Member> findMemberById(int id) {
+        return members.findById(id);
+    }
+
+    public Optional<Member> findMemberByEmail(String email) {
+        return members.findByEmail(email);
+    }
+
+    public MemberRegistry getMemberRegistry() {
+        return members;
+    }
+
+    /**
+     * Changes a registered member's status. Returns {@code false} if no member has {@code id}.
+     */
+    public boolean setMemberStatus(int id, MemberStatus status) {
+        Optional<Member> member = members.findById(id);
+        if (member.isEmpty())
+            return false;
+
+        member.get().setStatus(status);
+        notifyListeners(listener -> listener.memberUpdated(member.get()));
+        return true;
+    }
+
+    /**
+     * Gives a registered member a new email. Returns {@code false} if no member has {@code id} or another member
+     * already uses the address.
+     */
+    public boolean changeMemberEmail(int id, String email) {
+        if (!members.changeEmail(id, email))
+            return false;
 
+        members.findById(id).ifPresent(member -> notifyListeners(listener -> listener.memberUpdated(member)));
+        return true;
     }
 
     public List<LibraryItem> findItems(Predicate<LibraryItem> predicate) {
@@ -139,6 +341,13 @@ public class Library implements Serializable {
     }
 
     public List<LibraryItem> searchItemsWithMethodRef(String keyword) {
+        return Instrumentation.timed(Operation.SEARCH, "Library.searchItemsWithMethodRef", "keyword", keyword,
+                null, null, new SearchEvent(),
+                (event, matches) -> describeSearch(event, "searchItemsWithMethodRef", keyword, matches),
+                () -> safeSearch(keyword));
+    }
+
+    private List<LibraryItem> safeSearch(String keyword) {
         // Check if keyword is null/empty after trimming or items collection is null
         if (keyword == null || keyword.trim().isEmpty() || items == null) {
             return Collections.emptyList();
@@ -225,13 +434,32 @@ public class Library implements Serializable {
     }
 
     public Optional<BorrowRecord> findActiveBorrowRecord(String id) {
-        if (borrowRecords == null || borrowRecords.isEmpty() || id == null || id.isBlank())
+        int ordinal = itemIds.ordinalOf(id);
+        if (ordinal < 0)
             return Optional.empty();
 
-        return borrowRecords.stream()
-                .filter(borrowRecord -> borrowRecord.getItem().getId().equals(id) &&
-                        borrowRecord.getReturnDate() == null)
-                .findFirst();
+        AtomicReferenceArray<BorrowRecord> loans = openLoansByItem;
+        return ordinal < loans.length() ? Optional.ofNullable(loans.get(ordinal)) : Optional.empty();
+    }
+
+    private synchronized void putOpenLoan(int ordinal, BorrowRecord record) {
+        AtomicReferenceArray<BorrowRecord> loans = openLoansByItem;
+        if (ordinal >= loans.length()) {
+            int length = loans.length();
+            while (length <= ordinal)
+                length *= 2;
+            AtomicReferenceArray<BorrowRecord> larger = new AtomicReferenceArray<>(length);
+            for (int i = 0; i < loans.length(); i++)
+                larger.set(i, loans.get(i));
+            openLoansByItem = loans = larger;
+        }
+        loans.set(ordinal, record);
+    }
+
+    private synchronized void removeOpenLoan(int ordinal, BorrowRecord record) {
+        AtomicReferenceArray<BorrowRecord> loans = openLoansByItem;
+        if (ordinal >= 0 && ordinal < loans.length())
+            loans.compareAndSet(ordinal, record, null);
     }
 
     public List<LibraryItem> getAvailableItems() {
@@ -292,41 +520,46 @@ public class Library implements Serializable {
     }
 
     public String generateLibraryReport() {
-        long itemCount = items.size();
-        long availableCount = getAvailableItems().size();
-
-        StringBuilder report = new StringBuilder();
-        report.append("=".repeat(50)).append("\n");
-        report.append("LIBRARY REPORT\n");
-        report.append("=".repeat(50)).append("\n\n");
-
-        report.append(String.format("Total Items: %d%n", itemCount));
-        report.append(String.format("Available: %d%n", availableCount));
-        report.append(String.format("Borrowed: %d%n", itemCount - availableCount));
-
-        report.append("\nLatest " + Math.min(MAX_REPORT_ITEMS, items.size()) + " items:\n");
-        items.stream().limit(MAX_REPORT_ITEMS)
-                .forEach(item -> {
-                    report.append("  • ").append(item.getTitle())
-                            .append(" (").append(item.getItemType()).append(")\n");
-                });
-        List<BorrowRecord> overdue = borrowRecords.stream()
-                .filter(BorrowRecord::isOverdue)
-                .toList();
+        long start = LibraryMetrics.start();
+        try {
+            long itemCount = items.size();
+            long availableCount = getAvailableItems().size();
+
+            StringBuilder report = new StringBuilder();
+            report.append("=".repeat(50)).append("\n");
+            report.append("LIBRARY REPORT\n");
+            report.append("=".repeat(50)).append("\n\n");
+
+            report.append(String.format("Total Items: %d%n", itemCount));
+            report.append(String.format("Available: %d%n", availableCount));
+            report.append(String.format("Borrowed: %d%n", itemCount - availableCount));
+
+            report.append("\nLatest " + Math.min(MAX_REPORT_ITEMS, items.size()) + " items:\n");
+            items.stream().limit(MAX_REPORT_ITEMS)
+                    .forEach(item -> {
+                        report.append("  • ").append(item.getTitle())
+                                .append(" (").append(item.getItemType()).append(")\n");
+                    });
+            List<BorrowRecord> overdue = borrowRecords.stream()
+                    .filter(BorrowRecord::isOverdue)
+                    .toList();
+
+            if (!overdue.isEmpty()) {
+                report.append("OVERDUE ITEMS:\n");
+                report.append("-".repeat(40)).append("\n");
+                overdue.forEach(record ->
+                        report.append(String.format("  • %s - Due: %s (Overdue: %d days)\n",
+                                record.getItem().getTitle(),
+                                record.getDueDate().format(DateTimeFormatter.ISO_LOCAL_DATE),
+                                record.getDaysOverdue()))
+                );
+                report.append("\n");
+            }
 
-        if (!overdue.isEmpty()) {
-            report.append("OVERDUE ITEMS:\n");
-            report.append("-".repeat(40)).append("\n");
-            overdue.forEach(record ->
-                    report.append(String.format("  • %s - Due: %s (Overdue: %d days)\n",
-                            record.getItem().getTitle(),
-                            record.getDueDate().format(DateTimeFormatter.ISO_LOCAL_DATE),
-                            record.getDaysOverdue()))
-            );
-            report.append("\n");
+            return report.toString();
+        } finally {
+            LibraryMetrics.record(Operation.REPORT, start);
         }
-
-        return report.toString();
     }
 
     public double calculateTotalValue(LibraryItem item) {
@@ -342,15 +575,18 @@ public class Library implements Serializable {
     }
 
     public List<Book> searchBooks(String keyword) {
-        if (items == null || items.isEmpty() || keyword == null || keyword.isBlank())
-            return null;
-
-        return getItemsByType(LibraryItemType.BOOK).stream()
-                .map(item -> (Book) item)
-                .filter(book -> book.getTitle().toLowerCase().contains(keyword.toLowerCase()) ||
-                        book.getAuthor().toLowerCase().contains(keyword.toLowerCase()) ||
-                        book.getIsbn().toLowerCase().contains(keyword.toLowerCase()))
-                .collect(Collectors.toList());
+        return Instrumentation.timed(Operation.SEARCH, "Library.searchBooks", "keyword", keyword, null, null,
+                new SearchEvent(), (event, matches) -> describeSearch(event, "searchBooks", keyword, matches), () -> {
+            if (items == null || items.isEmpty() || keyword == null || keyword.isBlank())
+                return null;
+
+            return getItemsByType(LibraryItemType.BOOK).stream()
+                    .map(item -> (Book) item)
+                    .filter(book -> book.getTitle().toLowerCase().contains(keyword.toLowerCase()) ||
+                            book.getAuthor().toLowerCase().contains(keyword.toLowerCase()) ||
+                            book.getIsbn().toLowerCase().contains(keyword.toLowerCase()))
+                    .collect(Collectors.toList());
+        });
     }
 
     public LibraryItem getItemByIdOrThrow(String id) {
@@ -367,10 +603,9 @@ public class Library implements Serializable {
     }
 
     public BorrowingService.BorrowResult borrowItem(String itemId) {
-        if (members.isEmpty())
-            throw new IllegalStateException("No members available");
-
-        return borrowItem(itemId, members.getFirst());
+        Member member = members.first()
+                .orElseThrow(() -> new IllegalStateException("No members available"));
+        return borrowItem(itemId, member);
     }
 
     public BorrowingService.BorrowResult borrowItem(LibraryItem item, Member member) {
@@ -379,17 +614,39 @@ public class Library implements Serializable {
     }
 
     public BorrowingService.BorrowResult borrowItem(String itemId, Member member, Integer customDays) {
-        Optional<LibraryItem> item = findItemById(itemId);
-        if (item.isEmpty())
-            return BorrowingService.BorrowResult.failure("Item not found");
-
-        synchronized (item.get()) {
-            BorrowingService.BorrowResult result = borrowingService.borrowItem(item.get(), member, customDays);
-            if (result.isSuccess())
-                borrowRecords.add(result.getRecord());
+        return Instrumentation.timed(Operation.BORROW, "Library.borrowItem", "itemId", itemId,
+                "memberId", member != null ? member.getId() : null, new BorrowEvent(),
+                (event, result) -> describeLoan(event, itemId, findItemById(itemId).orElse(null), member,
+                        result == null ? null : result.isSuccess() ? "borrowed" : result.getMessage()), () -> {
+            Optional<LibraryItem> item = findItemById(itemId);
+            if (item.isEmpty())
+                return BorrowingService.BorrowResult.failure("Item not found");
+            SlowOperationLog.phase(OperationPhase.VALIDATION);
+
+            BorrowingService.BorrowResult result;
+            long request = itemMonitor.beforeAcquire();
+            synchronized (item.get()) {
+                long acquired = itemMonitor.acquired(request, "borrowItem");
+                SlowOperationLog.phase(OperationPhase.LOCK_WAIT);
+                try {
+                    result = borrowingService.borrowItem(item.get(), member, customDays);
+                    if (result.isSuccess()) {
+                        borrowRecords.add(result.getRecord());
+                        putOpenLoan(itemIds.ordinalOf(itemId), result.getRecord());
+                    }
+                } finally {
+                    itemMonitor.released(acquired, "borrowItem");
+                }
+            }
 
+            if (result.isSuccess()) {
+                totalBorrowOperations.incrementAndGet();
+                borrowCountByType.get(item.get().getItemType()).incrementAndGet();
+                notifyListeners(listener -> listener.itemBorrowed(result.getRecord()));
+            }
+            SlowOperationLog.phase(OperationPhase.PERSISTENCE);
             return result;
-        }
+        });
     }
 
     public int borrowMultipleItems(Member member, String... ids) {
@@ -419,15 +676,105 @@ public class Library implements Serializable {
     }
 
     public boolean returnItem(String id) {
-        if (id == null || id.isBlank())
-            return false;
+        long start = LibraryMetrics.start();
+        ReturnEvent event = new ReturnEvent();
+        event.begin();
+        BorrowRecord returned = null;
+        String outcome = "error";
+        try {
+            if (id == null || id.isBlank()) {
+                outcome = "Invalid item id";
+                return false;
+            }
 
-        return findActiveBorrowRecord(id)
-                .map(borrowRecord -> {
-                    borrowingService.returnItem(borrowRecord.getItem());
-                    return true;
-                })
-                .orElse(false);
+            Optional<BorrowRecord> record = findActiveBorrowRecord(id)
+                    .flatMap(borrowRecord -> borrowingService.returnItem(borrowRecord.getItem()));
+            if (record.isEmpty()) {
+                outcome = "No active loan";
+                return false;
+            }
+
+            returned = record.get();
+            borrowRecords.remove(returned);
+            removeOpenLoan(itemIds.ordinalOf(id), returned);
+            borrowHistory.append(returned);
+            notifyListeners(listener -> listener.itemReturned(record.get()));
+            outcome = "returned";
+            return true;
+        } finally {
+            LibraryMetrics.record(Operation.RETURN, start);
+            commitEvent(event, id, returned != null ? returned.getItem() : null,
+                    returned != null ? returned.getMember() : null, outcome);
+        }
+    }
+
+    public boolean renewItem(String id, int additionalDays) {
+        long start = LibraryMetrics.start();
+        RenewEvent event = new RenewEvent();
+        event.begin();
+        BorrowRecord loan = null;
+        String outcome = "error";
+        try {
+            if (id == null || id.isBlank() || additionalDays <= 0) {
+                outcome = "Invalid renewal";
+                return false;
+            }
+
+            Optional<BorrowRecord> record = findActiveBorrowRecord(id);
+            if (record.isEmpty()) {
+                outcome = "No active loan";
+                return false;
+            }
+
+            loan = record.get();
+            if (!borrowingService.renewBorrow(loan, additionalDays)) {
+                outcome = "Not renewable";
+                return false;
+            }
+
+            notifyListeners(listener -> listener.itemRenewed(record.get()));
+            outcome = "renewed";
+            return true;
+        } finally {
+            LibraryMetrics.record(Operation.RENEW, start);
+            event.setAdditionalDays(additionalDays);
+            commitEvent(event, id, loan != null ? loan.getItem() : null, loan != null ? loan.getMember() : null, outcome);
+        }
+    }
+
+    /**
+     * Marks the loans that have become overdue since the previous check, tells the listeners about each one and
+     * returns them. Loans that were already overdue at the previous check are not reported again.
+     */
+    public List<BorrowRecord> checkOverdue() {
+        List<BorrowRecord> newlyOverdue = borrowingService.detectNewlyOverdue();
+        for (BorrowRecord record : newlyOverdue)
+            notifyListeners(listener -> listener.itemOverdue(record));
+        return newlyOverdue;
+    }
+
+    // Event fields are only filled in when the recording wants the event, so disabled events cost almost nothing
+    private static void commitEvent(LibraryEvent event, String itemId, LibraryItem item, Member member, String result) {
+        event.end();
+        if (event.shouldCommit()) {
+            describeLoan(event, itemId, item, member, result);
+            event.commit();
+        }
+    }
+
+    private static void describeLoan(LibraryEvent event, String itemId, LibraryItem item, Member member, String result) {
+        event.setItem(itemId, item != null ? item.getItemType().name() : null);
+        event.setMemberId(member != null ? member.getId() : 0);
+        event.setResult(result);
+    }
+
+    private static void describeSearch(SearchEvent event, String method, String query, Collection<?> matches) {
+        describeSearch(event, method, query, matches == null ? 0 : matches.size());
+    }
+
+    private static void describeSearch(SearchEvent event, String method, String query, int matches) {
+        event.setQuery(method, query);
+        event.setMatches(matches);
     }
 
     public int returnMultipleItems(String... isbns) {
@@ -627,8 +974,68 @@ public class Library implements Serializable {
                     borrowRecords.stream()
                             .filter(r -> r.getReturnDate() == null)
                             .count(),
-                    recentTitles
+                    recentTitles,
+                    getLockStats()
             );
         }
+
+        /**
+         * Estimates the heap use of the library's collections from up to {@code sampleSize} evenly spaced
+         * elements of each, and breaks the item store down by item type. Each item, member and record is
+         * counted once, under the collection that owns it; references to them from other structures only
+         * count as references, and metadata strings shared through the {@link StringPool} are counted once, under
+         * the pool. The cost is independent of the library's size apart from the sample.
+         */
+        public FootprintReport estimateFootprint(int sampleSize) {
+            ObjectSizeEstimator estimator = ObjectSizeEstimator.getDefault();
+            StringPool pool = StringPool.shared();
+            Predicate<Object> shared = object -> object instanceof LibraryItem || object instanceof Member
+                    || object instanceof BorrowRecord || pool.isPooled(object);
+
+            Map<LibraryItemType, long[]> sampledByType = new EnumMap<>(LibraryItemType.class);
+            ObjectSizeEstimator.SizeSample itemSample = estimator.sample(items, sampleSize, item -> {
+                long bytes = estimator.retainedSize(item, shared);
+                long[] typeSample = sampledByType.computeIfAbsent(item.getItemType(), type -> new long[2]);
+                typeSample[0]++;
+                typeSample[1] += bytes;
+                return bytes;
+            });
+            ObjectSizeEstimator.SizeSample recordSample = estimator.sample(borrowRecords, sampleSize,
+                    record -> estimator.retainedSize(record, shared));
+
+            List<StructureFootprint> structures = new ArrayList<>(List.of(
+                    StructureFootprint.of("Library.items", estimator.listOverhead(items, items.size()), itemSample),
+                    members.estimateFootprint("Library.members", estimator, sampleSize,
+                            member -> estimator.retainedSize(member, shared)),
+                    StructureFootprint.of("Library.borrowRecords",
+                            estimator.listOverhead(borrowRecords, borrowRecords.size()), recordSample),
+                    itemIds.estimateFootprint("Library.itemIds", estimator),
+                    borrowHistory.estimateFootprint(estimator),
+                    borrowingService.estimateFootprint(estimator),
+                    pool.estimateFootprint("StringPool.shared", estimator),
+                    new StructureFootprint("Library.borrowCountByType", borrowCountByType.size(),
+                            estimator.retainedSize(borrowCountByType), 0, 0)));
+
+            List<TypeFootprint> types = new ArrayList<>();
+            sampledByType.forEach((type, typeSample) -> types.add(new TypeFootprint(type.name(),
+                    Math.round((double) typeSample[0] / itemSample.sampled() * itemSample.elements()),
+                    (double) typeSample[1] / typeSample[0])));
+
+            return new FootprintReport(structures, types);
+        }
+
+        /**
+         * Contention figures for the borrowing service's locks followed by the item list and per-item monitors.
+         * Everything but the names is zero unless lock instrumentation is enabled in {@link LibraryMetrics}. A
+         * deserialized library has no borrowing service, so only its monitors are reported.
+         */
+        public List<LockStats> getLockStats() {
+            List<LockStats> stats = new ArrayList<>();
+            if (borrowingService != null)
+                stats.addAll(borrowingService.getLockStats());
+            stats.add(itemsMonitor.stats());
+            stats.add(itemMonitor.stats());
+            return stats;
+        }
     }
 }
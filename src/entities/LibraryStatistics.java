@@ -1,5 +1,7 @@
 package entities;
 
+import metrics.LockStats;
+
 import java.util.List;
 
 public record LibraryStatistics(
@@ -8,7 +10,13 @@ public record LibraryStatistics(
         long borrowedItems,
         long totalMembers,
         long activeBorrowings,
-        List<String> recentItemTitles) {
+        List<String> recentItemTitles,
+        List<LockStats> lockStats) {
+
+    public LibraryStatistics(long totalItems, long availableItems, long borrowedItems, long totalMembers,
+                             long activeBorrowings, List<String> recentItemTitles) {
+        this(totalItems, availableItems, borrowedItems, totalMembers, activeBorrowings, recentItemTitles, List.of());
+    }
 
     public LibraryStatistics {
         if (totalItems < 0) throw new IllegalArgumentException("Total items cannot be negative");
@@ -24,6 +32,7 @@ public record LibraryStatistics(
         }
 
         recentItemTitles = List.copyOf(recentItemTitles);
+        lockStats = List.copyOf(lockStats);
     }
 
     public double getUtilizationPercentage() {
@@ -0,0 +1,36 @@
+package entities;
+
+import entities.transactions.BorrowRecord;
+import entities.transactions.Reservation;
+import enums.NotificationType;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+/**
+ * One thing a member should hear about. {@code date} is the due date of an overdue or due-soon loan and the last
+ * pick-up day of a ready hold.
+ */
+public record Notification(NotificationType type, int memberId, String memberName, String memberEmail,
+                           String itemId, String itemTitle, LocalDate date, Instant createdAt) {
+
+    public static Notification overdue(BorrowRecord record) {
+        return forLoan(NotificationType.OVERDUE, record);
+    }
+
+    public static Notification dueSoon(BorrowRecord record) {
+        return forLoan(NotificationType.DUE_SOON, record);
+    }
+
+    public static Notification holdReady(Reservation hold) {
+        return new Notification(NotificationType.HOLD_READY, hold.getMember().getId(), hold.getMember().getName(),
+                hold.getMember().getEmail(), hold.getItem().getId(), hold.getItem().getTitle(), hold.getExpiryDate(),
+                Instant.now());
+    }
+
+    private static Notification forLoan(NotificationType type, BorrowRecord record) {
+        return new Notification(type, record.getMember().getId(), record.getMember().getName(),
+                record.getMember().getEmail(), record.getItem().getId(), record.getItem().getTitle(),
+                record.getDueDate(), Instant.now());
+    }
+}
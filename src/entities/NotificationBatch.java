@@ -0,0 +1,62 @@
+package entities;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * All the notifications gathered for one member during a batching window, delivered as one message.
+ * {@code id} stays the same across delivery attempts, so a sink can recognise a retried batch.
+ */
+public record NotificationBatch(long id, int memberId, String memberName, String memberEmail,
+                                List<Notification> notifications, Instant createdAt) {
+
+    public NotificationBatch {
+        notifications = List.copyOf(notifications);
+    }
+
+    /**
+     * Renders the batch as a single line of JSON, the format of the file outbox.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(128 + notifications.size() * 160);
+        json.append("{\"id\":").append(id)
+                .append(",\"createdAt\":\"").append(createdAt)
+                .append("\",\"memberId\":").append(memberId)
+                .append(",\"memberName\":").append(quote(memberName))
+                .append(",\"memberEmail\":").append(quote(memberEmail))
+                .append(",\"notifications\":[");
+        for (int i = 0; i < notifications.size(); i++) {
+            Notification notification = notifications.get(i);
+            if (i > 0)
+                json.append(',');
+            json.append("{\"type\":\"").append(notification.type())
+                    .append("\",\"itemId\":").append(quote(notification.itemId()))
+                    .append(",\"itemTitle\":").append(quote(notification.itemTitle()))
+                    .append(",\"date\":").append(notification.date() != null ? "\"" + notification.date() + "\"" : "null")
+                    .append('}');
+        }
+        return json.append("]}").toString();
+    }
+
+    private static String quote(String value) {
+        if (value == null)
+            return "null";
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20)
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    else
+                        quoted.append(c);
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
@@ -3,6 +3,10 @@ package entities.items;
 import enums.LibraryItemType;
 import interfaces.LoanPolicy;
 import interfaces.ReservationPolicy;
+import util.StringPool;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
 
 public final class AudioBook extends LibraryItem implements LoanPolicy, ReservationPolicy {
 
@@ -18,7 +22,7 @@ public final class AudioBook extends LibraryItem implements LoanPolicy, Reservat
     }
 
     public AudioBook setNarrator(String narrator) {
-        this.narrator = narrator;
+        this.narrator = StringPool.shared().intern(narrator);
         return this;
     }
 
@@ -65,4 +69,9 @@ public final class AudioBook extends LibraryItem implements LoanPolicy, Reservat
     public LibraryItemType getItemType() {
         return LibraryItemType.AUDIO_BOOK;
     }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        narrator = StringPool.shared().intern(narrator);
+    }
 }
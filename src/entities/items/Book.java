@@ -3,8 +3,11 @@ package entities.items;
 import enums.LibraryItemType;
 import interfaces.LoanPolicy;
 import interfaces.ReservationPolicy;
+import util.LibraryClock;
+import util.StringPool;
 
-import java.time.LocalDate;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 
 public final class Book extends LibraryItem implements LoanPolicy, ReservationPolicy {
     private String isbn;
@@ -15,7 +18,7 @@ public final class Book extends LibraryItem implements LoanPolicy, ReservationPo
     public Book(String isbn, String title, String author) {
         super(LibraryItem.generateId(LibraryItemType.BOOK, isbn), title);
         this.isbn = isbn;
-        this.author = author;
+        this.author = StringPool.shared().intern(author);
     }
 
     public String getIsbn() {
@@ -27,7 +30,7 @@ public final class Book extends LibraryItem implements LoanPolicy, ReservationPo
     }
 
     public void setAuthor(String author) {
-        this.author = author;
+        this.author = StringPool.shared().intern(author);
     }
 
     public int getPublicationYear() {
@@ -94,6 +97,11 @@ public final class Book extends LibraryItem implements LoanPolicy, ReservationPo
                 .toString();
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        author = StringPool.shared().intern(author);
+    }
+
     public static class Builder {
         private String isbn;
         private String title;
@@ -108,7 +116,7 @@ public final class Book extends LibraryItem implements LoanPolicy, ReservationPo
         }
 
         public Builder setPublicationYear(int publicationYear) {
-            if (publicationYear > LocalDate.now().getYear() || publicationYear < 1800)
+            if (publicationYear > LibraryClock.today().getYear() || publicationYear < 1800)
                 throw new IllegalArgumentException("Invalid publication year");
 
             this.publicationYear = publicationYear;
@@ -4,6 +4,10 @@ import enums.LibraryItemType;
 import enums.MovieGenre;
 import interfaces.LoanPolicy;
 import interfaces.ReservationPolicy;
+import util.StringPool;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
 
 public final class DVD extends LibraryItem implements LoanPolicy, ReservationPolicy {
     private String director;
@@ -15,13 +19,13 @@ public final class DVD extends LibraryItem implements LoanPolicy, ReservationPol
 
     public DVD(String id, String title, String director) {
         super(id, title);
-        this.director = director;
+        this.director = StringPool.shared().intern(director);
         this.genre = MovieGenre.EDUCATIONAL;
     }
 
     public DVD(String id, String title, String director, MovieGenre genre, int duration) {
         super(id, title);
-        this.director = director;
+        this.director = StringPool.shared().intern(director);
         this.genre = genre;
         this.durationMinutes = duration;
     }
@@ -36,7 +40,7 @@ public final class DVD extends LibraryItem implements LoanPolicy, ReservationPol
     }
 
     public void setDirector(String director) {
-        this.director = director;
+        this.director = StringPool.shared().intern(director);
     }
 
     public int getDurationMinutes() {
@@ -68,7 +72,7 @@ public final class DVD extends LibraryItem implements LoanPolicy, ReservationPol
     }
 
     public void setStudio(String studio) {
-        this.studio = studio;
+        this.studio = StringPool.shared().intern(studio);
     }
 
     public double getImdbRating() {
@@ -142,4 +146,10 @@ public final class DVD extends LibraryItem implements LoanPolicy, ReservationPol
                 .append("\n\tFamily Friendly: ").append(isFamilyFriendly())
                 .toString();
     }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        director = StringPool.shared().intern(director);
+        studio = StringPool.shared().intern(studio);
+    }
 }
\ No newline at end of file
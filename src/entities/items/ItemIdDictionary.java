@@ -0,0 +1,144 @@
+package entities.items;
+
+import metrics.ObjectSizeEstimator;
+import metrics.StructureFootprint;
+
+import java.io.Serializable;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Two-way dictionary between item ids and dense int ordinals. Each id gets the next ordinal the first time it is
+ * seen and keeps it for good, even if its item is removed and added again, so structures that store ordinals
+ * instead of ids, such as the borrow history, never see one change meaning. Looking up an id hashes the string
+ * once; everything after that works with the int.
+ * <p>
+ * The dictionary also remembers which items are in the catalog: {@link #find(String)} and {@link #contains(String)}
+ * only see those, while {@link #get(int)} still resolves the ordinal of a removed item. Lookups take no lock;
+ * changes synchronize on the dictionary.
+ */
+public class ItemIdDictionary implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final Map<String, Integer> ordinals = new ConcurrentHashMap<>();
+    // Replaced by a larger copy when full; the map entry for an ordinal is published after its slots are filled
+    private volatile AtomicReferenceArray<LibraryItem> items = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private volatile AtomicReferenceArray<LibraryItem> catalogued = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private volatile int size;
+    private volatile int cataloguedCount;
+
+    /**
+     * Adds an item to the catalog and returns its ordinal, or {@code -1} if an item with the same id already is.
+     */
+    public synchronized int add(LibraryItem item) {
+        int ordinal = intern(item);
+        if (catalogued.get(ordinal) != null)
+            return -1;
+
+        items.set(ordinal, item);
+        catalogued.set(ordinal, item);
+        cataloguedCount++;
+        return ordinal;
+    }
+
+    /**
+     * Takes the item with {@code id} out of the catalog. Its ordinal stays assigned.
+     */
+    public synchronized boolean remove(String id) {
+        Integer ordinal = ordinals.get(id);
+        if (ordinal == null || catalogued.get(ordinal) == null)
+            return false;
+
+        catalogued.set(ordinal, null);
+        cataloguedCount--;
+        return true;
+    }
+
+    /**
+     * Returns the ordinal of {@code item}'s id, assigning the next one if the id is new, without adding the item
+     * to the catalog.
+     */
+    public synchronized int intern(LibraryItem item) {
+        Integer existing = ordinals.get(item.getId());
+        if (existing != null)
+            return existing;
+
+        int ordinal = size;
+        if (ordinal == items.length()) {
+            items = grow(items);
+            catalogued = grow(catalogued);
+        }
+        items.set(ordinal, item);
+        size = ordinal + 1;
+        ordinals.put(item.getId(), ordinal);
+        return ordinal;
+    }
+
+    /**
+     * The ordinal of {@code id}, or {@code -1} if it was never seen.
+     */
+    public int ordinalOf(String id) {
+        if (id == null)
+            return -1;
+        Integer ordinal = ordinals.get(id);
+        return ordinal != null ? ordinal : -1;
+    }
+
+    public String idOf(int ordinal) {
+        return get(ordinal).getId();
+    }
+
+    /**
+     * The item with {@code ordinal}, whether or not it is still in the catalog.
+     */
+    public LibraryItem get(int ordinal) {
+        if (ordinal < 0 || ordinal >= size)
+            throw new IndexOutOfBoundsException("Unknown item ordinal: " + ordinal);
+        return items.get(ordinal);
+    }
+
+    /**
+     * The catalogued item with {@code id}.
+     */
+    public Optional<LibraryItem> find(String id) {
+        int ordinal = ordinalOf(id);
+        return ordinal < 0 ? Optional.empty() : Optional.ofNullable(catalogued.get(ordinal));
+    }
+
+    public boolean contains(String id) {
+        return find(id).isPresent();
+    }
+
+    public boolean isCatalogued(int ordinal) {
+        return ordinal >= 0 && ordinal < size && catalogued.get(ordinal) != null;
+    }
+
+    /**
+     * Number of ordinals assigned; every ordinal is below it.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getCataloguedCount() {
+        return cataloguedCount;
+    }
+
+    public StructureFootprint estimateFootprint(String name, ObjectSizeEstimator estimator) {
+        int assigned = size;
+        long tables = estimator.hashMapOverhead(ordinals, ordinals.size(), false)
+                + ordinals.size() * estimator.shallowSize(Integer.class)
+                + 2 * estimator.arraySize(Object.class, items.length());
+        return new StructureFootprint(name, assigned, tables, 0, 0);
+    }
+
+    private static AtomicReferenceArray<LibraryItem> grow(AtomicReferenceArray<LibraryItem> slots) {
+        AtomicReferenceArray<LibraryItem> larger = new AtomicReferenceArray<>(slots.length() * 2);
+        for (int i = 0; i < slots.length(); i++)
+            larger.set(i, slots.get(i));
+        return larger;
+    }
+}
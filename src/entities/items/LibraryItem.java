@@ -9,10 +9,10 @@ import java.io.Serializable;
 public abstract sealed class LibraryItem implements Serializable permits Book, Magazine, DVD, ReferenceBook, AudioBook {
     private static final long serialVersionUID = 1L;
 
-    protected boolean available;
+    protected volatile boolean available;
     private final String id;
     private final String title;
-    private ItemStatus status;
+    private volatile ItemStatus status;
 
     public LibraryItem(String id, String title) {
         this.id = id;
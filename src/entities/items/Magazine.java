@@ -3,7 +3,10 @@ package entities.items;
 import enums.LibraryItemType;
 import interfaces.LoanPolicy;
 import interfaces.ReservationPolicy;
+import util.StringPool;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.time.LocalDate;
 
 public final class Magazine extends LibraryItem implements LoanPolicy, ReservationPolicy {
@@ -38,7 +41,7 @@ public final class Magazine extends LibraryItem implements LoanPolicy, Reservati
     }
 
     public void setPublisher(String publisher) {
-        this.publisher = publisher;
+        this.publisher = StringPool.shared().intern(publisher);
     }
 
     @Override
@@ -87,4 +90,8 @@ public final class Magazine extends LibraryItem implements LoanPolicy, Reservati
                 .toString();
     }
 
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        publisher = StringPool.shared().intern(publisher);
+    }
 }
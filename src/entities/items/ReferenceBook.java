@@ -1,6 +1,10 @@
 package entities.items;
 
 import enums.LibraryItemType;
+import util.StringPool;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
 
 public final class ReferenceBook extends LibraryItem {
     private String subject;
@@ -9,7 +13,7 @@ public final class ReferenceBook extends LibraryItem {
 
     public ReferenceBook(String id, String title, String subject) {
         super(generateId(LibraryItemType.REFERENCE_BOOK, id), title);
-        this.subject = subject;
+        this.subject = StringPool.shared().intern(subject);
         this.inReadingRoomOnly = true;
     }
 
@@ -18,7 +22,7 @@ public final class ReferenceBook extends LibraryItem {
     }
 
     public void setSubject(String subject) {
-        this.subject = subject;
+        this.subject = StringPool.shared().intern(subject);
     }
 
     public String getEdition() {
@@ -51,4 +55,9 @@ public final class ReferenceBook extends LibraryItem {
     public LibraryItemType getItemType() {
         return LibraryItemType.REFERENCE_BOOK;
     }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        subject = StringPool.shared().intern(subject);
+    }
 }
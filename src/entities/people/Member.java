@@ -1,6 +1,7 @@
 package entities.people;
 
 import enums.MemberStatus;
+import util.LibraryClock;
 
 import java.io.Serializable;
 import java.time.LocalDate;
@@ -19,7 +20,7 @@ public class Member implements Serializable {
         this.id = id;
         this.name = name;
         this.email = email;
-        this.membershipDate = LocalDate.now();
+        this.membershipDate = LibraryClock.today();
         this.status = MemberStatus.ACTIVE;
         this.phoneNumber = "";
     }
@@ -0,0 +1,286 @@
+package entities.people;
+
+import metrics.ObjectSizeEstimator;
+import metrics.StructureFootprint;
+
+import java.io.Serializable;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+
+/**
+ * Members by id and by email. Members are kept in the order they joined in a dense array, and ids are found
+ * through an open-addressing hash table of primitive longs, each packing a member id with its position in that
+ * array. A slot costs eight bytes and there are no per-entry objects or boxed keys, so the table stays small with
+ * millions of members. The email index enforces the uniqueness the {@code members} table requires; emails are
+ * compared ignoring case.
+ * <p>
+ * Lookups take no lock and can run while members are added or removed: every table slot is read and written
+ * whole, and a table that fills up is copied into a larger one that replaces it in a single write. The copy also
+ * closes the gaps removed members left in the array, as does filling the array while a quarter of it is gaps, so
+ * the array stays proportional to the members registered. Changes synchronize on the registry. Change a registered member's email through {@link #changeEmail(int, String)} so
+ * the index follows.
+ */
+public class MemberRegistry implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int INITIAL_CAPACITY = 64;
+    // Slot values: zero for a slot never used, TOMBSTONE for one whose member was removed
+    private static final long EMPTY = 0L;
+    private static final long TOMBSTONE = Long.MIN_VALUE;
+
+    // Replaced together, so a lookup never reads positions from one table in another's array
+    private volatile Store store = new Store(new AtomicLongArray(INITIAL_CAPACITY),
+            new AtomicReferenceArray<>(INITIAL_CAPACITY));
+    private final Map<String, Member> byEmail = new ConcurrentHashMap<>();
+    private volatile int size;
+    // Positions handed out in the current array, including those of members since removed
+    private volatile int positions;
+    private int usedSlots;
+
+    /**
+     * Registers a member. Returns {@code false} if another member already has the same id or email.
+     */
+    public synchronized boolean add(Member member) {
+        Objects.requireNonNull(member, "Member cannot be null");
+        if (findById(member.getId()).isPresent())
+            return false;
+
+        String email = emailKey(member.getEmail());
+        if (email != null && byEmail.putIfAbsent(email, member) != null)
+            return false;
+
+        Store current = store;
+        int position = positions;
+        if ((usedSlots + 1) * 4L > current.table().length() * 3L
+                || position == current.members().length() && (position - size) * 4L >= position) {
+            current = rehash(current, size + 1);
+            position = positions;
+        }
+        if (position == current.members().length()) {
+            current = new Store(current.table(), grow(current.members()));
+            store = current;
+        }
+        current.members().set(position, member);
+        positions = position + 1;
+
+        if (insert(current.table(), member.getId(), position))
+            usedSlots++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Registers members loaded from storage and returns how many were added; duplicates are skipped.
+     */
+    public synchronized int addAll(Collection<Member> loaded) {
+        if ((long) (size + loaded.size()) * 4 > store.table().length() * 3L)
+            rehash(store, size + loaded.size());
+        int added = 0;
+        for (Member member : loaded) {
+            if (add(member))
+                added++;
+        }
+        return added;
+    }
+
+    public synchronized boolean remove(int id) {
+        Store current = store;
+        int slot = slotOf(current.table(), id);
+        if (slot < 0)
+            return false;
+
+        int position = position(current.table().get(slot));
+        Member member = current.members().get(position);
+        current.table().set(slot, TOMBSTONE);
+        current.members().set(position, null);
+        String email = emailKey(member.getEmail());
+        if (email != null)
+            byEmail.remove(email, member);
+        size--;
+        return true;
+    }
+
+    /**
+     * Gives a registered member a new email. Returns {@code false} if the member is not registered or another
+     * member already uses the address.
+     */
+    public synchronized boolean changeEmail(int id, String email) {
+        Optional<Member> found = findById(id);
+        if (found.isEmpty())
+            return false;
+
+        Member member = found.get();
+        String newKey = emailKey(email);
+        String oldKey = emailKey(member.getEmail());
+        if (newKey != null && !newKey.equals(oldKey) && byEmail.putIfAbsent(newKey, member) != null)
+            return false;
+        if (oldKey != null && !oldKey.equals(newKey))
+            byEmail.remove(oldKey, member);
+        member.setEmail(email);
+        return true;
+    }
+
+    public Optional<Member> findById(int id) {
+        Store current = store;
+        int slot = slotOf(current.table(), id);
+        return slot < 0 ? Optional.empty()
+                : Optional.ofNullable(current.members().get(position(current.table().get(slot))));
+    }
+
+    public Optional<Member> findByEmail(String email) {
+        String key = emailKey(email);
+        return key == null ? Optional.empty() : Optional.ofNullable(byEmail.get(key));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * The registered member that joined first.
+     */
+    public Optional<Member> first() {
+        AtomicReferenceArray<Member> current = store.members();
+        for (int i = 0; i < current.length(); i++) {
+            Member member = current.get(i);
+            if (member != null)
+                return Optional.of(member);
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Hands every registered member to {@code action} in the order they joined.
+     */
+    public void forEach(Consumer<Member> action) {
+        AtomicReferenceArray<Member> current = store.members();
+        for (int i = 0; i < current.length(); i++) {
+            Member member = current.get(i);
+            if (member != null)
+                action.accept(member);
+        }
+    }
+
+    public List<Member> snapshot() {
+        List<Member> snapshot = new ArrayList<>(size);
+        forEach(snapshot::add);
+        return snapshot;
+    }
+
+    /**
+     * Estimates the heap use of the table, the member array and the email index, and of the members themselves
+     * from up to {@code sampleSize} evenly spaced positions among those handed out.
+     */
+    public StructureFootprint estimateFootprint(String name, ObjectSizeEstimator estimator, int sampleSize,
+                                                ToLongFunction<Member> sizer) {
+        Store current = store;
+        int used = Math.min(positions, current.members().length());
+        int step = Math.max(1, used / Math.max(1, sampleSize));
+        int sampled = 0;
+        long sampledBytes = 0;
+        for (int i = 0; i < used && sampled < sampleSize; i += step) {
+            Member member = current.members().get(i);
+            if (member != null) {
+                sampledBytes += sizer.applyAsLong(member);
+                sampled++;
+            }
+        }
+
+        long containers = estimator.arraySize(long.class, current.table().length())
+                + estimator.arraySize(Object.class, current.members().length())
+                + estimator.hashMapOverhead(byEmail, byEmail.size(), false);
+        return StructureFootprint.of(name, containers, new ObjectSizeEstimator.SizeSample(size, sampled, sampledBytes));
+    }
+
+    // Finds the slot holding id, or -1; stops at the first never-used slot
+    private static int slotOf(AtomicLongArray current, int id) {
+        int mask = current.length() - 1;
+        for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+            long entry = current.get(slot);
+            if (entry == EMPTY)
+                return -1;
+            if (entry != TOMBSTONE && id(entry) == id)
+                return slot;
+        }
+    }
+
+    // Returns true if the entry took a never-used slot rather than a tombstone
+    private static boolean insert(AtomicLongArray current, int id, int position) {
+        int mask = current.length() - 1;
+        for (int slot = hash(id) & mask; ; slot = (slot + 1) & mask) {
+            long entry = current.get(slot);
+            if (entry == EMPTY || entry == TOMBSTONE) {
+                current.set(slot, pack(id, position));
+                return entry == EMPTY;
+            }
+        }
+    }
+
+    // Copies the live members into a table and array with room for entries, closing the gaps in join order
+    private Store rehash(Store current, int entries) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity * 3L < entries * 4L + 4)
+            capacity <<= 1;
+        if (capacity < current.table().length())
+            capacity = current.table().length();
+        int length = INITIAL_CAPACITY;
+        while (length < entries)
+            length <<= 1;
+
+        AtomicLongArray table = new AtomicLongArray(capacity);
+        AtomicReferenceArray<Member> members = new AtomicReferenceArray<>(length);
+        int compacted = 0;
+        for (int position = 0; position < positions; position++) {
+            Member member = current.members().get(position);
+            if (member != null) {
+                members.set(compacted, member);
+                insert(table, member.getId(), compacted);
+                compacted++;
+            }
+        }
+        usedSlots = compacted;
+        positions = compacted;
+        Store rehashed = new Store(table, members);
+        store = rehashed;
+        return rehashed;
+    }
+
+    private static AtomicReferenceArray<Member> grow(AtomicReferenceArray<Member> current) {
+        AtomicReferenceArray<Member> larger = new AtomicReferenceArray<>(current.length() * 2);
+        for (int i = 0; i < current.length(); i++)
+            larger.set(i, current.get(i));
+        return larger;
+    }
+
+    // Position is stored plus one, so no live entry packs to EMPTY or TOMBSTONE
+    private static long pack(int id, int position) {
+        return ((long) id << 32) | (position + 1L);
+    }
+
+    private static int id(long entry) {
+        return (int) (entry >>> 32);
+    }
+
+    private static int position(long entry) {
+        return (int) entry - 1;
+    }
+
+    private static int hash(int id) {
+        int h = id * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static String emailKey(String email) {
+        return email == null || email.isBlank() ? null : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private record Store(AtomicLongArray table, AtomicReferenceArray<Member> members) implements Serializable {
+    }
+}
@@ -0,0 +1,277 @@
+package entities.transactions;
+
+import entities.items.ItemIdDictionary;
+import entities.items.LibraryItem;
+import entities.people.Member;
+import enums.LibraryItemType;
+import metrics.ObjectSizeEstimator;
+import metrics.StructureFootprint;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Compact store for loan history. A {@link BorrowRecord} costs a header, two references and three
+ * {@link LocalDate} objects, which adds up with tens of millions of past loans; here each loan is one row of five
+ * int columns: the item's ordinal, the member's id, and the borrow, due and return dates as epoch days, about 20
+ * bytes per loan. Items are resolved through the library's {@link ItemIdDictionary}, so a row holds the same
+ * ordinal the rest of the library uses; members are kept once each, in a table the rows point into.
+ * <p>
+ * Columns grow in fixed-size chunks, so appending never copies the rows already stored. Rows are read through a
+ * reusable {@link Row} flyweight, or summed by the column scans, which touch only the columns they need.
+ * Appends and scans synchronize on the store.
+ */
+public class BorrowHistoryStore implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+    // Return day of a loan that was still open when it was stored
+    private static final int NOT_RETURNED = Integer.MIN_VALUE;
+
+    private final ItemIdDictionary itemIds;
+    private final Map<Integer, Member> members = new HashMap<>();
+
+    private final IntColumn itemColumn = new IntColumn();
+    private final IntColumn memberColumn = new IntColumn();
+    private final IntColumn borrowDayColumn = new IntColumn();
+    private final IntColumn dueDayColumn = new IntColumn();
+    private final IntColumn returnDayColumn = new IntColumn();
+    private int size;
+
+    /**
+     * A store with a dictionary of its own, for history kept apart from a library.
+     */
+    public BorrowHistoryStore() {
+        this(new ItemIdDictionary());
+    }
+
+    public BorrowHistoryStore(ItemIdDictionary itemIds) {
+        this.itemIds = itemIds;
+    }
+
+    public synchronized void append(BorrowRecord record) {
+        int ordinal = itemIds.intern(record.getItem());
+        members.putIfAbsent(record.getMember().getId(), record.getMember());
+
+        itemColumn.add(size, ordinal);
+        memberColumn.add(size, record.getMember().getId());
+        borrowDayColumn.add(size, day(record.getBorrowDate()));
+        dueDayColumn.add(size, day(record.getDueDate()));
+        returnDayColumn.add(size, record.getReturnDate() != null ? day(record.getReturnDate()) : NOT_RETURNED);
+        size++;
+    }
+
+    public synchronized void appendAll(Collection<BorrowRecord> records) {
+        for (BorrowRecord record : records)
+            append(record);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Returns a flyweight positioned on {@code row}. The same {@link Row} can be moved along the store with
+     * {@link Row#moveTo(int)} instead of creating one per loan.
+     */
+    public synchronized Row row(int row) {
+        return new Row().moveTo(row);
+    }
+
+    /**
+     * Hands every loan borrowed between {@code from} and {@code to}, inclusive, to {@code action}, one after the
+     * other through a single flyweight. The flyweight is only valid during the call; use
+     * {@link Row#toBorrowRecord()} to keep a loan.
+     */
+    public synchronized void forEach(LocalDate from, LocalDate to, Consumer<Row> action) {
+        int fromDay = day(from);
+        int toDay = day(to);
+        Row row = new Row();
+        for (int i = 0; i < size; i++) {
+            int borrowDay = borrowDayColumn.get(i);
+            if (borrowDay >= fromDay && borrowDay <= toDay)
+                action.accept(row.moveTo(i));
+        }
+    }
+
+    /**
+     * Loan durations in days, from borrowing to return, of the returned loans borrowed between {@code from} and
+     * {@code to}.
+     */
+    public synchronized LongSummaryStatistics durationStatistics(LocalDate from, LocalDate to) {
+        int fromDay = day(from);
+        int toDay = day(to);
+        LongSummaryStatistics statistics = new LongSummaryStatistics();
+        for (int i = 0; i < size; i++) {
+            int borrowDay = borrowDayColumn.get(i);
+            int returnDay = returnDayColumn.get(i);
+            if (borrowDay >= fromDay && borrowDay <= toDay && returnDay != NOT_RETURNED)
+                statistics.accept(returnDay - borrowDay);
+        }
+        return statistics;
+    }
+
+    /**
+     * Histogram of how late the returned loans borrowed between {@code from} and {@code to} came back: entry
+     * {@code d} counts the loans returned {@code d} days after their due date, with loans returned on time in
+     * entry 0 and those later than {@code maxDays} in the last entry.
+     */
+    public synchronized long[] latenessHistogram(LocalDate from, LocalDate to, int maxDays) {
+        int fromDay = day(from);
+        int toDay = day(to);
+        long[] histogram = new long[maxDays + 2];
+        for (int i = 0; i < size; i++) {
+            int borrowDay = borrowDayColumn.get(i);
+            int returnDay = returnDayColumn.get(i);
+            if (borrowDay < fromDay || borrowDay > toDay || returnDay == NOT_RETURNED)
+                continue;
+            int late = Math.max(0, returnDay - dueDayColumn.get(i));
+            histogram[Math.min(late, maxDays + 1)]++;
+        }
+        return histogram;
+    }
+
+    /**
+     * Number of loans of each item type borrowed between {@code from} and {@code to}. The scan counts loans per
+     * item ordinal and only then looks the types up, once per distinct item.
+     */
+    public synchronized Map<LibraryItemType, Long> typeMix(LocalDate from, LocalDate to) {
+        int fromDay = day(from);
+        int toDay = day(to);
+        int[] loansPerItem = new int[itemIds.size()];
+        for (int i = 0; i < size; i++) {
+            int borrowDay = borrowDayColumn.get(i);
+            if (borrowDay >= fromDay && borrowDay <= toDay)
+                loansPerItem[itemColumn.get(i)]++;
+        }
+
+        Map<LibraryItemType, Long> mix = new EnumMap<>(LibraryItemType.class);
+        for (int ordinal = 0; ordinal < loansPerItem.length; ordinal++) {
+            if (loansPerItem[ordinal] > 0)
+                mix.merge(itemIds.get(ordinal).getItemType(), (long) loansPerItem[ordinal], Long::sum);
+        }
+        return mix;
+    }
+
+    /**
+     * Estimates the heap use of the columns and of the member table. Members are usually held elsewhere as well,
+     * so only the table's references to them are counted; the item dictionary is counted by its owner.
+     */
+    public synchronized StructureFootprint estimateFootprint(ObjectSizeEstimator estimator) {
+        long columns = 5L * itemColumn.allocatedBytes(estimator);
+        long tables = estimator.hashMapOverhead(members, members.size(), false);
+        return new StructureFootprint("Library.borrowHistory", size, columns + tables, 0, 0);
+    }
+
+    private static int day(LocalDate date) {
+        return Math.toIntExact(date.toEpochDay());
+    }
+
+    /**
+     * Reusable view of one stored loan. Getters named as in {@link BorrowRecord} return the same values; the
+     * {@code Day} getters return epoch days and allocate nothing.
+     */
+    public final class Row {
+        private int row;
+
+        private Row() {
+        }
+
+        public Row moveTo(int row) {
+            Objects.checkIndex(row, size);
+            this.row = row;
+            return this;
+        }
+
+        public int getRowIndex() {
+            return row;
+        }
+
+        public int getItemOrdinal() {
+            return itemColumn.get(row);
+        }
+
+        public LibraryItem getItem() {
+            return itemIds.get(getItemOrdinal());
+        }
+
+        public int getMemberId() {
+            return memberColumn.get(row);
+        }
+
+        public Member getMember() {
+            return members.get(getMemberId());
+        }
+
+        public int getBorrowDay() {
+            return borrowDayColumn.get(row);
+        }
+
+        public int getDueDay() {
+            return dueDayColumn.get(row);
+        }
+
+        public boolean isReturned() {
+            return returnDayColumn.get(row) != NOT_RETURNED;
+        }
+
+        public int getReturnDay() {
+            return returnDayColumn.get(row);
+        }
+
+        public LocalDate getBorrowDate() {
+            return LocalDate.ofEpochDay(getBorrowDay());
+        }
+
+        public LocalDate getDueDate() {
+            return LocalDate.ofEpochDay(getDueDay());
+        }
+
+        public LocalDate getReturnDate() {
+            return isReturned() ? LocalDate.ofEpochDay(getReturnDay()) : null;
+        }
+
+        /**
+         * Days between the due date and the return of a loan returned late; zero otherwise.
+         */
+        public long getDaysOverdue() {
+            return isReturned() ? Math.max(0, getReturnDay() - getDueDay()) : 0;
+        }
+
+        public BorrowRecord toBorrowRecord() {
+            BorrowRecord record = new BorrowRecord();
+            record.setItem(getItem());
+            record.setMember(getMember());
+            record.setBorrowDate(getBorrowDate());
+            record.setDueDate(getDueDate());
+            record.setReturnDate(getReturnDate());
+            return record;
+        }
+    }
+
+    private static final class IntColumn implements Serializable {
+        private static final long serialVersionUID = 1L;
+        private int[][] chunks = new int[0][];
+
+        void add(int index, int value) {
+            int chunk = index >>> CHUNK_BITS;
+            if (chunk == chunks.length) {
+                chunks = Arrays.copyOf(chunks, chunk + 1);
+                chunks[chunk] = new int[CHUNK_SIZE];
+            }
+            chunks[chunk][index & CHUNK_MASK] = value;
+        }
+
+        int get(int index) {
+            return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+        }
+
+        long allocatedBytes(ObjectSizeEstimator estimator) {
+            return estimator.arraySize(int[].class, chunks.length)
+                    + chunks.length * estimator.arraySize(int.class, CHUNK_SIZE);
+        }
+    }
+}
@@ -2,6 +2,7 @@ package entities.transactions;
 
 import entities.items.LibraryItem;
 import entities.people.Member;
+import util.LibraryClock;
 
 import java.io.Serializable;
 import java.time.LocalDate;
@@ -16,6 +17,7 @@ public class BorrowRecord implements Serializable {
     private LocalDate borrowDate;
     private LocalDate dueDate;
     private LocalDate returnDate;
+    private volatile boolean markedOverdue;
 
     public LibraryItem getItem() {
         return item;
@@ -77,7 +79,7 @@ public class BorrowRecord implements Serializable {
         if (returnDate != null) {
             return returnDate.isAfter(dueDate);
         }
-        return LocalDate.now().isAfter(dueDate);
+        return LibraryClock.today().isAfter(dueDate);
     }
 
     public long getDaysOverdue() {
@@ -85,15 +87,26 @@ public class BorrowRecord implements Serializable {
             return 0;
         }
 
-        LocalDate endDate = (returnDate != null) ? returnDate : LocalDate.now();
+        LocalDate endDate = (returnDate != null) ? returnDate : LibraryClock.today();
         return ChronoUnit.DAYS.between(dueDate, endDate);
     }
 
     public long getBorrowDurationInDays() {
-        LocalDate endDate = (returnDate != null) ? returnDate : LocalDate.now();
+        LocalDate endDate = (returnDate != null) ? returnDate : LibraryClock.today();
         return ChronoUnit.DAYS.between(borrowDate, endDate);
     }
 
+    /**
+     * Whether the overdue check has already reported this loan as overdue.
+     */
+    public boolean isMarkedOverdue() {
+        return markedOverdue;
+    }
+
+    public void setMarkedOverdue(boolean markedOverdue) {
+        this.markedOverdue = markedOverdue;
+    }
+
     public boolean isActive() {
         return returnDate == null;
     }
@@ -140,7 +153,7 @@ public class BorrowRecord implements Serializable {
                     return String.format("Status: OVERDUE (Currently %d days late)",
                             record.getDaysOverdue());
                 } else {
-                    long daysLeft = ChronoUnit.DAYS.between(LocalDate.now(), record.dueDate);
+                    long daysLeft = ChronoUnit.DAYS.between(LibraryClock.today(), record.dueDate);
                     return String.format("Status: ACTIVE (Due in %d days)", daysLeft);
                 }
             }
@@ -1,13 +1,97 @@
 package entities.transactions;
 
-import entities.items.Book;
+import entities.items.LibraryItem;
 import entities.people.Member;
+import enums.ReservationStatus;
 
 import java.time.LocalDate;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * A member's place in the hold queue of one item. A reservation starts out {@link ReservationStatus#WAITING};
+ * when the item comes back it becomes {@link ReservationStatus#READY} and the item is held for the member until
+ * {@link #getExpiryDate()}. Every later change of status is a compare-and-set, so the thread returning the item,
+ * the member cancelling and the job expiring holds cannot both win.
+ */
 public class Reservation {
-    private Book book;
-    private Member member;
-    private LocalDate reserveDate;
-    private LocalDate expiryDate;
-}
\ No newline at end of file
+    private final long id;
+    private final LibraryItem item;
+    private final Member member;
+    private final LocalDate reserveDate;
+    private volatile LocalDate expiryDate;
+    private final AtomicReference<ReservationStatus> status = new AtomicReference<>(ReservationStatus.WAITING);
+
+    public Reservation(long id, LibraryItem item, Member member, LocalDate reserveDate) {
+        this.id = id;
+        this.item = Objects.requireNonNull(item, "Item cannot be null");
+        this.member = Objects.requireNonNull(member, "Member cannot be null");
+        this.reserveDate = Objects.requireNonNull(reserveDate, "Reserve date cannot be null");
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public LibraryItem getItem() {
+        return item;
+    }
+
+    public Member getMember() {
+        return member;
+    }
+
+    public LocalDate getReserveDate() {
+        return reserveDate;
+    }
+
+    /**
+     * The last day the item is held for the member, or {@code null} while the reservation is still waiting.
+     */
+    public LocalDate getExpiryDate() {
+        return expiryDate;
+    }
+
+    public void setExpiryDate(LocalDate expiryDate) {
+        this.expiryDate = expiryDate;
+    }
+
+    public ReservationStatus getStatus() {
+        return status.get();
+    }
+
+    public boolean compareAndSetStatus(ReservationStatus expected, ReservationStatus newStatus) {
+        return status.compareAndSet(expected, newStatus);
+    }
+
+    /**
+     * Whether the reservation still counts against the member, that is, it is waiting or holding the item.
+     */
+    public boolean isActive() {
+        ReservationStatus current = status.get();
+        return current == ReservationStatus.WAITING || current == ReservationStatus.READY;
+    }
+
+    public boolean isExpired(LocalDate today) {
+        LocalDate expiry = expiryDate;
+        return status.get() == ReservationStatus.READY && expiry != null && today.isAfter(expiry);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return id == ((Reservation) o).id;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(id);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Reservation{id=%d, item=%s, member=%s, reserveDate=%s, expiryDate=%s, status=%s}",
+                id, item.getTitle(), member.getName(), reserveDate, expiryDate, status.get());
+    }
+}
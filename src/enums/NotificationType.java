@@ -0,0 +1,5 @@
+package enums;
+
+public enum NotificationType {
+    OVERDUE, DUE_SOON, HOLD_READY
+}
@@ -0,0 +1,5 @@
+package enums;
+
+public enum ReservationStatus {
+    WAITING, READY, FULFILLED, CANCELLED, EXPIRED
+}
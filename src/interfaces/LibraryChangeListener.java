@@ -0,0 +1,40 @@
+package interfaces;
+
+import entities.items.LibraryItem;
+import entities.people.Member;
+import entities.transactions.BorrowRecord;
+import entities.transactions.Reservation;
+
+public interface LibraryChangeListener {
+    default void itemAdded(LibraryItem item) {
+    }
+
+    default void itemRemoved(LibraryItem item) {
+    }
+
+    // Called under the borrow lock, so implementations must not block
+    default void itemUpdated(LibraryItem item) {
+    }
+
+    default void memberAdded(Member member) {
+    }
+
+    default void memberUpdated(Member member) {
+    }
+
+    default void itemBorrowed(BorrowRecord record) {
+    }
+
+    default void itemReturned(BorrowRecord record) {
+    }
+
+    default void itemRenewed(BorrowRecord record) {
+    }
+
+    default void itemOverdue(BorrowRecord record) {
+    }
+
+    // Called under the borrow lock, so implementations must not block
+    default void holdReady(Reservation hold) {
+    }
+}
@@ -0,0 +1,14 @@
+package interfaces;
+
+import entities.NotificationBatch;
+
+import java.io.IOException;
+
+/**
+ * Where the notification pipeline delivers each member's batch. A sink may be called from several threads at
+ * once; a batch whose delivery throws is retried later, so delivering the same batch twice must be harmless.
+ */
+@FunctionalInterface
+public interface NotificationSink {
+    void deliver(NotificationBatch batch) throws IOException;
+}
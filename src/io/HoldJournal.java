@@ -0,0 +1,130 @@
+package io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only file of the holds the reservation service has handed out, so they survive a restart. Each line
+ * is either a hold or the release of one, tab-separated:
+ * <pre>
+ * H  reservationId  itemId  memberId  reserveDate  expiryDate
+ * R  reservationId
+ * </pre>
+ * Opening the journal replays it. When released holds outnumber pending ones the file is rewritten with the
+ * pending holds only, so it stays proportional to the holds outstanding rather than to the history.
+ */
+public class HoldJournal implements AutoCloseable {
+    private static final String HOLD = "H";
+    private static final String RELEASE = "R";
+    // Lines a journal may carry beyond its pending holds before it is compacted
+    private static final int COMPACT_SLACK = 1024;
+
+    private final Path file;
+    private final Map<Long, HoldEntry> pending = new LinkedHashMap<>();
+    private BufferedWriter writer;
+    private int lines;
+
+    public HoldJournal(Path file) throws IOException {
+        this.file = file.toAbsolutePath();
+        Path parent = this.file.getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+
+        if (Files.exists(this.file))
+            replay();
+        if (lines > pending.size() * 2 + COMPACT_SLACK)
+            compact();
+        writer = Files.newBufferedWriter(this.file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * The holds that were handed out and never released, in the order they were recorded.
+     */
+    public synchronized List<HoldEntry> getPendingHolds() {
+        return new ArrayList<>(pending.values());
+    }
+
+    public synchronized void recordHold(HoldEntry hold) throws IOException {
+        pending.put(hold.reservationId(), hold);
+        append(format(hold));
+    }
+
+    public synchronized void recordRelease(long reservationId) throws IOException {
+        if (pending.remove(reservationId) == null)
+            return;
+        append(RELEASE + "\t" + reservationId);
+        if (lines > pending.size() * 2 + COMPACT_SLACK) {
+            writer.close();
+            compact();
+            writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        }
+    }
+
+    private void append(String line) throws IOException {
+        writer.write(line);
+        writer.newLine();
+        writer.flush();
+        lines++;
+    }
+
+    private void replay() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines++;
+                String[] fields = line.split("\t");
+                try {
+                    if (fields[0].equals(HOLD) && fields.length == 6) {
+                        HoldEntry hold = new HoldEntry(Long.parseLong(fields[1]), fields[2],
+                                Integer.parseInt(fields[3]), LocalDate.parse(fields[4]), LocalDate.parse(fields[5]));
+                        pending.put(hold.reservationId(), hold);
+                    } else if (fields[0].equals(RELEASE) && fields.length == 2) {
+                        pending.remove(Long.parseLong(fields[1]));
+                    }
+                } catch (RuntimeException e) {
+                    // A line cut short by a crash is the last one written; everything before it is intact
+                    System.err.println("Skipping malformed hold journal line: " + line);
+                }
+            }
+        }
+    }
+
+    // Written to a temporary file first, so a crash mid-way leaves the old journal in place
+    private void compact() throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+            for (HoldEntry hold : pending.values()) {
+                out.write(format(hold));
+                out.newLine();
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        lines = pending.size();
+    }
+
+    private static String format(HoldEntry hold) {
+        return String.join("\t", HOLD, Long.toString(hold.reservationId()), hold.itemId(),
+                Integer.toString(hold.memberId()), hold.reserveDate().toString(), hold.expiryDate().toString());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    public record HoldEntry(long reservationId, String itemId, int memberId, LocalDate reserveDate,
+                            LocalDate expiryDate) {
+    }
+}
@@ -2,6 +2,7 @@ package io;
 
 import entities.Library;
 import entities.items.LibraryItem;
+import util.StringPool;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -57,11 +58,19 @@ public class LibraryDataManager {
         try (BufferedReader reader = Files.newBufferedReader(csvPath)) {
             return reader.lines()
                     .skip(1) // skip header
-                    .map(line -> line.split(","))
+                    .map(line -> internRepeated(line.split(",")))
                     .collect(Collectors.toList());
         }
     }
 
+    // Every column after ID and Title takes a handful of values, so rows share one string for each
+    private static String[] internRepeated(String[] row) {
+        StringPool pool = StringPool.shared();
+        for (int i = 2; i < row.length; i++)
+            row[i] = pool.intern(row[i]);
+        return row;
+    }
+
     public void createBackup() throws IOException {
         String timestamp = LocalDateTime.now().format(
                 DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
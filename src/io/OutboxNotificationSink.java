@@ -0,0 +1,71 @@
+package io;
+
+import entities.NotificationBatch;
+import interfaces.NotificationSink;
+import util.LibraryClock;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+
+/**
+ * Default notification sink: appends each batch as one line of JSON to a file per day,
+ * {@code notifications-<date>.jsonl} in the outbox directory, for a mailer or an operator to pick up. It needs
+ * no network, so notifications are kept even when the library runs offline. A retried batch carries the same id,
+ * so a reader can skip the rare line written twice.
+ */
+public class OutboxNotificationSink implements NotificationSink, AutoCloseable {
+    private final Path directory;
+    private BufferedWriter writer;
+    private LocalDate writerDate;
+
+    public OutboxNotificationSink(Path directory) {
+        this.directory = directory.toAbsolutePath();
+    }
+
+    @Override
+    public synchronized void deliver(NotificationBatch batch) throws IOException {
+        LocalDate today = LibraryClock.today();
+        if (writer == null || !today.equals(writerDate)) {
+            close();
+            Files.createDirectories(directory);
+            writer = Files.newBufferedWriter(fileFor(today), StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            writerDate = today;
+        }
+
+        try {
+            writer.write(batch.toJson());
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            // Reopen on the next batch rather than keep writing to a broken stream
+            close();
+            throw e;
+        }
+    }
+
+    public Path fileFor(LocalDate date) {
+        return directory.resolve("notifications-" + date + ".jsonl");
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer == null)
+            return;
+        try {
+            writer.close();
+        } finally {
+            writer = null;
+            writerDate = null;
+        }
+    }
+}
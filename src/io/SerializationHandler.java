@@ -2,36 +2,77 @@ package io;
 
 import entities.Library;
 import entities.items.LibraryItem;
+import metrics.SerializationEvent;
 
 import java.io.*;
 
 public class SerializationHandler {
 
     public void serializeLibrary(Library library, String filename) throws IOException {
+        SerializationEvent event = new SerializationEvent("serialize", filename);
+        event.begin();
         try (ObjectOutputStream oos = new ObjectOutputStream(
                 new FileOutputStream(filename))) {
             oos.writeObject(library);
+        } catch (IOException | RuntimeException e) {
+            event.setFailure(e);
+            throw e;
+        } finally {
+            commitEvent(event, filename, null);
         }
     }
 
     public Library deserializeLibrary(String filename) throws IOException, ClassNotFoundException {
+        SerializationEvent event = new SerializationEvent("deserialize", filename);
+        event.begin();
         try (ObjectInputStream ois = new ObjectInputStream(
                 new FileInputStream(filename))) {
             return (Library) ois.readObject();
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            event.setFailure(e);
+            throw e;
+        } finally {
+            commitEvent(event, filename, null);
         }
     }
 
     public void serializeItem(LibraryItem item, String filename) throws IOException {
+        SerializationEvent event = new SerializationEvent("serialize", filename);
+        event.begin();
         try (ObjectOutputStream oos = new ObjectOutputStream(
                 new FileOutputStream(filename))) {
             oos.writeObject(item);
+        } catch (IOException | RuntimeException e) {
+            event.setFailure(e);
+            throw e;
+        } finally {
+            commitEvent(event, filename, item);
         }
     }
 
     public LibraryItem deserializeItem(String filename) throws IOException, ClassNotFoundException {
+        SerializationEvent event = new SerializationEvent("deserialize", filename);
+        event.begin();
+        LibraryItem item = null;
         try (ObjectInputStream ois = new ObjectInputStream(
                 new FileInputStream(filename))) {
-            return (LibraryItem) ois.readObject();
+            item = (LibraryItem) ois.readObject();
+            return item;
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            event.setFailure(e);
+            throw e;
+        } finally {
+            commitEvent(event, filename, item);
         }
     }
-}
\ No newline at end of file
+
+    private static void commitEvent(SerializationEvent event, String filename, LibraryItem item) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.setBytes(new File(filename).length());
+            if (item != null)
+                event.setItem(item.getId(), item.getItemType().name());
+            event.commit();
+        }
+    }
+}
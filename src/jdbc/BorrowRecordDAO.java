@@ -3,11 +3,15 @@ package jdbc;
 import entities.items.LibraryItem;
 import entities.people.Member;
 import entities.transactions.BorrowRecord;
+import metrics.Instrumentation;
+import metrics.Operation;
 
 import java.sql.*;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 public class BorrowRecordDAO implements AutoCloseable {
@@ -15,56 +19,101 @@ public class BorrowRecordDAO implements AutoCloseable {
     private final ItemDAO itemDAO;
     private final MemberDAO memberDAO;
 
+    /**
+     * Uses the database's shared item and member DAOs; see {@link DatabaseManager#getItemDAO()}.
+     */
     public BorrowRecordDAO(DatabaseManager dbManager) throws SQLException {
+        this(dbManager, dbManager.getItemDAO(), dbManager.getMemberDAO());
+    }
+
+    /**
+     * Shares the given DAOs, and with them their row caches, so that {@link #returnItem} invalidates the
+     * same cached item the rest of the application reads.
+     */
+    public BorrowRecordDAO(DatabaseManager dbManager, ItemDAO itemDAO, MemberDAO memberDAO) {
         this.dbManager = dbManager;
-        this.itemDAO = new ItemDAO(dbManager);
-        this.memberDAO = new MemberDAO(dbManager);
+        this.itemDAO = itemDAO;
+        this.memberDAO = memberDAO;
     }
 
     public void insertRecord(BorrowRecord record) throws SQLException {
-        String sql = "INSERT INTO borrow_records (item_id, member_id, borrow_date, due_date, return_date) VALUES (?, ?, ?, ?, ?)";
+        insertRecord(dbManager.getConnection(), record);
+    }
 
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            pstmt.setString(1, record.getItem().getId());
-            pstmt.setInt(2, record.getMember().getId());
-            pstmt.setDate(3, Date.valueOf(record.getBorrowDate()));
-            pstmt.setDate(4, Date.valueOf(record.getDueDate()));
-            pstmt.setDate(5, record.getReturnDate() != null ? Date.valueOf(record.getReturnDate()) : null);
-            pstmt.executeUpdate();
+    public void insertRecord(Connection conn, BorrowRecord record) throws SQLException {
+        Instrumentation.run(Operation.RECORD_WRITE, "BorrowRecordDAO.insertRecord",
+                "itemId", record.getItem().getId(), () -> {
+            String sql = "INSERT INTO borrow_records (item_id, member_id, borrow_date, due_date, return_date) VALUES (?, ?, ?, ?, ?)";
 
-            try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.setString(1, record.getItem().getId());
+                pstmt.setInt(2, record.getMember().getId());
+                pstmt.setDate(3, Date.valueOf(record.getBorrowDate()));
+                pstmt.setDate(4, Date.valueOf(record.getDueDate()));
+                pstmt.setDate(5, record.getReturnDate() != null ? Date.valueOf(record.getReturnDate()) : null);
+                pstmt.executeUpdate();
 
+                try (ResultSet generatedKeys = pstmt.getGeneratedKeys()) {
+                    if (generatedKeys.next()) {
+
+                    }
                 }
             }
-        }
+        });
     }
 
-    public List<BorrowRecord> findActiveRecords() throws SQLException {
-        List<BorrowRecord> records = new ArrayList<>();
-        String sql = "SELECT * FROM borrow_records WHERE return_date IS NULL ORDER BY due_date";
-
-        try (Statement stmt = dbManager.getConnection().createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-
-            if (rs == null)
-                throw new SQLException("executeQuery returned null - check driver or connection");
+    /**
+     * Inserts the given records as one JDBC batch on {@code conn}. Records that have already been returned are
+     * written with their return date. Transaction boundaries are left to the caller.
+     */
+    public void insertRecords(Connection conn, Collection<BorrowRecord> records) throws SQLException {
+        Instrumentation.run(Operation.RECORD_WRITE, "BorrowRecordDAO.insertRecords", "records", records, () -> {
+            String sql = "INSERT INTO borrow_records (item_id, member_id, borrow_date, due_date, return_date) VALUES (?, ?, ?, ?, ?)";
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (BorrowRecord record : records) {
+                    pstmt.setString(1, record.getItem().getId());
+                    pstmt.setInt(2, record.getMember().getId());
+                    pstmt.setDate(3, Date.valueOf(record.getBorrowDate()));
+                    pstmt.setDate(4, Date.valueOf(record.getDueDate()));
+                    pstmt.setDate(5, record.getReturnDate() != null ? Date.valueOf(record.getReturnDate()) : null);
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            }
+        });
+    }
 
-            while (rs.next()) {
-                records.add(mapToRecord(rs));
+    /**
+     * Writes the due and return dates of already persisted records as one JDBC batch on {@code conn}, matching
+     * each open row by item, member and borrow date. Covers renewals as well as returns.
+     */
+    public void updateDates(Connection conn, Collection<BorrowRecord> records) throws SQLException {
+        Instrumentation.run(Operation.RECORD_WRITE, "BorrowRecordDAO.updateDates", "records", records, () -> {
+            String sql = "UPDATE borrow_records SET due_date = ?, return_date = ? WHERE item_id = ? AND member_id = ? AND borrow_date = ? AND return_date IS NULL";
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (BorrowRecord record : records) {
+                    pstmt.setDate(1, Date.valueOf(record.getDueDate()));
+                    pstmt.setDate(2, record.getReturnDate() != null ? Date.valueOf(record.getReturnDate()) : null);
+                    pstmt.setString(3, record.getItem().getId());
+                    pstmt.setInt(4, record.getMember().getId());
+                    pstmt.setDate(5, Date.valueOf(record.getBorrowDate()));
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
             }
-        }
-        return records;
+        });
     }
 
-    public List<BorrowRecord> findByMember(int memberId) throws SQLException {
-        List<BorrowRecord> records = new ArrayList<>();
-        String sql = "SELECT * FROM borrow_records WHERE member_id = ? ORDER BY borrow_date DESC";
+    public List<BorrowRecord> findActiveRecords() throws SQLException {
+        return Instrumentation.timed(Operation.RECORD_QUERY, "BorrowRecordDAO.findActiveRecords", () -> {
+            List<BorrowRecord> records = new ArrayList<>();
+            String sql = "SELECT * FROM borrow_records WHERE return_date IS NULL ORDER BY due_date";
 
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, memberId);
+            try (Statement stmt = dbManager.getConnection().createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
 
-            try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs == null)
                     throw new SQLException("executeQuery returned null - check driver or connection");
 
@@ -72,60 +121,95 @@ public class BorrowRecordDAO implements AutoCloseable {
                     records.add(mapToRecord(rs));
                 }
             }
-        }
-        return records;
+            return records;
+        });
+    }
+
+    public List<BorrowRecord> findByMember(int memberId) throws SQLException {
+        return Instrumentation.timed(Operation.RECORD_QUERY, "BorrowRecordDAO.findByMember",
+                "memberId", memberId, () -> {
+            List<BorrowRecord> records = new ArrayList<>();
+            String sql = "SELECT * FROM borrow_records WHERE member_id = ? ORDER BY borrow_date DESC";
+
+            try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                pstmt.setInt(1, memberId);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs == null)
+                        throw new SQLException("executeQuery returned null - check driver or connection");
+
+                    while (rs.next()) {
+                        records.add(mapToRecord(rs));
+                    }
+                }
+            }
+            return records;
+        });
     }
 
     public Optional<BorrowRecord> findActiveByItem(String itemId) throws SQLException {
-        String sql = "SELECT * FROM borrow_records WHERE item_id = ? AND return_date IS NULL";
+        return Instrumentation.timed(Operation.RECORD_QUERY, "BorrowRecordDAO.findActiveByItem",
+                "itemId", itemId, () -> {
+            String sql = "SELECT * FROM borrow_records WHERE item_id = ? AND return_date IS NULL";
 
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, itemId);
+            try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                pstmt.setString(1, itemId);
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs == null)
-                    throw new SQLException("executeQuery returned null - check driver or connection");
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs == null)
+                        throw new SQLException("executeQuery returned null - check driver or connection");
 
-                if (rs.next()) {
-                    return Optional.of(mapToRecord(rs));
+                    if (rs.next()) {
+                        return Optional.of(mapToRecord(rs));
+                    }
                 }
             }
-        }
-        return Optional.empty();
+            return Optional.empty();
+        });
     }
 
     public List<BorrowRecord> findOverdueRecords() throws SQLException {
-        List<BorrowRecord> records = new ArrayList<>();
-        String sql = "SELECT * FROM borrow_records WHERE return_date IS NULL AND due_date < CURRENT_DATE";
+        return Instrumentation.timed(Operation.RECORD_QUERY, "BorrowRecordDAO.findOverdueRecords", () -> {
+            List<BorrowRecord> records = new ArrayList<>();
+            String sql = "SELECT * FROM borrow_records WHERE return_date IS NULL AND due_date < CURRENT_DATE";
 
-        try (Statement stmt = dbManager.getConnection().createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+            try (Statement stmt = dbManager.getConnection().createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
 
-            if (rs == null)
-                throw new SQLException("executeQuery returned null - check driver or connection");
+                if (rs == null)
+                    throw new SQLException("executeQuery returned null - check driver or connection");
 
-            while (rs.next()) {
-                records.add(mapToRecord(rs));
+                while (rs.next()) {
+                    records.add(mapToRecord(rs));
+                }
             }
-        }
-        return records;
+            return records;
+        });
     }
 
     public boolean returnItem(String itemId, LocalDate returnDate) throws SQLException {
-        String sql = "UPDATE borrow_records SET return_date = ? WHERE item_id = ? AND return_date IS NULL";
+        return returnItem(dbManager.getConnection(), itemId, returnDate);
+    }
 
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setDate(1, Date.valueOf(returnDate));
-            pstmt.setString(2, itemId);
+    public boolean returnItem(Connection conn, String itemId, LocalDate returnDate) throws SQLException {
+        return Instrumentation.timed(Operation.RECORD_WRITE, "BorrowRecordDAO.returnItem", "itemId", itemId, () -> {
+            String sql = "UPDATE borrow_records SET return_date = ? WHERE item_id = ? AND return_date IS NULL";
 
-            boolean updated = pstmt.executeUpdate() > 0;
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setDate(1, Date.valueOf(returnDate));
+                pstmt.setString(2, itemId);
 
-            if (updated) {
-                itemDAO.updateAvailability(itemId, true);
-            }
+                boolean updated = pstmt.executeUpdate() > 0;
 
-            return updated;
-        }
+                if (updated) {
+                    itemDAO.updateAvailability(conn, itemId, true);
+                }
+
+                return updated;
+            } finally {
+                itemDAO.invalidateCache(itemId);
+            }
+        });
     }
 
     private BorrowRecord mapToRecord(ResultSet rs) throws SQLException {
@@ -138,10 +222,28 @@ public class BorrowRecordDAO implements AutoCloseable {
         if (itemOpt.isEmpty() || memberOpt.isEmpty()) {
             throw new SQLException("Referenced item or member not found");
         }
-        
+
+        return mapToRecord(rs, itemOpt.get(), memberOpt.get());
+    }
+
+    /**
+     * Maps a row against items and members that were already loaded, avoiding a lookup per row.
+     */
+    BorrowRecord mapToRecord(ResultSet rs, Map<String, LibraryItem> items, Map<Integer, Member> members) throws SQLException {
+        LibraryItem item = items.get(rs.getString("item_id"));
+        Member member = members.get(rs.getInt("member_id"));
+
+        if (item == null || member == null) {
+            throw new SQLException("Referenced item or member not found");
+        }
+
+        return mapToRecord(rs, item, member);
+    }
+
+    private BorrowRecord mapToRecord(ResultSet rs, LibraryItem item, Member member) throws SQLException {
         BorrowRecord record = new BorrowRecord();
-        record.setItem(itemOpt.get());
-        record.setMember(memberOpt.get());
+        record.setItem(item);
+        record.setMember(member);
         record.setBorrowDate(rs.getDate("borrow_date").toLocalDate());
         record.setDueDate(rs.getDate("due_date").toLocalDate());
 
@@ -0,0 +1,22 @@
+package jdbc;
+
+public record CacheStats(
+        long hitCount,
+        long missCount,
+        long loadCount,
+        long loadFailureCount,
+        long totalLoadTimeNanos,
+        long evictionCount,
+        long invalidationCount,
+        int size) {
+
+    public double hitRatio() {
+        long requests = hitCount + missCount;
+        return requests == 0 ? 1.0 : (double) hitCount / requests;
+    }
+
+    public double averageLoadPenaltyNanos() {
+        long loads = loadCount + loadFailureCount;
+        return loads == 0 ? 0.0 : (double) totalLoadTimeNanos / loads;
+    }
+}
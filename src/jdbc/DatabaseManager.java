@@ -13,18 +13,48 @@ public class DatabaseManager implements AutoCloseable {
     private static final String PASSWORD = "";
 
     private Connection connection;
+    private ItemDAO itemDAO;
+    private MemberDAO memberDAO;
 
     public DatabaseManager() throws SQLException {
+        this.connection = connect();
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * The item DAO shared by everything on this database that does not bring its own, so they all read and
+     * invalidate one row cache.
+     */
+    public synchronized ItemDAO getItemDAO() {
+        if (itemDAO == null)
+            itemDAO = new ItemDAO(this);
+        return itemDAO;
+    }
+
+    public synchronized MemberDAO getMemberDAO() {
+        if (memberDAO == null)
+            memberDAO = new MemberDAO(this);
+        return memberDAO;
+    }
+
+    /**
+     * Opens an additional connection to the same database. Background writers use their own connection so
+     * that their transactions never toggle auto-commit on the shared one. The caller owns and must close it.
+     */
+    public Connection openConnection() throws SQLException {
+        return connect();
+    }
+
+    private static Connection connect() throws SQLException {
         var props = new Properties();
         props.setProperty("user", USER);
         props.setProperty("password", PASSWORD);
         props.setProperty("ssl", "false");
 
-        this.connection = DriverManager.getConnection(JDBC_URL, props);
-    }
-
-    public Connection getConnection() {
-        return connection;
+        return DriverManager.getConnection(JDBC_URL, props);
     }
 
     public void createTables() throws SQLException {
@@ -44,6 +74,7 @@ public class DatabaseManager implements AutoCloseable {
                             created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
                         )
                     """);
+            stmt.execute("CREATE INDEX idx_items_title ON items (title, id)");
 
             stmt.execute("""
                         CREATE TABLE members (
@@ -0,0 +1,251 @@
+package jdbc;
+
+import entities.transactions.BorrowRecord;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Durable borrow and return writes that share commits. Callers on any thread submit a write and get a future.
+ * A single committer thread collects the writes that arrive within {@code maxWaitMillis} of the first one, up
+ * to {@code maxGroupSize}, runs them in arrival order in one transaction and completes every future once that
+ * transaction has committed. Many concurrent checkouts therefore cost one commit instead of one each. Writes
+ * submitted before {@link #start()} wait for it.
+ * <p>
+ * If the shared transaction fails, it is rolled back and each write in the group is retried in its own
+ * transaction. Only the writes that fail on their own see an exceptional future.
+ */
+public class GroupCommitter implements AutoCloseable {
+    public static final int DEFAULT_MAX_GROUP_SIZE = 256;
+    public static final long DEFAULT_MAX_WAIT_MILLIS = 2;
+
+    @FunctionalInterface
+    private interface Write {
+        Object apply(Connection conn) throws SQLException;
+    }
+
+    private record PendingWrite(Write write, String itemId, CompletableFuture<Object> future) {
+    }
+
+    private static final PendingWrite SHUTDOWN = new PendingWrite(conn -> null, null, null);
+
+    private final ItemDAO itemDAO;
+    private final BorrowRecordDAO recordDAO;
+    private final Connection connection;
+    private final int maxGroupSize;
+    private final long maxWaitNanos;
+
+    private final BlockingQueue<PendingWrite> queue = new LinkedBlockingQueue<>();
+    private Thread committer;
+    private volatile boolean closed;
+
+    private final AtomicLong commitCount = new AtomicLong();
+    private final AtomicLong writeCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+
+    public GroupCommitter(DatabaseManager dbManager, ItemDAO itemDAO, BorrowRecordDAO recordDAO) throws SQLException {
+        this(dbManager, itemDAO, recordDAO, DEFAULT_MAX_GROUP_SIZE, DEFAULT_MAX_WAIT_MILLIS);
+    }
+
+    public GroupCommitter(DatabaseManager dbManager, ItemDAO itemDAO, BorrowRecordDAO recordDAO,
+                          int maxGroupSize, long maxWaitMillis) throws SQLException {
+        if (maxGroupSize <= 0 || maxWaitMillis < 0)
+            throw new IllegalArgumentException("Group size must be positive and wait non-negative");
+
+        this.itemDAO = itemDAO;
+        this.recordDAO = recordDAO;
+        this.maxGroupSize = maxGroupSize;
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+
+        this.connection = dbManager.openConnection();
+        this.connection.setAutoCommit(false);
+    }
+
+    public synchronized GroupCommitter start() {
+        if (committer == null && !closed) {
+            committer = new Thread(this::runCommitter, "library-group-commit");
+            committer.setDaemon(true);
+            committer.start();
+        }
+        return this;
+    }
+
+    /**
+     * Inserts the record and marks its item unavailable. The future completes after the commit.
+     */
+    public CompletableFuture<Void> borrow(BorrowRecord record) {
+        String itemId = record.getItem().getId();
+        return submit(itemId, conn -> {
+            recordDAO.insertRecord(conn, record);
+            itemDAO.updateAvailability(conn, itemId, false);
+            return null;
+        }).thenApply(result -> null);
+    }
+
+    /**
+     * Closes the item's open record and marks it available. The future completes with {@code false} when the
+     * item had no open record.
+     */
+    public CompletableFuture<Boolean> returnItem(String itemId, LocalDate returnDate) {
+        return submit(itemId, conn -> recordDAO.returnItem(conn, itemId, returnDate))
+                .thenApply(Boolean.class::cast);
+    }
+
+    private CompletableFuture<Object> submit(String itemId, Write write) {
+        if (closed)
+            return CompletableFuture.failedFuture(new IllegalStateException("Group committer is closed"));
+
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        PendingWrite pending = new PendingWrite(write, itemId, future);
+        queue.add(pending);
+        // A close that ran since the check may already have drained the queue; whoever takes the write completes it
+        if (closed && queue.remove(pending))
+            future.completeExceptionally(new IllegalStateException("Group committer is closed"));
+        return future;
+    }
+
+    private void runCommitter() {
+        List<PendingWrite> group = new ArrayList<>(maxGroupSize);
+        boolean running = true;
+
+        while (running) {
+            try {
+                PendingWrite first = queue.take();
+                if (first == SHUTDOWN)
+                    break;
+                group.add(first);
+
+                long deadline = System.nanoTime() + maxWaitNanos;
+                while (group.size() < maxGroupSize) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingWrite next = remaining > 0
+                            ? queue.poll(remaining, TimeUnit.NANOSECONDS)
+                            : queue.poll();
+                    if (next == null)
+                        break;
+                    if (next == SHUTDOWN) {
+                        running = false;
+                        break;
+                    }
+                    group.add(next);
+                }
+            } catch (InterruptedException e) {
+                running = false;
+            }
+
+            commitGroup(group);
+            group.clear();
+        }
+
+        // Writes submitted before close() still get their commit
+        queue.drainTo(group);
+        group.remove(SHUTDOWN);
+        for (int from = 0; from < group.size(); from += maxGroupSize)
+            commitGroup(group.subList(from, Math.min(group.size(), from + maxGroupSize)));
+    }
+
+    private void commitGroup(List<PendingWrite> group) {
+        if (group.isEmpty())
+            return;
+
+        List<Object> results = new ArrayList<>(group.size());
+        try {
+            for (PendingWrite pending : group)
+                results.add(pending.write().apply(connection));
+            connection.commit();
+            commitCount.incrementAndGet();
+        } catch (SQLException | RuntimeException e) {
+            rollback();
+            commitIndividually(group);
+            return;
+        } finally {
+            group.forEach(pending -> itemDAO.invalidateCache(pending.itemId()));
+        }
+
+        writeCount.addAndGet(group.size());
+        for (int i = 0; i < group.size(); i++)
+            group.get(i).future().complete(results.get(i));
+    }
+
+    private void commitIndividually(List<PendingWrite> group) {
+        for (PendingWrite pending : group) {
+            try {
+                Object result = pending.write().apply(connection);
+                connection.commit();
+                commitCount.incrementAndGet();
+                writeCount.incrementAndGet();
+                pending.future().complete(result);
+            } catch (SQLException | RuntimeException e) {
+                rollback();
+                failedCount.incrementAndGet();
+                pending.future().completeExceptionally(e);
+            }
+        }
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            System.err.println("Group commit rollback failed: " + e.getMessage());
+        }
+    }
+
+    public long getCommitCount() {
+        return commitCount.get();
+    }
+
+    public long getWriteCount() {
+        return writeCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public double getAverageGroupSize() {
+        long commits = commitCount.get();
+        return commits == 0 ? 0.0 : (double) writeCount.get() / commits;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        Thread started;
+        synchronized (this) {
+            closed = true;
+            started = committer;
+        }
+        queue.add(SHUTDOWN);
+        if (started != null)
+            joinUninterruptibly(started);
+
+        PendingWrite late;
+        while ((late = queue.poll()) != null) {
+            if (late != SHUTDOWN)
+                late.future().completeExceptionally(new IllegalStateException("Group committer is closed"));
+        }
+        connection.close();
+    }
+
+    // Writes already queued are committed by the committer on its way out, so an interrupt waits for that
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
@@ -2,77 +2,126 @@ package jdbc;
 
 import entities.items.*;
 import enums.LibraryItemType;
+import metrics.Instrumentation;
+import metrics.ObjectSizeEstimator;
+import metrics.Operation;
+import metrics.StructureFootprint;
 
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class ItemDAO implements AutoCloseable {
     private final DatabaseManager dbManager;
+    // Holds the columns rather than items, so no caller can change what a later lookup returns
+    private final RowCache<String, ItemRow> cache;
 
     public ItemDAO(DatabaseManager dbManager) {
+        this(dbManager, RowCache.DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public ItemDAO(DatabaseManager dbManager, int cacheSize) {
         this.dbManager = dbManager;
+        this.cache = new RowCache<>(cacheSize);
     }
 
     public void insertItem(LibraryItem item) throws SQLException {
-        String sql = "INSERT INTO items (id, title, type, available) VALUES (?, ?, ?, ?)";
-
-        try (var pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, item.getId());
-            pstmt.setString(2, item.getTitle());
-            pstmt.setString(3, item.getItemType().name());
-            pstmt.setBoolean(4, item.getAvailable());
-            pstmt.executeUpdate();
-        }
+        Instrumentation.run(Operation.ITEM_WRITE, "ItemDAO.insertItem", "itemId", item.getId(), () -> {
+            String sql = "INSERT INTO items (id, title, type, available) VALUES (?, ?, ?, ?)";
+
+            try (var pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                pstmt.setString(1, item.getId());
+                pstmt.setString(2, item.getTitle());
+                pstmt.setString(3, item.getItemType().name());
+                pstmt.setBoolean(4, item.getAvailable());
+                pstmt.executeUpdate();
+            }
+        });
     }
 
-    public Optional<LibraryItem> findById(String id) throws SQLException {
-        String sql = "SELECT * FROM items WHERE id = ?";
-
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, id);
+    /**
+     * Inserts or updates the given items as one JDBC batch on {@code conn}. Transaction boundaries are left
+     * to the caller.
+     */
+    public void mergeItems(Connection conn, Collection<? extends LibraryItem> items) throws SQLException {
+        Instrumentation.run(Operation.ITEM_WRITE, "ItemDAO.mergeItems", "items", items, () -> {
+            String sql = "MERGE INTO items (id, title, type, available) KEY (id) VALUES (?, ?, ?, ?)";
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (LibraryItem item : items) {
+                    pstmt.setString(1, item.getId());
+                    pstmt.setString(2, item.getTitle());
+                    pstmt.setString(3, item.getItemType().name());
+                    pstmt.setBoolean(4, item.getAvailable());
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            } finally {
+                items.forEach(item -> cache.invalidate(item.getId()));
+            }
+        });
+    }
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs == null)
-                    throw new SQLException("executeQuery returned null - check driver or connection");
+    public void deleteItems(Connection conn, Collection<String> ids) throws SQLException {
+        Instrumentation.run(Operation.ITEM_WRITE, "ItemDAO.deleteItems", "ids", ids, () -> {
+            String sql = "DELETE FROM items WHERE id = ?";
 
-                if (rs.next()) {
-                    return Optional.of(mapToItem(rs));
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (String id : ids) {
+                    pstmt.setString(1, id);
+                    pstmt.addBatch();
                 }
+                pstmt.executeBatch();
+            } finally {
+                ids.forEach(cache::invalidate);
             }
-        }
-        return Optional.empty();
+        });
     }
 
-    public List<LibraryItem> findAll() throws SQLException {
-        List<LibraryItem> items = new ArrayList<>();
-        String sql = "SELECT * FROM items ORDER BY title";
+    /**
+     * Looks the item up through the row cache. Every call returns a new item built from the cached row, so
+     * changing it affects neither the cache nor other callers.
+     */
+    public Optional<LibraryItem> findById(String id) throws SQLException {
+        return cache.get(id, this::loadById).map(ItemDAO::toItem);
+    }
+
+    private ItemRow loadById(String id) throws SQLException {
+        return Instrumentation.timed(Operation.ITEM_QUERY, "ItemDAO.findById", "itemId", id, () -> {
+            String sql = "SELECT * FROM items WHERE id = ?";
 
-        try (Statement stmt = dbManager.getConnection().createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+            try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                pstmt.setString(1, id);
 
-            if (rs == null)
-                throw new SQLException("executeQuery returned null - check driver or connection");
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs == null)
+                        throw new SQLException("executeQuery returned null - check driver or connection");
 
-            while (rs.next()) {
-                items.add(mapToItem(rs));
+                    if (rs.next()) {
+                        return readRow(rs);
+                    }
+                }
             }
-        }
-        return items;
+            return null;
+        });
     }
 
-    public List<LibraryItem> findByType(LibraryItemType type) throws SQLException {
-        List<LibraryItem> items = new ArrayList<>();
-        String sql = "SELECT * FROM items WHERE type = ?";
+    public List<LibraryItem> findAll() throws SQLException {
+        return Instrumentation.timed(Operation.ITEM_QUERY, "ItemDAO.findAll", () -> {
+            List<LibraryItem> items = new ArrayList<>();
+            String sql = "SELECT * FROM items ORDER BY title";
 
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, type.name());
+            try (Statement stmt = dbManager.getConnection().createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
 
-            try (ResultSet rs = pstmt.executeQuery()) {
                 if (rs == null)
                     throw new SQLException("executeQuery returned null - check driver or connection");
 
@@ -80,67 +129,211 @@ public class ItemDAO implements AutoCloseable {
                     items.add(mapToItem(rs));
                 }
             }
+            return items;
+        });
+    }
+
+    public List<LibraryItem> findByType(LibraryItemType type) throws SQLException {
+        return Instrumentation.timed(Operation.ITEM_QUERY, "ItemDAO.findByType", "type", type, () -> {
+            List<LibraryItem> items = new ArrayList<>();
+            String sql = "SELECT * FROM items WHERE type = ?";
+
+            try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                pstmt.setString(1, type.name());
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs == null)
+                        throw new SQLException("executeQuery returned null - check driver or connection");
+
+                    while (rs.next()) {
+                        items.add(mapToItem(rs));
+                    }
+                }
+            }
+            return items;
+        });
+    }
+
+    /**
+     * Streams every item ordered by title without materializing the table. The returned stream holds an
+     * open cursor and must be closed, typically with try-with-resources.
+     */
+    public Stream<LibraryItem> streamAll() throws SQLException {
+        String sql = "SELECT * FROM items ORDER BY title, id";
+
+        PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql);
+        return ResultSetStream.of(pstmt, this::mapToItem);
+    }
+
+    public Stream<LibraryItem> streamByType(LibraryItemType type) throws SQLException {
+        String sql = "SELECT * FROM items WHERE type = ? ORDER BY id";
+
+        PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql);
+        try {
+            pstmt.setString(1, type.name());
+        } catch (SQLException e) {
+            pstmt.close();
+            throw e;
         }
-        return items;
+        return ResultSetStream.of(pstmt, this::mapToItem);
+    }
+
+    /**
+     * Returns the next page of items ordered by id. Pass {@code null} to start from the beginning and the
+     * id of the last item of the previous page to continue.
+     */
+    public List<LibraryItem> findPageAfterId(String afterId, int limit) throws SQLException {
+        return Instrumentation.timed(Operation.ITEM_QUERY, "ItemDAO.findPageAfterId", "afterId", afterId, () -> {
+            List<LibraryItem> items = new ArrayList<>();
+            String sql = afterId == null
+                    ? "SELECT * FROM items ORDER BY id LIMIT ?"
+                    : "SELECT * FROM items WHERE id > ? ORDER BY id LIMIT ?";
+
+            try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                int index = 1;
+                if (afterId != null)
+                    pstmt.setString(index++, afterId);
+                pstmt.setInt(index, limit);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs == null)
+                        throw new SQLException("executeQuery returned null - check driver or connection");
+
+                    while (rs.next()) {
+                        items.add(mapToItem(rs));
+                    }
+                }
+            }
+            return items;
+        });
+    }
+
+    /**
+     * Returns the next page of items ordered by title. The id breaks ties between equal titles, so both
+     * values of the last row of the previous page are needed to continue; pass {@code null} for the first page.
+     */
+    public List<LibraryItem> findPageAfterTitle(String afterTitle, String afterId, int limit) throws SQLException {
+        return Instrumentation.timed(Operation.ITEM_QUERY, "ItemDAO.findPageAfterTitle",
+                "afterTitle", afterTitle, () -> {
+            List<LibraryItem> items = new ArrayList<>();
+            String sql = afterTitle == null
+                    ? "SELECT * FROM items ORDER BY title, id LIMIT ?"
+                    : "SELECT * FROM items WHERE title > ? OR (title = ? AND id > ?) ORDER BY title, id LIMIT ?";
+
+            try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                int index = 1;
+                if (afterTitle != null) {
+                    pstmt.setString(index++, afterTitle);
+                    pstmt.setString(index++, afterTitle);
+                    pstmt.setString(index++, afterId != null ? afterId : "");
+                }
+                pstmt.setInt(index, limit);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs == null)
+                        throw new SQLException("executeQuery returned null - check driver or connection");
+
+                    while (rs.next()) {
+                        items.add(mapToItem(rs));
+                    }
+                }
+            }
+            return items;
+        });
     }
 
     public boolean updateAvailability(String id, boolean available) throws SQLException {
-        String sql = "UPDATE items SET available = ? WHERE id = ?";
+        return updateAvailability(dbManager.getConnection(), id, available);
+    }
 
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setBoolean(1, available);
-            pstmt.setString(2, id);
-            return pstmt.executeUpdate() > 0;
-        }
+    public boolean updateAvailability(Connection conn, String id, boolean available) throws SQLException {
+        return Instrumentation.timed(Operation.ITEM_WRITE, "ItemDAO.updateAvailability", "itemId", id, () -> {
+            String sql = "UPDATE items SET available = ? WHERE id = ?";
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                pstmt.setBoolean(1, available);
+                pstmt.setString(2, id);
+                return pstmt.executeUpdate() > 0;
+            } finally {
+                cache.invalidate(id);
+            }
+        });
     }
 
     public boolean deleteItem(String id) throws SQLException {
-        String sql = "DELETE FROM items WHERE id = ?";
-
+        return Instrumentation.timed(Operation.ITEM_WRITE, "ItemDAO.deleteItem", "itemId", id, () -> {
+            String sql = "DELETE FROM items WHERE id = ?";
 
-        try (var pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, id);
-            return pstmt.executeUpdate() > 0;
-        }
 
+            try (var pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                pstmt.setString(1, id);
+                return pstmt.executeUpdate() > 0;
+            } finally {
+                cache.invalidate(id);
+            }
+        });
     }
 
     public int countByType(LibraryItemType type) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM items WHERE type = ?";
+        return Instrumentation.timed(Operation.ITEM_QUERY, "ItemDAO.countByType", "type", type, () -> {
+            String sql = "SELECT COUNT(*) FROM items WHERE type = ?";
 
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, type.name());
+            try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                pstmt.setString(1, type.name());
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs == null)
-                    throw new SQLException("executeQuery returned null - check driver or connection");
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs == null)
+                        throw new SQLException("executeQuery returned null - check driver or connection");
+
+                    if (rs.next())
+                        return rs.getInt(1);
+                }
 
-                if (rs.next())
-                    return rs.getInt(1);
             }
 
-        }
+            return 0;
+        });
+    }
+
+    public void invalidateCache(String id) {
+        cache.invalidate(id);
+    }
 
-        return 0;
+    public void invalidateCache() {
+        cache.invalidateAll();
     }
 
-    private LibraryItem mapToItem(ResultSet rs) throws SQLException {
-        String id = rs.getString("id");
-        String title = rs.getString("title");
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    public StructureFootprint estimateCacheFootprint(int sampleSize) {
+        return cache.estimateFootprint("ItemDAO.cache", ObjectSizeEstimator.getDefault(), sampleSize);
+    }
+
+    LibraryItem mapToItem(ResultSet rs) throws SQLException {
+        return toItem(readRow(rs));
+    }
+
+    private static ItemRow readRow(ResultSet rs) throws SQLException {
         LibraryItemType type = LibraryItemType.valueOf(rs.getString("type"));
-        boolean available = rs.getBoolean("available");
+        return new ItemRow(rs.getString("id"), rs.getString("title"), type, rs.getBoolean("available"),
+                type == LibraryItemType.MAGAZINE ? rs.getDate("created_at").toLocalDate() : null);
+    }
 
+    private static LibraryItem toItem(ItemRow row) {
+        String id = row.id();
         String key = id.substring(id.indexOf('-') + 1);
 
-        LibraryItem item = switch (type) {
-            case BOOK -> new Book(key, title, "Unknown Author");
-            case MAGAZINE -> new Magazine(title, key, rs.getDate("created_at").toLocalDate());
-            case DVD -> new DVD(key, title, "Unknown Director");
-            case REFERENCE_BOOK -> new ReferenceBook(key, title, "General");
-            case AUDIO_BOOK -> new AudioBook(key, title);
+        LibraryItem item = switch (row.type()) {
+            case BOOK -> new Book(key, row.title(), "Unknown Author");
+            case MAGAZINE -> new Magazine(row.title(), key, row.createdAt());
+            case DVD -> new DVD(id, row.title(), "Unknown Director");
+            case REFERENCE_BOOK -> new ReferenceBook(key, row.title(), "General");
+            case AUDIO_BOOK -> new AudioBook(key, row.title());
         };
 
-        item.setAvailable(available);
+        item.setAvailable(row.available());
         return item;
     }
 
@@ -148,4 +341,7 @@ public class ItemDAO implements AutoCloseable {
     public void close() throws Exception {
         // Nothing to close, dbManager handles connection
     }
+
+    private record ItemRow(String id, String title, LibraryItemType type, boolean available, LocalDate createdAt) {
+    }
 }
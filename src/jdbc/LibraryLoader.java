@@ -0,0 +1,239 @@
+package jdbc;
+
+import entities.Library;
+import entities.items.LibraryItem;
+import entities.people.Member;
+import entities.transactions.BorrowRecord;
+import enums.ItemStatus;
+
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds a {@link Library} from the database at startup. Items and members are read at the same time, and
+ * each table is split into key ranges that are read on separate connections. Open borrow records are read the
+ * same way once their items and members are known. The in-memory collections are then built in parallel.
+ * <p>
+ * {@link #load(Library)} returns how long each phase took, so slow restarts can be traced to a table.
+ */
+public class LibraryLoader {
+    public static final int DEFAULT_PARALLELISM = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    public record PhaseTiming(String phase, long rows, long millis) {
+    }
+
+    public record LoadReport(List<PhaseTiming> phases, long totalMillis) {
+        public LoadReport {
+            phases = List.copyOf(phases);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder("Library loaded in " + totalMillis + " ms");
+            phases.forEach(phase -> report.append(String.format("%n  %-15s %8d rows %6d ms",
+                    phase.phase(), phase.rows(), phase.millis())));
+            return report.toString();
+        }
+    }
+
+    @FunctionalInterface
+    private interface RangeQuery<T> {
+        List<T> read(Connection conn) throws SQLException;
+    }
+
+    private final DatabaseManager dbManager;
+    private final ItemDAO itemDAO;
+    private final MemberDAO memberDAO;
+    private final BorrowRecordDAO recordDAO;
+    private final int parallelism;
+
+    public LibraryLoader(DatabaseManager dbManager) {
+        this(dbManager, DEFAULT_PARALLELISM);
+    }
+
+    public LibraryLoader(DatabaseManager dbManager, int parallelism) {
+        if (parallelism <= 0)
+            throw new IllegalArgumentException("Parallelism must be positive");
+
+        this.dbManager = dbManager;
+        this.itemDAO = dbManager.getItemDAO();
+        this.memberDAO = dbManager.getMemberDAO();
+        this.recordDAO = new BorrowRecordDAO(dbManager, itemDAO, memberDAO);
+        this.parallelism = parallelism;
+    }
+
+    public LoadReport load(Library library) throws SQLException {
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism, new LoaderThreadFactory());
+        List<PhaseTiming> phases = new ArrayList<>();
+        long start = System.nanoTime();
+
+        try {
+            CompletableFuture<TimedResult<List<LibraryItem>>> itemsFuture = readPartitions(itemRanges(), executor);
+            CompletableFuture<TimedResult<List<Member>>> membersFuture = readPartitions(memberRanges(), executor);
+
+            TimedResult<List<LibraryItem>> items = join(itemsFuture);
+            TimedResult<List<Member>> members = join(membersFuture);
+            phases.add(new PhaseTiming("items", items.value().size(), items.millis()));
+            phases.add(new PhaseTiming("members", members.value().size(), members.millis()));
+
+            Map<String, LibraryItem> itemsById = new HashMap<>(items.value().size() * 2);
+            items.value().forEach(item -> itemsById.put(item.getId(), item));
+            Map<Integer, Member> membersById = new HashMap<>(members.value().size() * 2);
+            members.value().forEach(member -> membersById.put(member.getId(), member));
+
+            TimedResult<List<BorrowRecord>> records = join(
+                    readPartitions(activeRecordRanges(itemsById, membersById), executor));
+            records.value().forEach(record -> record.getItem().setStatus(ItemStatus.BORROWED));
+            phases.add(new PhaseTiming("borrow_records", records.value().size(), records.millis()));
+
+            long indexStart = System.nanoTime();
+            library.restore(items.value(), members.value(), records.value(), executor);
+            phases.add(new PhaseTiming("indexes",
+                    items.value().size() + members.value().size() + records.value().size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - indexStart)));
+        } finally {
+            executor.shutdown();
+        }
+
+        return new LoadReport(phases, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private List<RangeQuery<LibraryItem>> itemRanges() throws SQLException {
+        // One pass numbers the ids into equal tiles; the first id of each tile after the first is a bound
+        List<String> bounds = new ArrayList<>();
+        String sql = "SELECT MIN(id) FROM (SELECT id, NTILE(" + parallelism + ") OVER (ORDER BY id) AS tile"
+                + " FROM items) AS tiles GROUP BY tile HAVING tile > 1 ORDER BY 1";
+        try (Connection conn = dbManager.openConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql)) {
+            while (rs.next())
+                bounds.add(rs.getString(1));
+        }
+
+        List<RangeQuery<LibraryItem>> ranges = new ArrayList<>();
+        for (int i = 0; i <= bounds.size(); i++) {
+            String from = i == 0 ? null : bounds.get(i - 1);
+            String to = i == bounds.size() ? null : bounds.get(i);
+            ranges.add(conn -> readItems(conn, from, to));
+        }
+        return ranges;
+    }
+
+    private List<LibraryItem> readItems(Connection conn, String fromInclusive, String toExclusive) throws SQLException {
+        String sql = "SELECT * FROM items WHERE 1 = 1"
+                + (fromInclusive != null ? " AND id >= ?" : "")
+                + (toExclusive != null ? " AND id < ?" : "");
+        List<LibraryItem> items = new ArrayList<>();
+
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setFetchSize(ResultSetStream.DEFAULT_FETCH_SIZE);
+            int index = 1;
+            if (fromInclusive != null)
+                pstmt.setString(index++, fromInclusive);
+            if (toExclusive != null)
+                pstmt.setString(index, toExclusive);
+
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next())
+                    items.add(itemDAO.mapToItem(rs));
+            }
+        }
+        return items;
+    }
+
+    private List<RangeQuery<Member>> memberRanges() throws SQLException {
+        String sql = "SELECT * FROM members WHERE id BETWEEN ? AND ?";
+        return intRanges("SELECT MIN(id), MAX(id) FROM members", sql, memberDAO::mapToMember);
+    }
+
+    private List<RangeQuery<BorrowRecord>> activeRecordRanges(Map<String, LibraryItem> items,
+                                                              Map<Integer, Member> members) throws SQLException {
+        String sql = "SELECT * FROM borrow_records WHERE return_date IS NULL AND id BETWEEN ? AND ?";
+        return intRanges("SELECT MIN(id), MAX(id) FROM borrow_records WHERE return_date IS NULL", sql,
+                rs -> recordDAO.mapToRecord(rs, items, members));
+    }
+
+    private <T> List<RangeQuery<T>> intRanges(String boundsSql, String rangeSql, RowMapper<T> mapper) throws SQLException {
+        long min;
+        long max;
+        try (Connection conn = dbManager.openConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(boundsSql)) {
+            if (!rs.next() || rs.getObject(1) == null)
+                return List.of();
+            min = rs.getLong(1);
+            max = rs.getLong(2);
+        }
+
+        long span = max - min + 1;
+        int partitions = (int) Math.min(parallelism, span);
+        List<RangeQuery<T>> ranges = new ArrayList<>(partitions);
+        for (int i = 0; i < partitions; i++) {
+            long from = min + span * i / partitions;
+            long to = min + span * (i + 1) / partitions - 1;
+            ranges.add(conn -> {
+                List<T> rows = new ArrayList<>();
+                try (PreparedStatement pstmt = conn.prepareStatement(rangeSql)) {
+                    pstmt.setFetchSize(ResultSetStream.DEFAULT_FETCH_SIZE);
+                    pstmt.setLong(1, from);
+                    pstmt.setLong(2, to);
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next())
+                            rows.add(mapper.map(rs));
+                    }
+                }
+                return rows;
+            });
+        }
+        return ranges;
+    }
+
+    // Partitions run as independent pool tasks and are merged by a completion stage, so no pool thread
+    // ever blocks waiting for another partition.
+    private <T> CompletableFuture<TimedResult<List<T>>> readPartitions(List<RangeQuery<T>> ranges,
+                                                                      ExecutorService executor) {
+        long start = System.nanoTime();
+        List<CompletableFuture<List<T>>> futures = ranges.stream()
+                .map(range -> CompletableFuture.supplyAsync(() -> {
+                    try (Connection conn = dbManager.openConnection()) {
+                        return range.read(conn);
+                    } catch (SQLException e) {
+                        throw new CompletionException(e);
+                    }
+                }, executor))
+                .toList();
+
+        return CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .thenApply(done -> {
+                    List<T> rows = new ArrayList<>();
+                    futures.forEach(future -> rows.addAll(future.join()));
+                    return new TimedResult<>(rows, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+                });
+    }
+
+    private record TimedResult<T>(T value, long millis) {
+    }
+
+    private static <T> T join(CompletableFuture<T> future) throws SQLException {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException sqlException)
+                throw sqlException;
+            throw e;
+        }
+    }
+
+    private static class LoaderThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "library-loader-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
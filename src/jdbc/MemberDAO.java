@@ -3,115 +3,253 @@ package jdbc;
 
 import entities.people.Member;
 import enums.MemberStatus;
+import metrics.Instrumentation;
+import metrics.ObjectSizeEstimator;
+import metrics.Operation;
+import metrics.StructureFootprint;
 
 import java.sql.*;
+import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public class MemberDAO implements AutoCloseable {
     private final DatabaseManager dbManager;
+    // Holds the columns rather than members, so no caller can change what a later lookup returns
+    private final RowCache<Integer, MemberRow> cache;
 
     public MemberDAO(DatabaseManager dbManager) {
+        this(dbManager, RowCache.DEFAULT_MAXIMUM_SIZE);
+    }
+
+    public MemberDAO(DatabaseManager dbManager, int cacheSize) {
         this.dbManager = dbManager;
+        this.cache = new RowCache<>(cacheSize);
     }
 
     public void insertMember(Member member) throws SQLException {
-        String sql = "INSERT INTO members (id, name, email, phone, status, membership_date) VALUES (?, ?, ?, ?, ?, ?)";
-
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, member.getId());
-            pstmt.setString(2, member.getName());
-            pstmt.setString(3, member.getEmail());
-            pstmt.setString(4, member.getPhoneNumber());
-            pstmt.setString(5, member.getStatus().name());
-            pstmt.setDate(6, Date.valueOf(member.getMembershipDate()));
-            pstmt.executeUpdate();
-        }
+        Instrumentation.run(Operation.MEMBER_WRITE, "MemberDAO.insertMember", "memberId", member.getId(), () -> {
+            String sql = "INSERT INTO members (id, name, email, phone, status, membership_date) VALUES (?, ?, ?, ?, ?, ?)";
+
+            try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                pstmt.setInt(1, member.getId());
+                pstmt.setString(2, member.getName());
+                pstmt.setString(3, member.getEmail());
+                pstmt.setString(4, member.getPhoneNumber());
+                pstmt.setString(5, member.getStatus().name());
+                pstmt.setDate(6, Date.valueOf(member.getMembershipDate()));
+                pstmt.executeUpdate();
+            }
+        });
     }
     
+    /**
+     * Inserts or updates the given members as one JDBC batch on {@code conn}. Transaction boundaries are left
+     * to the caller.
+     */
+    public void mergeMembers(Connection conn, Collection<Member> members) throws SQLException {
+        Instrumentation.run(Operation.MEMBER_WRITE, "MemberDAO.mergeMembers", "members", members, () -> {
+            String sql = "MERGE INTO members (id, name, email, phone, status, membership_date) KEY (id) VALUES (?, ?, ?, ?, ?, ?)";
+
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                for (Member member : members) {
+                    pstmt.setInt(1, member.getId());
+                    pstmt.setString(2, member.getName());
+                    pstmt.setString(3, member.getEmail());
+                    pstmt.setString(4, member.getPhoneNumber());
+                    pstmt.setString(5, member.getStatus().name());
+                    pstmt.setDate(6, Date.valueOf(member.getMembershipDate()));
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+            } finally {
+                members.forEach(member -> cache.invalidate(member.getId()));
+            }
+        });
+    }
+
+    /**
+     * Looks the member up through the row cache. Every call returns a new member built from the cached row, so
+     * changing it affects neither the cache nor other callers.
+     */
     public Optional<Member> findById(int id) throws SQLException {
-        String sql = "SELECT * FROM members WHERE id = ?";
+        return cache.get(id, this::loadById).map(MemberDAO::toMember);
+    }
 
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, id);
+    private MemberRow loadById(int id) throws SQLException {
+        return Instrumentation.timed(Operation.MEMBER_QUERY, "MemberDAO.findById", "memberId", id, () -> {
+            String sql = "SELECT * FROM members WHERE id = ?";
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs == null)
-                    throw new SQLException("executeQuery returned null - check driver or connection");
+            try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                pstmt.setInt(1, id);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs == null)
+                        throw new SQLException("executeQuery returned null - check driver or connection");
 
-                if (rs.next()) {
-                    return Optional.of(mapToMember(rs));
+                    if (rs.next()) {
+                        return readRow(rs);
+                    }
                 }
             }
-        }
-        return Optional.empty();
+            return null;
+        });
     }
 
     public List<Member> findAll() throws SQLException {
-        List<Member> members = new ArrayList<>();
-        String sql = "SELECT * FROM members ORDER BY name";
+        return Instrumentation.timed(Operation.MEMBER_QUERY, "MemberDAO.findAll", () -> {
+            List<Member> members = new ArrayList<>();
+            String sql = "SELECT * FROM members ORDER BY name";
 
-        try (Statement stmt = dbManager.getConnection().createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
+            try (Statement stmt = dbManager.getConnection().createStatement();
+                 ResultSet rs = stmt.executeQuery(sql)) {
 
-            if (rs == null)
-                throw new SQLException("executeQuery returned null - check driver or connection");
+                if (rs == null)
+                    throw new SQLException("executeQuery returned null - check driver or connection");
 
-            while (rs.next()) {
-                members.add(mapToMember(rs));
+                while (rs.next()) {
+                    members.add(mapToMember(rs));
+                }
             }
-        }
-        return members;
+            return members;
+        });
     }
 
     public List<Member> findByStatus(MemberStatus status) throws SQLException {
-        List<Member> members = new ArrayList<>();
-        String sql = "SELECT * FROM members WHERE status = ?";
+        return Instrumentation.timed(Operation.MEMBER_QUERY, "MemberDAO.findByStatus", "status", status, () -> {
+            List<Member> members = new ArrayList<>();
+            String sql = "SELECT * FROM members WHERE status = ?";
 
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setString(1, status.name());
+            try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                pstmt.setString(1, status.name());
 
-            try (ResultSet rs = pstmt.executeQuery()) {
-                if (rs == null)
-                    throw new SQLException("executeQuery returned null - check driver or connection");
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs == null)
+                        throw new SQLException("executeQuery returned null - check driver or connection");
 
-                while (rs.next()) {
-                    members.add(mapToMember(rs));
+                    while (rs.next()) {
+                        members.add(mapToMember(rs));
+                    }
                 }
             }
-        }
-        return members;
+            return members;
+        });
     }
 
-    public boolean updateStatus(int id, MemberStatus status) throws SQLException {
-        String sql = "UPDATE members SET status = ? WHERE id = ?";
+    /**
+     * Streams every member ordered by name without materializing the table. The returned stream holds an
+     * open cursor and must be closed, typically with try-with-resources.
+     */
+    public Stream<Member> streamAll() throws SQLException {
+        String sql = "SELECT * FROM members ORDER BY name, id";
+
+        PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql);
+        return ResultSetStream.of(pstmt, this::mapToMember);
+    }
 
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+    public Stream<Member> streamByStatus(MemberStatus status) throws SQLException {
+        String sql = "SELECT * FROM members WHERE status = ? ORDER BY id";
+
+        PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql);
+        try {
             pstmt.setString(1, status.name());
-            pstmt.setInt(2, id);
-            return pstmt.executeUpdate() > 0;
+        } catch (SQLException e) {
+            pstmt.close();
+            throw e;
         }
+        return ResultSetStream.of(pstmt, this::mapToMember);
+    }
+
+    /**
+     * Returns the next page of members ordered by id. Pass {@code null} to start from the beginning and the
+     * id of the last member of the previous page to continue.
+     */
+    public List<Member> findPageAfterId(Integer afterId, int limit) throws SQLException {
+        return Instrumentation.timed(Operation.MEMBER_QUERY, "MemberDAO.findPageAfterId", "afterId", afterId, () -> {
+            List<Member> members = new ArrayList<>();
+            String sql = afterId == null
+                    ? "SELECT * FROM members ORDER BY id LIMIT ?"
+                    : "SELECT * FROM members WHERE id > ? ORDER BY id LIMIT ?";
+
+            try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                int index = 1;
+                if (afterId != null)
+                    pstmt.setInt(index++, afterId);
+                pstmt.setInt(index, limit);
+
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (rs == null)
+                        throw new SQLException("executeQuery returned null - check driver or connection");
+
+                    while (rs.next()) {
+                        members.add(mapToMember(rs));
+                    }
+                }
+            }
+            return members;
+        });
+    }
+
+    public boolean updateStatus(int id, MemberStatus status) throws SQLException {
+        return Instrumentation.timed(Operation.MEMBER_WRITE, "MemberDAO.updateStatus", "memberId", id, () -> {
+            String sql = "UPDATE members SET status = ? WHERE id = ?";
+
+            try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                pstmt.setString(1, status.name());
+                pstmt.setInt(2, id);
+                return pstmt.executeUpdate() > 0;
+            } finally {
+                cache.invalidate(id);
+            }
+        });
     }
 
     public boolean deleteMember(int id) throws SQLException {
-        String sql = "DELETE FROM members WHERE id = ?";
+        return Instrumentation.timed(Operation.MEMBER_WRITE, "MemberDAO.deleteMember", "memberId", id, () -> {
+            String sql = "DELETE FROM members WHERE id = ?";
 
-        try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
-            pstmt.setInt(1, id);
-            return pstmt.executeUpdate() > 0;
-        }
+            try (PreparedStatement pstmt = dbManager.getConnection().prepareStatement(sql)) {
+                pstmt.setInt(1, id);
+                return pstmt.executeUpdate() > 0;
+            } finally {
+                cache.invalidate(id);
+            }
+        });
     }
 
-    private Member mapToMember(ResultSet rs) throws SQLException {
-        Member member = new Member(
-                rs.getInt("id"),
-                rs.getString("name"),
-                rs.getString("email")
-        );
-        member.setPhoneNumber(rs.getString("phone"));
-        member.setStatus(MemberStatus.valueOf(rs.getString("status")));
-        member.setMembershipDate(rs.getDate("membership_date").toLocalDate());
+    public void invalidateCache(int id) {
+        cache.invalidate(id);
+    }
+
+    public void invalidateCache() {
+        cache.invalidateAll();
+    }
+
+    public CacheStats getCacheStats() {
+        return cache.stats();
+    }
+
+    public StructureFootprint estimateCacheFootprint(int sampleSize) {
+        return cache.estimateFootprint("MemberDAO.cache", ObjectSizeEstimator.getDefault(), sampleSize);
+    }
+
+    Member mapToMember(ResultSet rs) throws SQLException {
+        return toMember(readRow(rs));
+    }
+
+    private static MemberRow readRow(ResultSet rs) throws SQLException {
+        return new MemberRow(rs.getInt("id"), rs.getString("name"), rs.getString("email"), rs.getString("phone"),
+                MemberStatus.valueOf(rs.getString("status")), rs.getDate("membership_date").toLocalDate());
+    }
+
+    private static Member toMember(MemberRow row) {
+        Member member = new Member(row.id(), row.name(), row.email());
+        member.setPhoneNumber(row.phone());
+        member.setStatus(row.status());
+        member.setMembershipDate(row.membershipDate());
         return member;
     }
 
@@ -119,4 +257,8 @@ public class MemberDAO implements AutoCloseable {
     public void close() throws Exception {
         // Nothing to close
     }
+
+    private record MemberRow(int id, String name, String email, String phone, MemberStatus status,
+                             LocalDate membershipDate) {
+    }
 }
\ No newline at end of file
@@ -0,0 +1,63 @@
+package jdbc;
+
+import exceptions.DataAccessException;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Turns an open query into a lazily consumed {@link Stream}. Rows are mapped one at a time while the
+ * caller pulls them, so the full result never has to sit in memory. The statement and result set are
+ * released when the stream is closed, which means callers must use it in a try-with-resources block.
+ */
+final class ResultSetStream {
+    static final int DEFAULT_FETCH_SIZE = 500;
+
+    private ResultSetStream() {
+    }
+
+    static <T> Stream<T> of(PreparedStatement pstmt, RowMapper<T> mapper) throws SQLException {
+        ResultSet rs;
+        try {
+            pstmt.setFetchSize(DEFAULT_FETCH_SIZE);
+            rs = pstmt.executeQuery();
+            if (rs == null)
+                throw new SQLException("executeQuery returned null - check driver or connection");
+        } catch (SQLException e) {
+            pstmt.close();
+            throw e;
+        }
+
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance(Consumer<? super T> action) {
+                try {
+                    if (!rs.next())
+                        return false;
+                    action.accept(mapper.map(rs));
+                    return true;
+                } catch (SQLException e) {
+                    throw new DataAccessException("Failed to read row: " + e.getMessage(), e);
+                }
+            }
+        };
+
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> close(rs, pstmt));
+    }
+
+    private static void close(ResultSet rs, PreparedStatement pstmt) {
+        try (pstmt; rs) {
+            // closed by try-with-resources, result set first
+        } catch (SQLException e) {
+            throw new DataAccessException("Failed to close result set: " + e.getMessage(), e);
+        }
+    }
+}
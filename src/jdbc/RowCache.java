@@ -0,0 +1,194 @@
+package jdbc;
+
+import metrics.ObjectSizeEstimator;
+import metrics.StructureFootprint;
+
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded read-through cache for single-row lookups. Entries are evicted in least-recently-used order once
+ * the cache holds {@code maximumSize} rows. Concurrent misses for the same key share one load, so a burst
+ * of requests for a cold row reaches the database only once.
+ * <p>
+ * Cached values are the same instances on every hit, so they should be immutable; the DAOs cache a row's
+ * columns and build a new entity from them per lookup. A load that races with {@link #invalidate} is handed
+ * to its callers but never stored, so an invalidation is never undone by a load that read the old row.
+ */
+public class RowCache<K, V> {
+    public static final int DEFAULT_MAXIMUM_SIZE = 10_000;
+
+    @FunctionalInterface
+    public interface Loader<K, V> {
+        V load(K key) throws SQLException;
+    }
+
+    private final int maximumSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<K, V> entries;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> loadsInFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public RowCache(int maximumSize) {
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("Maximum size must be positive");
+
+        this.maximumSize = maximumSize;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                if (size() > RowCache.this.maximumSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public Optional<V> get(K key, Loader<K, V> loader) throws SQLException {
+        V cached = getIfPresent(key);
+        if (cached != null) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        misses.increment();
+
+        CompletableFuture<V> load = new CompletableFuture<>();
+        CompletableFuture<V> inFlight = loadsInFlight.putIfAbsent(key, load);
+        if (inFlight != null)
+            return Optional.ofNullable(await(inFlight));
+
+        long start = System.nanoTime();
+        try {
+            V value = loader.load(key);
+            totalLoadTime.add(System.nanoTime() - start);
+            loads.increment();
+
+            lock.lock();
+            try {
+                if (loadsInFlight.remove(key, load) && value != null)
+                    entries.put(key, value);
+            } finally {
+                lock.unlock();
+            }
+
+            load.complete(value);
+            return Optional.ofNullable(value);
+        } catch (SQLException | RuntimeException e) {
+            totalLoadTime.add(System.nanoTime() - start);
+            loadFailures.increment();
+            loadsInFlight.remove(key, load);
+            load.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public V getIfPresent(K key) {
+        lock.lock();
+        try {
+            return entries.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            entries.remove(key);
+            loadsInFlight.remove(key);
+            invalidations.increment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            entries.clear();
+            loadsInFlight.clear();
+            invalidations.increment();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Estimates the cache's heap use from its entry count and the sizes of up to {@code sampleSize} evenly
+     * spaced entries, keys included.
+     */
+    public StructureFootprint estimateFootprint(String name, ObjectSizeEstimator estimator, int sampleSize) {
+        List<Map.Entry<K, V>> sample = new ArrayList<>();
+        int size;
+        lock.lock();
+        try {
+            size = entries.size();
+            int stride = Math.max(1, size / Math.max(1, sampleSize));
+            int index = 0;
+            for (Map.Entry<K, V> entry : entries.entrySet()) {
+                if (index++ % stride == 0 && sample.size() < sampleSize)
+                    sample.add(Map.entry(entry.getKey(), entry.getValue()));
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        long sampledBytes = sample.stream()
+                .mapToLong(entry -> estimator.retainedSize(entry.getKey()) + estimator.retainedSize(entry.getValue()))
+                .sum();
+        ObjectSizeEstimator.SizeSample sizes = new ObjectSizeEstimator.SizeSample(size, sample.size(), sampledBytes);
+        return StructureFootprint.of(name, estimator.hashMapOverhead(entries, size, true), sizes);
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public CacheStats stats() {
+        return new CacheStats(
+                hits.sum(),
+                misses.sum(),
+                loads.sum(),
+                loadFailures.sum(),
+                totalLoadTime.sum(),
+                evictions.sum(),
+                invalidations.sum(),
+                size()
+        );
+    }
+
+    private V await(CompletableFuture<V> inFlight) throws SQLException {
+        try {
+            return inFlight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof SQLException sqlException)
+                throw sqlException;
+            if (e.getCause() instanceof RuntimeException runtimeException)
+                throw runtimeException;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,400 @@
+package jdbc;
+
+import entities.items.LibraryItem;
+import entities.people.Member;
+import entities.transactions.BorrowRecord;
+import interfaces.LibraryChangeListener;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persists {@link entities.Library} mutations to the database in the background. Call {@link #start()} and
+ * register it with {@code library.addChangeListener(writer)}: every captured change is queued in memory, so borrowing and
+ * returning never wait for JDBC. Changes to the same row are coalesced while they wait, so an item that flips
+ * between borrowed and available several times is written once with its latest state.
+ * <p>
+ * A background thread flushes the queue in a single transaction on its own connection once it holds
+ * {@code batchSize} rows or the oldest change is {@code maxLagMillis} old. When the queue is full, capturing
+ * threads wait for the next flush instead of dropping changes. A row the database rejects, or that cannot be
+ * bound, is counted as failed and the rest of its batch is still written.
+ * <p>
+ * Member changes are captured when they go through the library, with {@code Library.setMemberStatus} and
+ * {@code Library.changeMemberEmail}; setters called on a {@link Member} directly are not seen.
+ */
+public class WriteBehindWriter implements LibraryChangeListener, AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 10_000;
+    public static final int DEFAULT_BATCH_SIZE = 500;
+    public static final long DEFAULT_MAX_LAG_MILLIS = 200;
+
+    // Declaration order is the order in which a flush applies the writes, parents before children. Updates go
+    // before inserts: an update matches the open row of an item, member and borrow date, so a loan returned and
+    // borrowed again on the same day must be closed before the new loan's row exists.
+    private enum Operation {
+        MERGE_ITEM, MERGE_MEMBER, UPDATE_RECORD, INSERT_RECORD, DELETE_ITEM
+    }
+
+    private record PendingWrite(Operation operation, Object row, long capturedAtNanos) {
+    }
+
+    private record RowKey(String table, Object id) {
+    }
+
+    private static final class RecordKey {
+        private final BorrowRecord record;
+
+        private RecordKey(BorrowRecord record) {
+            this.record = record;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof RecordKey other && other.record == record;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(record);
+        }
+    }
+
+    private final ItemDAO itemDAO;
+    private final MemberDAO memberDAO;
+    private final BorrowRecordDAO recordDAO;
+    private final Connection connection;
+
+    private final int capacity;
+    private final int batchSize;
+    private final long maxLagNanos;
+
+    private final ReentrantLock queueLock = new ReentrantLock();
+    private final Condition flushRequested = queueLock.newCondition();
+    private final Condition notFull = queueLock.newCondition();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private LinkedHashMap<Object, PendingWrite> pending = new LinkedHashMap<>();
+    private long oldestCaptureNanos;
+    private volatile boolean closed;
+
+    private final AtomicLong capturedCount = new AtomicLong();
+    private final AtomicLong coalescedCount = new AtomicLong();
+    private final AtomicLong writtenCount = new AtomicLong();
+    private final AtomicLong failedCount = new AtomicLong();
+    private final AtomicLong flushCount = new AtomicLong();
+    private volatile long lastFlushLagMillis;
+
+    private Thread flusher;
+
+    public WriteBehindWriter(DatabaseManager dbManager, ItemDAO itemDAO, MemberDAO memberDAO,
+                             BorrowRecordDAO recordDAO) throws SQLException {
+        this(dbManager, itemDAO, memberDAO, recordDAO, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE, DEFAULT_MAX_LAG_MILLIS);
+    }
+
+    public WriteBehindWriter(DatabaseManager dbManager, ItemDAO itemDAO, MemberDAO memberDAO,
+                             BorrowRecordDAO recordDAO, int capacity, int batchSize,
+                             long maxLagMillis) throws SQLException {
+        if (capacity <= 0 || batchSize <= 0 || maxLagMillis < 0)
+            throw new IllegalArgumentException("Capacity and batch size must be positive, lag non-negative");
+
+        this.itemDAO = itemDAO;
+        this.memberDAO = memberDAO;
+        this.recordDAO = recordDAO;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMillis);
+
+        this.connection = dbManager.openConnection();
+        this.connection.setAutoCommit(false);
+    }
+
+    /**
+     * Starts the background flusher. Until then captured changes only reach the database through {@link #flush()}.
+     */
+    public synchronized WriteBehindWriter start() {
+        if (flusher == null) {
+            flusher = new Thread(this::runFlusher, "library-write-behind");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+        return this;
+    }
+
+    @Override
+    public void itemAdded(LibraryItem item) {
+        capture(new RowKey("items", item.getId()), Operation.MERGE_ITEM, item);
+    }
+
+    @Override
+    public void itemRemoved(LibraryItem item) {
+        capture(new RowKey("items", item.getId()), Operation.DELETE_ITEM, item);
+    }
+
+    @Override
+    public void itemUpdated(LibraryItem item) {
+        itemAdded(item);
+    }
+
+    @Override
+    public void memberAdded(Member member) {
+        capture(new RowKey("members", member.getId()), Operation.MERGE_MEMBER, member);
+    }
+
+    @Override
+    public void memberUpdated(Member member) {
+        memberAdded(member);
+    }
+
+    @Override
+    public void itemBorrowed(BorrowRecord record) {
+        memberAdded(record.getMember());
+        itemAdded(record.getItem());
+        capture(new RecordKey(record), Operation.INSERT_RECORD, record);
+    }
+
+    @Override
+    public void itemReturned(BorrowRecord record) {
+        itemAdded(record.getItem());
+        capture(new RecordKey(record), Operation.UPDATE_RECORD, record);
+    }
+
+    @Override
+    public void itemRenewed(BorrowRecord record) {
+        capture(new RecordKey(record), Operation.UPDATE_RECORD, record);
+    }
+
+    private void capture(Object key, Operation operation, Object row) {
+        queueLock.lock();
+        try {
+            while (!closed && pending.size() >= capacity && !pending.containsKey(key)) {
+                flushRequested.signal();
+                notFull.awaitUninterruptibly();
+            }
+            if (closed)
+                throw new IllegalStateException("Write-behind writer is closed");
+
+            long now = System.nanoTime();
+            if (pending.isEmpty()) {
+                oldestCaptureNanos = now;
+                flushRequested.signal();
+            }
+
+            PendingWrite previous = pending.get(key);
+            if (previous == null) {
+                pending.put(key, new PendingWrite(operation, row, now));
+            } else {
+                coalescedCount.incrementAndGet();
+                // A record that has not reached the database yet is inserted with its latest dates
+                Operation merged = previous.operation() == Operation.INSERT_RECORD ? Operation.INSERT_RECORD : operation;
+                pending.put(key, new PendingWrite(merged, row, previous.capturedAtNanos()));
+            }
+            capturedCount.incrementAndGet();
+
+            if (pending.size() >= batchSize)
+                flushRequested.signal();
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    private void runFlusher() {
+        while (true) {
+            queueLock.lock();
+            try {
+                while (!closed && pending.isEmpty())
+                    flushRequested.awaitUninterruptibly();
+
+                while (!closed && pending.size() < batchSize) {
+                    long remaining = oldestCaptureNanos + maxLagNanos - System.nanoTime();
+                    if (remaining <= 0)
+                        break;
+                    try {
+                        flushRequested.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        break;
+                    }
+                }
+
+                if (closed)
+                    return;
+            } finally {
+                queueLock.unlock();
+            }
+
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                System.err.println("Write-behind flush failed: " + e);
+            }
+        }
+    }
+
+    /**
+     * Writes everything captured so far and returns once it is committed or recorded as failed.
+     */
+    public void flush() {
+        writeLock.lock();
+        try {
+            LinkedHashMap<Object, PendingWrite> batch;
+            queueLock.lock();
+            try {
+                batch = pending;
+                pending = new LinkedHashMap<>();
+                notFull.signalAll();
+            } finally {
+                queueLock.unlock();
+            }
+
+            if (!batch.isEmpty())
+                write(batch.values());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void write(Collection<PendingWrite> batch) {
+        EnumMap<Operation, List<Object>> rowsByOperation = new EnumMap<>(Operation.class);
+        long oldest = Long.MAX_VALUE;
+        for (PendingWrite write : batch) {
+            rowsByOperation.computeIfAbsent(write.operation(), op -> new ArrayList<>()).add(write.row());
+            oldest = Math.min(oldest, write.capturedAtNanos());
+        }
+
+        try {
+            for (Map.Entry<Operation, List<Object>> entry : rowsByOperation.entrySet())
+                apply(entry.getKey(), entry.getValue());
+            connection.commit();
+            writtenCount.addAndGet(batch.size());
+        } catch (SQLException | RuntimeException e) {
+            rollback();
+            System.err.println("Write-behind batch failed, retrying rows one by one: " + e);
+            writeIndividually(batch);
+        } finally {
+            invalidateCaches(rowsByOperation);
+        }
+
+        flushCount.incrementAndGet();
+        lastFlushLagMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - oldest);
+    }
+
+    private void writeIndividually(Collection<PendingWrite> batch) {
+        List<PendingWrite> ordered = new ArrayList<>(batch);
+        ordered.sort(Comparator.comparing(PendingWrite::operation));
+
+        for (PendingWrite write : ordered) {
+            try {
+                apply(write.operation(), List.of(write.row()));
+                connection.commit();
+                writtenCount.incrementAndGet();
+            } catch (SQLException | RuntimeException e) {
+                rollback();
+                failedCount.incrementAndGet();
+                System.err.println("Write-behind dropped " + write.operation() + ": " + e);
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void apply(Operation operation, List<Object> rows) throws SQLException {
+        switch (operation) {
+            case MERGE_ITEM -> itemDAO.mergeItems(connection, (List<LibraryItem>) (List<?>) rows);
+            case MERGE_MEMBER -> memberDAO.mergeMembers(connection, (List<Member>) (List<?>) rows);
+            case INSERT_RECORD -> recordDAO.insertRecords(connection, (List<BorrowRecord>) (List<?>) rows);
+            case UPDATE_RECORD -> recordDAO.updateDates(connection, (List<BorrowRecord>) (List<?>) rows);
+            case DELETE_ITEM -> itemDAO.deleteItems(connection, rows.stream()
+                    .map(row -> ((LibraryItem) row).getId())
+                    .toList());
+        }
+    }
+
+    // The DAOs invalidate while writing; this repeats it after commit so no reader caches the old row.
+    private void invalidateCaches(Map<Operation, List<Object>> rowsByOperation) {
+        for (Map.Entry<Operation, List<Object>> entry : rowsByOperation.entrySet()) {
+            for (Object row : entry.getValue()) {
+                if (row instanceof LibraryItem item)
+                    itemDAO.invalidateCache(item.getId());
+                else if (row instanceof Member member)
+                    memberDAO.invalidateCache(member.getId());
+            }
+        }
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException e) {
+            System.err.println("Write-behind rollback failed: " + e.getMessage());
+        }
+    }
+
+    public int getPendingCount() {
+        queueLock.lock();
+        try {
+            return pending.size();
+        } finally {
+            queueLock.unlock();
+        }
+    }
+
+    public long getCapturedCount() {
+        return capturedCount.get();
+    }
+
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    public long getWrittenCount() {
+        return writtenCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getFlushCount() {
+        return flushCount.get();
+    }
+
+    public long getLastFlushLagMillis() {
+        return lastFlushLagMillis;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        queueLock.lock();
+        try {
+            closed = true;
+            flushRequested.signalAll();
+            notFull.signalAll();
+        } finally {
+            queueLock.unlock();
+        }
+
+        Thread started;
+        synchronized (this) {
+            started = flusher;
+        }
+        if (started != null)
+            joinUninterruptibly(started);
+        flush();
+        connection.close();
+    }
+
+    // The final flush must still run, so an interrupt is only passed on once the flusher has stopped
+    private static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+}
@@ -18,6 +18,7 @@ import jdbc.ItemDAO;
 import jdbc.MemberDAO;
 import services.LibraryTaskExecutor;
 import services.LocalizationService;
+import util.LibraryClock;
 
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -165,8 +166,8 @@ public class Main {
         System.out.println("\n8. JDBC DATABASE DEMO");
         try (DatabaseManager dbManager = new DatabaseManager()) {
             dbManager.createTables();
-            ItemDAO itemDAO = new ItemDAO(dbManager);
-            MemberDAO memberDAO = new MemberDAO(dbManager);
+            ItemDAO itemDAO = dbManager.getItemDAO();
+            MemberDAO memberDAO = dbManager.getMemberDAO();
             BorrowRecordDAO recordDAO = new BorrowRecordDAO(dbManager);
 
             // Insert
@@ -190,8 +191,8 @@ public class Main {
                 BorrowRecord record = new BorrowRecord();
                 record.setItem(book);
                 record.setMember(member);
-                record.setBorrowDate(LocalDate.now());
-                record.setDueDate(LocalDate.now().plusDays(14));
+                record.setBorrowDate(LibraryClock.today());
+                record.setDueDate(LibraryClock.today().plusDays(14));
 
                 recordDAO.insertRecord(record);
                 itemDAO.updateAvailability(book.getId(), false);
@@ -205,7 +206,7 @@ public class Main {
             }
 
             // Return
-            recordDAO.returnItem(effectiveJava.getId(), LocalDate.now());
+            recordDAO.returnItem(effectiveJava.getId(), LibraryClock.today());
             System.out.println("  Item returned");
 
             // Cleanup
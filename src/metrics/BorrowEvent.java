@@ -0,0 +1,13 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("library.Borrow")
+@Label("Borrow")
+@Category({"Library", "Circulation"})
+@Description("An attempt to lend an item to a member")
+public final class BorrowEvent extends LibraryEvent {
+}
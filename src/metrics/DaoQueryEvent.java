@@ -0,0 +1,20 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("library.DaoQuery")
+@Label("DAO Query")
+@Category({"Library", "JDBC"})
+@Description("A query issued by one of the library DAOs; only row-cache misses reach the database")
+public final class DaoQueryEvent extends LibraryEvent {
+    @Label("Statement")
+    private String statement;
+
+    public DaoQueryEvent(String statement) {
+        this.statement = statement;
+        this.result = "ok";
+    }
+}
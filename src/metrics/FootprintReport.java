@@ -0,0 +1,55 @@
+package metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Estimated heap use of the library's structures, plus a breakdown of the item store by item type. Reports
+ * from different owners are combined with {@link #with(StructureFootprint)}.
+ */
+public record FootprintReport(List<StructureFootprint> structures, List<TypeFootprint> itemTypes) {
+
+    public FootprintReport {
+        structures = List.copyOf(structures);
+        itemTypes = List.copyOf(itemTypes);
+    }
+
+    public FootprintReport with(StructureFootprint structure) {
+        List<StructureFootprint> combined = new ArrayList<>(structures);
+        combined.add(structure);
+        return new FootprintReport(combined, itemTypes);
+    }
+
+    public long totalBytes() {
+        return structures.stream().mapToLong(StructureFootprint::totalBytes).sum();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder report = new StringBuilder(String.format("%-28s %12s %14s %14s %10s %9s%n",
+                "structure", "elements", "container", "elements", "B/element", "sampled"));
+        for (StructureFootprint structure : structures)
+            report.append(String.format("%-28s %12d %14s %14s %10.1f %9d%n", structure.name(), structure.elements(),
+                    formatBytes(structure.containerBytes()), formatBytes(structure.elementBytes()),
+                    structure.bytesPerElement(), structure.sampledElements()));
+        report.append(String.format("%-28s %12s %29s%n", "total", "", formatBytes(totalBytes())));
+
+        if (!itemTypes.isEmpty()) {
+            report.append(String.format("%n%-28s %12s %14s %14s%n", "item type", "count", "avg bytes", "total"));
+            for (TypeFootprint type : itemTypes)
+                report.append(String.format("%-28s %12d %14.1f %14s%n", type.type(), type.count(),
+                        type.averageBytes(), formatBytes(type.totalBytes())));
+        }
+        return report.toString();
+    }
+
+    static String formatBytes(long bytes) {
+        if (bytes < 1024)
+            return bytes + " B";
+        if (bytes < 1024 * 1024)
+            return String.format("%.1f KB", bytes / 1024.0);
+        if (bytes < 1024L * 1024 * 1024)
+            return String.format("%.1f MB", bytes / (1024.0 * 1024));
+        return String.format("%.2f GB", bytes / (1024.0 * 1024 * 1024));
+    }
+}
@@ -0,0 +1,128 @@
+package metrics;
+
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Wraps an instrumented operation in every layer at once: its latency is recorded in {@link LibraryMetrics}, it
+ * is traced by the {@link SlowOperationLog} with up to two named arguments, and a Flight Recorder event covers
+ * it. Instrumented methods make a single call:
+ * <pre>{@code
+ * return Instrumentation.timed(Operation.ITEM_QUERY, "ItemDAO.findAll", () -> {
+ *     ...
+ * });
+ * }</pre>
+ * Bodies that return nothing go through {@link #run}. DAO queries get a {@link DaoQueryEvent} named after the
+ * call site; an argument named {@code itemId} or {@code memberId} also fills in the event's item or member.
+ * Other operations pass their own event and a function that describes the outcome, which only runs when the
+ * recording wants the event. Operations that fail are recorded like the others and their event carries the
+ * failure.
+ */
+public final class Instrumentation {
+    private static final Set<Operation> DAO_QUERIES = EnumSet.of(Operation.ITEM_QUERY, Operation.MEMBER_QUERY,
+            Operation.RECORD_QUERY);
+
+    private Instrumentation() {
+    }
+
+    public static <T, E extends Exception> T timed(Operation operation, String site, Call<T, E> body) throws E {
+        return timed(operation, site, null, null, null, null, body);
+    }
+
+    public static <T, E extends Exception> T timed(Operation operation, String site, String name, Object value,
+                                                   Call<T, E> body) throws E {
+        return timed(operation, site, name, value, null, null, body);
+    }
+
+    public static <T, E extends Exception> T timed(Operation operation, String site, String name0, Object value0,
+                                                   String name1, Object value1, Call<T, E> body) throws E {
+        if (!DAO_QUERIES.contains(operation))
+            return timed(operation, site, name0, value0, name1, value1, null, null, body);
+
+        DaoQueryEvent event = new DaoQueryEvent(site);
+        describeArgument(event, name0, value0);
+        describeArgument(event, name1, value1);
+        return timed(operation, site, name0, value0, name1, value1, event, null, body);
+    }
+
+    public static <E extends Exception> void run(Operation operation, String site, Action<E> body) throws E {
+        run(operation, site, null, null, null, null, body);
+    }
+
+    public static <E extends Exception> void run(Operation operation, String site, String name, Object value,
+                                                 Action<E> body) throws E {
+        run(operation, site, name, value, null, null, body);
+    }
+
+    public static <E extends Exception> void run(Operation operation, String site, String name0, Object value0,
+                                                 String name1, Object value1, Action<E> body) throws E {
+        timed(operation, site, name0, value0, name1, value1, () -> {
+            body.run();
+            return null;
+        });
+    }
+
+    /**
+     * Runs {@code body} under all layers with {@code event}, which may be {@code null} for none. When the event
+     * is committed, {@code describe} fills it in from the result, which is {@code null} if the body threw; the
+     * failure then replaces the event's result.
+     */
+    public static <T, V extends LibraryEvent, E extends Exception> T timed(Operation operation, String site,
+                                                                          String name0, Object value0,
+                                                                          String name1, Object value1,
+                                                                          V event, BiConsumer<V, T> describe,
+                                                                          Call<T, E> body) throws E {
+        long start = LibraryMetrics.start();
+        SlowOperationLog.Trace trace = SlowOperationLog.begin(operation, site, name0, value0, name1, value1);
+        if (event != null)
+            event.begin();
+        T result = null;
+        Throwable failure = null;
+        try {
+            result = body.call();
+            return result;
+        } catch (Throwable e) {
+            failure = e;
+            throw e;
+        } finally {
+            LibraryMetrics.record(operation, start);
+            SlowOperationLog.end(trace);
+            if (event != null)
+                commit(event, describe, result, failure);
+        }
+    }
+
+    private static <T, V extends LibraryEvent> void commit(V event, BiConsumer<V, T> describe, T result,
+                                                           Throwable failure) {
+        event.end();
+        if (!event.shouldCommit())
+            return;
+
+        if (describe != null)
+            describe.accept(event, result);
+        if (failure != null)
+            event.setFailure(failure);
+        event.commit();
+    }
+
+    private static void describeArgument(LibraryEvent event, String name, Object value) {
+        if ("itemId".equals(name))
+            event.setItem(String.valueOf(value), null);
+        else if ("memberId".equals(name) && value instanceof Integer memberId)
+            event.setMemberId(memberId);
+    }
+
+    /**
+     * The body of an instrumented operation. {@code E} is the checked exception it throws, if any.
+     */
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    @FunctionalInterface
+    public interface Action<E extends Exception> {
+        void run() throws E;
+    }
+}
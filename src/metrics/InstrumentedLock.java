@@ -0,0 +1,59 @@
+package metrics;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A {@link ReentrantLock} that reports wait time, hold time, queue length and the owning operation to a
+ * {@link LockMonitor} when lock instrumentation is enabled. Callers that pass an operation name to
+ * {@link #lock(String)} get their hold time attributed to it. Only {@code lock()} and {@code unlock()} are
+ * timed; {@code tryLock} and {@code lockInterruptibly} behave exactly as in {@code ReentrantLock}.
+ */
+public class InstrumentedLock extends ReentrantLock {
+    private static final long serialVersionUID = 1L;
+    public static final String DEFAULT_OPERATION = "lock";
+
+    private final transient LockMonitor monitor;
+
+    // Written and read only by the thread holding the lock
+    private long acquiredNanos = LockMonitor.NOT_TIMED;
+    private String holderOperation;
+
+    public InstrumentedLock(String name) {
+        this(name, false);
+    }
+
+    public InstrumentedLock(String name, boolean fair) {
+        super(fair);
+        this.monitor = new LockMonitor(name);
+    }
+
+    @Override
+    public void lock() {
+        lock(DEFAULT_OPERATION);
+    }
+
+    public void lock(String operation) {
+        if (isHeldByCurrentThread()) {
+            super.lock();
+            return;
+        }
+
+        long request = monitor.beforeAcquire();
+        super.lock();
+        acquiredNanos = monitor.acquired(request, operation);
+        holderOperation = operation;
+    }
+
+    @Override
+    public void unlock() {
+        if (getHoldCount() == 1 && acquiredNanos != LockMonitor.NOT_TIMED) {
+            monitor.released(acquiredNanos, holderOperation);
+            acquiredNanos = LockMonitor.NOT_TIMED;
+        }
+        super.unlock();
+    }
+
+    public LockStats getStats() {
+        return monitor.stats();
+    }
+}
@@ -0,0 +1,129 @@
+package metrics;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A {@link ReentrantReadWriteLock} whose read and write locks report to separate {@link LockMonitor}s named
+ * {@code <name>.read} and {@code <name>.write} when lock instrumentation is enabled. Read hold times are kept
+ * per thread, since several readers may hold the lock at once; the owner operation of the read lock is the
+ * most recent reader's.
+ */
+public class InstrumentedReadWriteLock extends ReentrantReadWriteLock {
+    private static final long serialVersionUID = 1L;
+    private final transient LockMonitor readMonitor;
+    private final transient LockMonitor writeMonitor;
+    private final InstrumentedReadLock readLock;
+    private final InstrumentedWriteLock writeLock;
+
+    public InstrumentedReadWriteLock(String name) {
+        this(name, false);
+    }
+
+    public InstrumentedReadWriteLock(String name, boolean fair) {
+        super(fair);
+        this.readMonitor = new LockMonitor(name + ".read");
+        this.writeMonitor = new LockMonitor(name + ".write");
+        this.readLock = new InstrumentedReadLock(this);
+        this.writeLock = new InstrumentedWriteLock(this);
+    }
+
+    @Override
+    public InstrumentedReadLock readLock() {
+        return readLock;
+    }
+
+    @Override
+    public InstrumentedWriteLock writeLock() {
+        return writeLock;
+    }
+
+    public LockStats getReadStats() {
+        return readMonitor.stats();
+    }
+
+    public LockStats getWriteStats() {
+        return writeMonitor.stats();
+    }
+
+    public static class InstrumentedReadLock extends ReentrantReadWriteLock.ReadLock {
+        private static final long serialVersionUID = 1L;
+        private final InstrumentedReadWriteLock owner;
+        private final transient ThreadLocal<long[]> acquiredNanos =
+                ThreadLocal.withInitial(() -> new long[]{LockMonitor.NOT_TIMED});
+        private final transient ThreadLocal<String> holderOperation = new ThreadLocal<>();
+
+        protected InstrumentedReadLock(InstrumentedReadWriteLock lock) {
+            super(lock);
+            this.owner = lock;
+        }
+
+        @Override
+        public void lock() {
+            lock(InstrumentedLock.DEFAULT_OPERATION);
+        }
+
+        public void lock(String operation) {
+            if (owner.getReadHoldCount() > 0) {
+                super.lock();
+                return;
+            }
+
+            long request = owner.readMonitor.beforeAcquire();
+            super.lock();
+            acquiredNanos.get()[0] = owner.readMonitor.acquired(request, operation);
+            holderOperation.set(operation);
+        }
+
+        @Override
+        public void unlock() {
+            if (owner.getReadHoldCount() == 1) {
+                long[] acquired = acquiredNanos.get();
+                if (acquired[0] != LockMonitor.NOT_TIMED) {
+                    owner.readMonitor.released(acquired[0], holderOperation.get());
+                    acquired[0] = LockMonitor.NOT_TIMED;
+                }
+            }
+            super.unlock();
+        }
+    }
+
+    public static class InstrumentedWriteLock extends ReentrantReadWriteLock.WriteLock {
+        private static final long serialVersionUID = 1L;
+        private final InstrumentedReadWriteLock owner;
+
+        // Written and read only by the thread holding the write lock
+        private long acquiredNanos = LockMonitor.NOT_TIMED;
+        private String holderOperation;
+
+        protected InstrumentedWriteLock(InstrumentedReadWriteLock lock) {
+            super(lock);
+            this.owner = lock;
+        }
+
+        @Override
+        public void lock() {
+            lock(InstrumentedLock.DEFAULT_OPERATION);
+        }
+
+        public void lock(String operation) {
+            if (isHeldByCurrentThread()) {
+                super.lock();
+                return;
+            }
+
+            long request = owner.writeMonitor.beforeAcquire();
+            super.lock();
+            acquiredNanos = owner.writeMonitor.acquired(request, operation);
+            holderOperation = operation;
+        }
+
+        @Override
+        public void unlock() {
+            if (getHoldCount() == 1 && acquiredNanos != LockMonitor.NOT_TIMED) {
+                owner.writeMonitor.released(acquiredNanos, holderOperation);
+                acquiredNanos = LockMonitor.NOT_TIMED;
+            }
+            super.unlock();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package metrics;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histogram that can be recorded from any number of threads without locks or allocation.
+ * <p>
+ * Buckets are log-linear like HdrHistogram's: values below 64 ns are exact, and above that every power of two
+ * is split into 32 buckets, so a reported value is within about 3% of the recorded one. Values above
+ * {@link #MAX_TRACKABLE_NANOS} are counted in the top bucket.
+ * <p>
+ * Each thread records into its own set of counters, which only that thread writes. {@link #snapshot()} sums
+ * the counters of every thread that has recorded so far, so reading never blocks or slows down recording. A
+ * snapshot taken while threads are recording may miss the values being written at that moment. The counters of
+ * threads that have terminated are folded into one retired set when a snapshot is taken or a new thread starts
+ * recording, so short-lived pools do not leave their counters behind.
+ */
+public final class LatencyHistogram {
+    public static final long MAX_TRACKABLE_NANOS = 1L << 42;
+
+    static final int SUB_BUCKET_BITS = 6;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    static final int HALF_SUB_BUCKETS = SUB_BUCKETS / 2;
+    static final int BUCKETS = indexOf(MAX_TRACKABLE_NANOS) + 1;
+
+    // Index 0..BUCKETS-1 hold bucket counts, followed by the sum and the maximum of the recorded values
+    private static final int SUM = BUCKETS;
+    private static final int MAX = BUCKETS + 1;
+
+    private final Queue<Recorder> recorders = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<AtomicLongArray> threadRecorder = ThreadLocal.withInitial(() -> {
+        retireTerminated();
+        AtomicLongArray recorder = new AtomicLongArray(BUCKETS + 2);
+        recorders.add(new Recorder(Thread.currentThread(), recorder));
+        return recorder;
+    });
+    // Counters of terminated threads, guarded by this
+    private final long[] retired = new long[BUCKETS + 2];
+
+    public void record(long nanos) {
+        long value = Math.max(0, Math.min(nanos, MAX_TRACKABLE_NANOS));
+        AtomicLongArray recorder = threadRecorder.get();
+        int index = indexOf(value);
+
+        // Only the owning thread writes its recorder, so ordered plain increments are enough
+        recorder.lazySet(index, recorder.get(index) + 1);
+        recorder.lazySet(SUM, recorder.get(SUM) + value);
+        if (value > recorder.get(MAX))
+            recorder.lazySet(MAX, value);
+    }
+
+    public void recordSince(long startNanos) {
+        record(System.nanoTime() - startNanos);
+    }
+
+    public synchronized LatencySnapshot snapshot() {
+        retireTerminated();
+        long[] counts = Arrays.copyOf(retired, BUCKETS);
+        long sum = retired[SUM];
+        long max = retired[MAX];
+        for (Recorder recorder : recorders) {
+            AtomicLongArray live = recorder.counts();
+            for (int i = 0; i < BUCKETS; i++)
+                counts[i] += live.get(i);
+            sum += live.get(SUM);
+            max = Math.max(max, live.get(MAX));
+        }
+        return new LatencySnapshot(counts, sum, max);
+    }
+
+    // A thread that is no longer alive has finished writing its counters, and isAlive() makes its writes visible
+    private synchronized void retireTerminated() {
+        for (Iterator<Recorder> it = recorders.iterator(); it.hasNext(); ) {
+            Recorder recorder = it.next();
+            if (recorder.owner().isAlive())
+                continue;
+
+            AtomicLongArray counts = recorder.counts();
+            for (int i = 0; i < BUCKETS; i++)
+                retired[i] += counts.get(i);
+            retired[SUM] += counts.get(SUM);
+            retired[MAX] = Math.max(retired[MAX], counts.get(MAX));
+            it.remove();
+        }
+    }
+
+    static int indexOf(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1);
+        return shift * HALF_SUB_BUCKETS + (int) (value >>> shift);
+    }
+
+    /**
+     * Smallest value that falls into the bucket at {@code index}.
+     */
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = index / HALF_SUB_BUCKETS - 1;
+        return (long) (index - shift * HALF_SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * Largest value that falls into the bucket at {@code index}.
+     */
+    static long highestValue(int index) {
+        return lowestValue(index + 1) - 1;
+    }
+
+    private record Recorder(Thread owner, AtomicLongArray counts) {
+    }
+}
@@ -0,0 +1,107 @@
+package metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Immutable view of a {@link LatencyHistogram} at one point in time. Snapshots of different histograms, or of
+ * the same histogram on different hosts, can be combined with {@link #merge}.
+ */
+public final class LatencySnapshot {
+    private static final LatencySnapshot EMPTY = new LatencySnapshot(new long[LatencyHistogram.BUCKETS], 0, 0);
+
+    private final long[] counts;
+    private final long count;
+    private final long sumNanos;
+    private final long maxNanos;
+
+    LatencySnapshot(long[] counts, long sumNanos, long maxNanos) {
+        this.counts = counts;
+        this.count = Arrays.stream(counts).sum();
+        this.sumNanos = sumNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    public static LatencySnapshot empty() {
+        return EMPTY;
+    }
+
+    public LatencySnapshot merge(LatencySnapshot other) {
+        long[] merged = counts.clone();
+        for (int i = 0; i < merged.length; i++)
+            merged[i] += other.counts[i];
+        return new LatencySnapshot(merged, sumNanos + other.sumNanos, Math.max(maxNanos, other.maxNanos));
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSumNanos() {
+        return sumNanos;
+    }
+
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    public double getMeanNanos() {
+        return count == 0 ? 0.0 : (double) sumNanos / count;
+    }
+
+    /**
+     * Returns the value at the given percentile, between 0 and 100, as the upper bound of its bucket.
+     */
+    public long percentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        if (count == 0)
+            return 0;
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank)
+                return Math.min(LatencyHistogram.highestValue(i), maxNanos);
+        }
+        return maxNanos;
+    }
+
+    /**
+     * Returns how many recorded values were at most {@code nanos}, counting whole buckets, so the answer may
+     * include values up to about 3% above the bound.
+     */
+    public long countAtOrBelow(long nanos) {
+        if (nanos < 0)
+            return 0;
+        int last = LatencyHistogram.indexOf(Math.min(nanos, LatencyHistogram.MAX_TRACKABLE_NANOS));
+        long total = 0;
+        for (int i = 0; i <= last; i++)
+            total += counts[i];
+        return total;
+    }
+
+    public long p50Nanos() {
+        return percentileNanos(50);
+    }
+
+    public long p99Nanos() {
+        return percentileNanos(99);
+    }
+
+    public long p999Nanos() {
+        return percentileNanos(99.9);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("count=%d mean=%.1fus p50=%dus p99=%dus p99.9=%dus max=%dus",
+                count, getMeanNanos() / 1_000, micros(p50Nanos()), micros(p99Nanos()), micros(p999Nanos()),
+                micros(maxNanos));
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
@@ -0,0 +1,42 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.StackTrace;
+
+/**
+ * Fields shared by the library's Flight Recorder events. A member id of 0 means the operation had no member,
+ * and an empty item id means it was not tied to a single item.
+ */
+@Category("Library")
+@StackTrace(false)
+public abstract class LibraryEvent extends jdk.jfr.Event {
+    @Label("Item Id")
+    protected String itemId;
+
+    @Label("Item Type")
+    protected String itemType;
+
+    @Label("Member Id")
+    protected int memberId;
+
+    @Label("Result")
+    protected String result;
+
+    public void setItem(String itemId, String itemType) {
+        this.itemId = itemId;
+        this.itemType = itemType;
+    }
+
+    public void setMemberId(int memberId) {
+        this.memberId = memberId;
+    }
+
+    public void setResult(String result) {
+        this.result = result;
+    }
+
+    public void setFailure(Throwable failure) {
+        this.result = failure.getClass().getSimpleName() + ": " + failure.getMessage();
+    }
+}
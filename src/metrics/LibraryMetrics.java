@@ -0,0 +1,78 @@
+package metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Process-wide latency histograms, one per {@link Operation}. Instrumented code brackets an operation with
+ * {@link #start()} and {@link #record(Operation, long)}:
+ * <pre>{@code
+ * long start = LibraryMetrics.start();
+ * try {
+ *     ...
+ * } finally {
+ *     LibraryMetrics.record(Operation.BORROW, start);
+ * }
+ * }</pre>
+ * Recording can be switched off with {@link #setEnabled(boolean)}, which leaves only a volatile read on the
+ * hot path.
+ */
+public final class LibraryMetrics {
+    private static final long DISABLED = Long.MIN_VALUE;
+    private static final LatencyHistogram[] HISTOGRAMS = new LatencyHistogram[Operation.values().length];
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++)
+            HISTOGRAMS[i] = new LatencyHistogram();
+    }
+
+    private static volatile boolean enabled = true;
+    private static volatile boolean lockInstrumentationEnabled = Boolean.getBoolean("library.metrics.locks");
+
+    private LibraryMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        LibraryMetrics.enabled = enabled;
+    }
+
+    public static boolean isLockInstrumentationEnabled() {
+        return lockInstrumentationEnabled;
+    }
+
+    /**
+     * Turns wait and hold timing of instrumented locks on or off. It is off by default, or on when the JVM is
+     * started with {@code -Dlibrary.metrics.locks=true}.
+     */
+    public static void setLockInstrumentationEnabled(boolean enabled) {
+        lockInstrumentationEnabled = enabled;
+    }
+
+    public static long start() {
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    public static void record(Operation operation, long startNanos) {
+        if (startNanos != DISABLED)
+            HISTOGRAMS[operation.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    public static LatencyHistogram histogram(Operation operation) {
+        return HISTOGRAMS[operation.ordinal()];
+    }
+
+    public static LatencySnapshot snapshot(Operation operation) {
+        return histogram(operation).snapshot();
+    }
+
+    public static Map<Operation, LatencySnapshot> snapshots() {
+        Map<Operation, LatencySnapshot> snapshots = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values())
+            snapshots.put(operation, snapshot(operation));
+        return snapshots;
+    }
+}
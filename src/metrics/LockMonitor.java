@@ -0,0 +1,106 @@
+package metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records waits and holds for one lock. {@link InstrumentedLock} and {@link InstrumentedReadWriteLock} use it
+ * internally; a {@code synchronized} block is instrumented by calling it around the block:
+ * <pre>{@code
+ * long request = monitor.beforeAcquire();
+ * synchronized (items) {
+ *     long acquired = monitor.acquired(request, "addItem");
+ *     try {
+ *         ...
+ *     } finally {
+ *         monitor.released(acquired, "addItem");
+ *     }
+ * }
+ * }</pre>
+ * Nothing is recorded unless {@link LibraryMetrics#setLockInstrumentationEnabled(boolean)} has been switched
+ * on; while it is off, each call is a single volatile read.
+ */
+public final class LockMonitor {
+    static final long NOT_TIMED = Long.MIN_VALUE;
+
+    // A wait shorter than this is treated as an uncontended acquisition
+    private static final long CONTENDED_WAIT_NANOS = 1_000;
+
+    private final String name;
+    private final LatencyHistogram waitTime = new LatencyHistogram();
+    private final LatencyHistogram holdTime = new LatencyHistogram();
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder contendedAcquisitions = new LongAdder();
+    private final LongAdder queueLengthSum = new LongAdder();
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicInteger maxQueueLength = new AtomicInteger();
+    private final ConcurrentMap<String, LongAdder> holdNanosByOperation = new ConcurrentHashMap<>();
+    private volatile String ownerOperation;
+
+    public LockMonitor(String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Call immediately before requesting the lock. Returns the request time to pass to {@link #acquired}.
+     */
+    public long beforeAcquire() {
+        if (!LibraryMetrics.isLockInstrumentationEnabled())
+            return NOT_TIMED;
+
+        int queueLength = waiting.getAndIncrement();
+        queueLengthSum.add(queueLength);
+        if (queueLength > maxQueueLength.get())
+            maxQueueLength.accumulateAndGet(queueLength, Math::max);
+        return System.nanoTime();
+    }
+
+    /**
+     * Call as the first thing once the lock is held. Returns the acquisition time to pass to {@link #released}.
+     */
+    public long acquired(long requestNanos, String operation) {
+        if (requestNanos == NOT_TIMED)
+            return NOT_TIMED;
+
+        long now = System.nanoTime();
+        long wait = now - requestNanos;
+        waiting.decrementAndGet();
+        acquisitions.increment();
+        if (wait >= CONTENDED_WAIT_NANOS)
+            contendedAcquisitions.increment();
+        waitTime.record(wait);
+        ownerOperation = operation;
+        return now;
+    }
+
+    /**
+     * Call as the last thing before the lock is released.
+     */
+    public void released(long acquiredNanos, String operation) {
+        if (acquiredNanos == NOT_TIMED)
+            return;
+
+        long hold = System.nanoTime() - acquiredNanos;
+        ownerOperation = null;
+        holdTime.record(hold);
+        holdNanosByOperation.computeIfAbsent(operation, key -> new LongAdder()).add(hold);
+    }
+
+    public LockStats stats() {
+        long count = acquisitions.sum();
+        Map<String, Long> holdByOperation = new TreeMap<>();
+        holdNanosByOperation.forEach((operation, nanos) -> holdByOperation.put(operation, nanos.sum()));
+
+        return new LockStats(name, count, contendedAcquisitions.sum(), waitTime.snapshot(), holdTime.snapshot(),
+                maxQueueLength.get(), count == 0 ? 0.0 : (double) queueLengthSum.sum() / count,
+                ownerOperation, holdByOperation);
+    }
+}
@@ -0,0 +1,37 @@
+package metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Snapshot of one instrumented lock. Wait time runs from the lock request to its acquisition and hold time
+ * from acquisition to release; reentrant acquisitions are not counted separately. {@code holdNanosByOperation}
+ * attributes the total hold time to the operation names passed when locking, and {@code ownerOperation} is
+ * the operation holding the lock when the snapshot was taken, or {@code null} if it was free.
+ */
+public record LockStats(String name, long acquisitions, long contendedAcquisitions, LatencySnapshot waitTime,
+                        LatencySnapshot holdTime, int maxQueueLength, double meanQueueLength,
+                        String ownerOperation, Map<String, Long> holdNanosByOperation) {
+
+    public LockStats {
+        holdNanosByOperation = Map.copyOf(holdNanosByOperation);
+    }
+
+    public double contentionRatio() {
+        return acquisitions == 0 ? 0.0 : (double) contendedAcquisitions / acquisitions;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d acquisitions, %.1f%% contended, wait p50=%dus p99=%dus, hold p50=%dus p99=%dus, "
+                        + "queue max=%d mean=%.2f, owner=%s, hold ns by operation=%s",
+                name, acquisitions, contentionRatio() * 100,
+                micros(waitTime.p50Nanos()), micros(waitTime.p99Nanos()),
+                micros(holdTime.p50Nanos()), micros(holdTime.p99Nanos()),
+                maxQueueLength, meanQueueLength, ownerOperation, holdNanosByOperation);
+    }
+
+    private static long micros(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+}
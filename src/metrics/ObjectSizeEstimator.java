@@ -0,0 +1,257 @@
+package metrics;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.Modifier;
+import java.time.temporal.TemporalAccessor;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * Estimates how much heap objects occupy from their class layout, without a heap dump or an agent. Sizes
+ * follow HotSpot's layout on a 64-bit JVM: a 12-byte header and 4-byte references while compressed oops are
+ * in use (heaps under 32 GB), 16 and 8 bytes otherwise, and every object padded to 8 bytes. Field packing is
+ * not modelled, so an estimate may be a few bytes per object above the real size.
+ * <p>
+ * {@link #retainedSize(Object, Class[])} walks an object graph. Fields of this module's classes are read
+ * reflectively; JDK classes are sized from their public state: strings from their length, collections and
+ * maps from their size plus their elements. Instances of the given shared types, enums and classes are not
+ * followed, so an item's size does not include the records and members that point at it. Strings and dates
+ * that several objects share are counted with each of them, so heavily shared values inflate the estimate.
+ * <p>
+ * {@link #sample(List, int, ToLongFunction)} sizes one element from each slice of a list and scales the result
+ * up, which keeps the cost of sizing a 10-million-item catalog to a few thousand objects.
+ */
+public final class ObjectSizeEstimator {
+    private static final long COMPRESSED_OOPS_LIMIT = 32L << 30;
+    private static final ObjectSizeEstimator DEFAULT = new ObjectSizeEstimator(
+            !"32".equals(System.getProperty("sun.arch.data.model"))
+                    && Runtime.getRuntime().maxMemory() < COMPRESSED_OOPS_LIMIT);
+
+    // Per-entry overhead of the JDK's hash maps: a node with hash, key, value and next
+    private static final int HASH_NODE_FIELDS = 3;
+
+    private final int headerSize;
+    private final int referenceSize;
+    private final ClassValue<Long> shallowSizes = new ClassValue<>() {
+        @Override
+        protected Long computeValue(Class<?> type) {
+            return computeShallowSize(type);
+        }
+    };
+
+    public ObjectSizeEstimator(boolean compressedOops) {
+        this.headerSize = compressedOops ? 12 : 16;
+        this.referenceSize = compressedOops ? 4 : 8;
+    }
+
+    public static ObjectSizeEstimator getDefault() {
+        return DEFAULT;
+    }
+
+    public int getReferenceSize() {
+        return referenceSize;
+    }
+
+    public long shallowSize(Class<?> type) {
+        return shallowSizes.get(type);
+    }
+
+    public long shallowSize(Object object) {
+        if (object == null)
+            return 0;
+        Class<?> type = object.getClass();
+        return type.isArray() ? arraySize(type.getComponentType(), Array.getLength(object)) : shallowSize(type);
+    }
+
+    public long arraySize(Class<?> componentType, int length) {
+        // Arrays carry a 4-byte length after the header
+        return align(headerSize + 4 + (long) length * fieldSize(componentType));
+    }
+
+    /**
+     * Size of a string's object and its backing array, one byte per character for Latin-1 text and two
+     * otherwise, as with compact strings.
+     */
+    public long stringSize(String value) {
+        int bytesPerChar = 1;
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > 0xFF) {
+                bytesPerChar = 2;
+                break;
+            }
+        }
+        return shallowSize(String.class) + arraySize(byte.class, value.length() * bytesPerChar);
+    }
+
+    /**
+     * Bytes a list or set of {@code size} references takes on its own, excluding the elements.
+     */
+    public long listOverhead(Object list, int size) {
+        return shallowSize(list) + arraySize(Object.class, size);
+    }
+
+    /**
+     * Bytes a hash map of {@code size} entries takes on its own, excluding keys and values. The table is
+     * assumed to be at the default load factor.
+     */
+    public long hashMapOverhead(Object map, int size, boolean linked) {
+        int needed = (int) Math.ceil(size / 0.75);
+        int table = size == 0 ? 0 : Math.max(16, Integer.highestOneBit(Math.max(1, needed - 1)) << 1);
+        long node = align(headerSize + 4 + (long) (HASH_NODE_FIELDS + (linked ? 2 : 0)) * referenceSize);
+        return shallowSize(map) + (table == 0 ? 0 : arraySize(Object.class, table)) + size * node;
+    }
+
+    /**
+     * Size of {@code root} and everything reachable from it that is not an instance of {@code sharedTypes},
+     * an enum constant or a class. Each object is counted once.
+     */
+    public long retainedSize(Object root, Class<?>... sharedTypes) {
+        return retainedSize(root, object -> isShared(object, sharedTypes));
+    }
+
+    /**
+     * Size of {@code root} and everything reachable from it that {@code shared} does not claim and that is not
+     * an enum constant or a class. Each object is counted once.
+     */
+    public long retainedSize(Object root, Predicate<Object> shared) {
+        if (root == null)
+            return 0;
+
+        Map<Object, Boolean> visited = new IdentityHashMap<>();
+        Deque<Object> pending = new ArrayDeque<>();
+        pending.push(root);
+        visited.put(root, Boolean.TRUE);
+        long total = 0;
+
+        while (!pending.isEmpty()) {
+            Object current = pending.pop();
+            total += sizeAndChildren(current, child -> {
+                if (child != null && !visited.containsKey(child) && !(child instanceof Enum<?>)
+                        && !(child instanceof Class<?>) && !shared.test(child)) {
+                    visited.put(child, Boolean.TRUE);
+                    pending.push(child);
+                }
+            });
+        }
+        return total;
+    }
+
+    private long sizeAndChildren(Object object, Consumer<Object> children) {
+        Class<?> type = object.getClass();
+
+        if (object instanceof String value)
+            return stringSize(value);
+        if (type.isArray()) {
+            if (!type.getComponentType().isPrimitive()) {
+                for (Object element : (Object[]) object)
+                    children.accept(element);
+            }
+            return shallowSize(object);
+        }
+        if (object instanceof Collection<?> collection) {
+            collection.forEach(children);
+            return object instanceof HashSet<?>
+                    ? hashMapOverhead(object, collection.size(), object instanceof LinkedHashSet<?>)
+                    : listOverhead(object, collection.size());
+        }
+        if (object instanceof Map<?, ?> map) {
+            map.forEach((key, value) -> {
+                children.accept(key);
+                children.accept(value);
+            });
+            return hashMapOverhead(object, map.size(), object instanceof LinkedHashMap<?, ?>);
+        }
+        if (object instanceof Number || object instanceof TemporalAccessor
+                || type.getModule() != getClass().getModule())
+            return shallowSize(type);
+
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || field.getType().isPrimitive())
+                    continue;
+                try {
+                    field.setAccessible(true);
+                    children.accept(field.get(object));
+                } catch (IllegalAccessException | InaccessibleObjectException e) {
+                    // Counted by the shallow size only
+                }
+            }
+        }
+        return shallowSize(type);
+    }
+
+    private static boolean isShared(Object object, Class<?>[] sharedTypes) {
+        for (Class<?> shared : sharedTypes) {
+            if (shared.isInstance(object))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Sizes at most {@code maxSamples} elements of {@code elements}, one from each of as many equal slices,
+     * with {@code sizer} and extrapolates to the whole list. Every element is sized when the list is no longer than the sample.
+     */
+    public <T> SizeSample sample(List<? extends T> elements, int maxSamples, ToLongFunction<? super T> sizer) {
+        int size = elements.size();
+        if (size == 0 || maxSamples <= 0)
+            return new SizeSample(size, 0, 0);
+
+        int samples = Math.min(size, maxSamples);
+        double stride = (double) size / samples;
+        // A random position within each stride keeps periodic layouts, such as items added in a repeating
+        // type pattern, from being sampled at the same phase every time
+        SplittableRandom random = new SplittableRandom(size);
+        long sampledBytes = 0;
+        for (int i = 0; i < samples; i++) {
+            int index = (int) (i * stride + (samples == size ? 0 : random.nextDouble() * stride));
+            T element = elements.get(Math.min(size - 1, index));
+            sampledBytes += element == null ? 0 : sizer.applyAsLong(element);
+        }
+        return new SizeSample(size, samples, sampledBytes);
+    }
+
+    /**
+     * Result of {@link #sample}: {@code sampledBytes} is the total size of the {@code sampled} elements.
+     */
+    public record SizeSample(long elements, int sampled, long sampledBytes) {
+        public double averageBytes() {
+            return sampled == 0 ? 0.0 : (double) sampledBytes / sampled;
+        }
+
+        public long estimatedBytes() {
+            return Math.round(averageBytes() * elements);
+        }
+    }
+
+    private long computeShallowSize(Class<?> type) {
+        long size = headerSize;
+        for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()))
+                    size += fieldSize(field.getType());
+            }
+        }
+        return align(size);
+    }
+
+    private int fieldSize(Class<?> type) {
+        if (!type.isPrimitive())
+            return referenceSize;
+        if (type == long.class || type == double.class)
+            return 8;
+        if (type == int.class || type == float.class)
+            return 4;
+        if (type == short.class || type == char.class)
+            return 2;
+        return 1;
+    }
+
+    private static long align(long size) {
+        return (size + 7) & ~7L;
+    }
+}
@@ -0,0 +1,30 @@
+package metrics;
+
+/**
+ * Operations whose latency is recorded by {@link LibraryMetrics}.
+ */
+public enum Operation {
+    BORROW("library_borrow"),
+    RETURN("library_return"),
+    RENEW("library_renew"),
+    RESERVE("library_reserve"),
+    SEARCH("library_search"),
+    REPORT("library_report"),
+    ITEM_QUERY("dao_item_query"),
+    ITEM_WRITE("dao_item_write"),
+    MEMBER_QUERY("dao_member_query"),
+    MEMBER_WRITE("dao_member_write"),
+    RECORD_QUERY("dao_record_query"),
+    RECORD_WRITE("dao_record_write"),
+    ;
+
+    private final String metricName;
+
+    Operation(String metricName) {
+        this.metricName = metricName;
+    }
+
+    public String getMetricName() {
+        return metricName;
+    }
+}
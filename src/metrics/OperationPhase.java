@@ -0,0 +1,11 @@
+package metrics;
+
+/**
+ * Steps of a borrow whose durations {@link SlowOperationLog} reports separately.
+ */
+public enum OperationPhase {
+    VALIDATION,
+    LOCK_WAIT,
+    RECORD_CREATION,
+    PERSISTENCE
+}
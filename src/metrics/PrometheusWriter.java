@@ -0,0 +1,101 @@
+package metrics;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a scrape body in the Prometheus text exposition format (version 0.0.4). Each metric family is opened
+ * with {@link #family(String, String, String)} and followed by its samples:
+ * <pre>{@code
+ * PrometheusWriter writer = new PrometheusWriter();
+ * writer.family("library_borrows_total", "counter", "Successful borrows")
+ *       .sample("library_borrows_total", 42);
+ * String body = writer.toString();
+ * }</pre>
+ * Latency histograms are written with the fixed bucket bounds of {@link #LATENCY_BUCKETS_SECONDS}, in seconds,
+ * as Prometheus expects.
+ */
+public final class PrometheusWriter {
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    public static final double[] LATENCY_BUCKETS_SECONDS = {
+            0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+    private static final String[] BUCKET_LABELS = Arrays.stream(LATENCY_BUCKETS_SECONDS)
+            .mapToObj(bound -> BigDecimal.valueOf(bound).stripTrailingZeros().toPlainString())
+            .toArray(String[]::new);
+
+    private final StringBuilder out = new StringBuilder(8192);
+
+    public PrometheusWriter family(String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(escapeHelp(help)).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, double value) {
+        out.append(name).append(' ');
+        appendValue(value);
+        out.append('\n');
+        return this;
+    }
+
+    public PrometheusWriter sample(String name, String label, String labelValue, double value) {
+        out.append(name).append('{').append(label).append("=\"").append(escapeLabel(labelValue)).append("\"} ");
+        appendValue(value);
+        out.append('\n');
+        return this;
+    }
+
+    /**
+     * Writes the cumulative buckets, sum and count of {@code snapshot} as the samples of histogram {@code name}.
+     * The family header must already have been written with type {@code histogram}.
+     */
+    public PrometheusWriter histogram(String name, String label, String labelValue, LatencySnapshot snapshot) {
+        String labels = label == null ? "" : label + "=\"" + escapeLabel(labelValue) + "\",";
+        for (int i = 0; i < LATENCY_BUCKETS_SECONDS.length; i++) {
+            out.append(name).append("_bucket{").append(labels).append("le=\"").append(BUCKET_LABELS[i]).append("\"} ");
+            appendValue(snapshot.countAtOrBelow((long) (LATENCY_BUCKETS_SECONDS[i] * NANOS_PER_SECOND)));
+            out.append('\n');
+        }
+        out.append(name).append("_bucket{").append(labels).append("le=\"+Inf\"} ");
+        appendValue(snapshot.getCount());
+        out.append('\n');
+
+        String suffixLabels = label == null ? "" : "{" + labels.substring(0, labels.length() - 1) + "}";
+        out.append(name).append("_sum").append(suffixLabels).append(' ');
+        appendValue(snapshot.getSumNanos() / NANOS_PER_SECOND);
+        out.append('\n');
+        out.append(name).append("_count").append(suffixLabels).append(' ');
+        appendValue(snapshot.getCount());
+        out.append('\n');
+        return this;
+    }
+
+    private void appendValue(double value) {
+        if (Double.isNaN(value))
+            out.append("NaN");
+        else if (Double.isInfinite(value))
+            out.append(value > 0 ? "+Inf" : "-Inf");
+        else if (value == Math.rint(value) && Math.abs(value) < 1e15)
+            out.append((long) value);
+        else
+            out.append(value);
+    }
+
+    private static String escapeHelp(String help) {
+        return help.replace("\\", "\\\\").replace("\n", "\\n");
+    }
+
+    private static String escapeLabel(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    @Override
+    public String toString() {
+        return out.toString();
+    }
+}
@@ -0,0 +1,19 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("library.Renew")
+@Label("Renew")
+@Category({"Library", "Circulation"})
+@Description("A request to extend an active loan")
+public final class RenewEvent extends LibraryEvent {
+    @Label("Additional Days")
+    private int additionalDays;
+
+    public void setAdditionalDays(int additionalDays) {
+        this.additionalDays = additionalDays;
+    }
+}
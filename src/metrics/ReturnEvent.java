@@ -0,0 +1,13 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("library.Return")
+@Label("Return")
+@Category({"Library", "Circulation"})
+@Description("An item returned to the library")
+public final class ReturnEvent extends LibraryEvent {
+}
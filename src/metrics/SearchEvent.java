@@ -0,0 +1,31 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("library.Search")
+@Label("Search")
+@Category({"Library", "Catalog"})
+@Description("A catalog search; the result is the number of matches")
+public final class SearchEvent extends LibraryEvent {
+    @Label("Method")
+    private String method;
+
+    @Label("Query")
+    private String query;
+
+    @Label("Matches")
+    private int matches;
+
+    public void setQuery(String method, String query) {
+        this.method = method;
+        this.query = query;
+    }
+
+    public void setMatches(int matches) {
+        this.matches = matches;
+        this.result = matches + " matches";
+    }
+}
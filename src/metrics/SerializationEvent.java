@@ -0,0 +1,33 @@
+package metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+@Name("library.Serialization")
+@Label("Serialization")
+@Category({"Library", "I/O"})
+@Description("A library or item written to or read from a file with Java serialization")
+public final class SerializationEvent extends LibraryEvent {
+    @Label("Operation")
+    private String operation;
+
+    @Label("File")
+    private String file;
+
+    @Label("Size")
+    @DataAmount
+    private long bytes;
+
+    public SerializationEvent(String operation, String file) {
+        this.operation = operation;
+        this.file = file;
+        this.result = "ok";
+    }
+
+    public void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+}
@@ -0,0 +1,138 @@
+package metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Appends slow-operation records to a file from a background thread, one JSON line per record. When the file
+ * grows past {@code maxBytes} it becomes {@code <file>.1}, the older copies move up by one and the oldest
+ * beyond {@code maxFiles} is deleted.
+ */
+final class SlowOperationFileWriter {
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final BlockingQueue<SlowOperationRecord> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final AtomicLong droppedCount = new AtomicLong();
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    private BufferedWriter writer;
+    private long written;
+
+    SlowOperationFileWriter(Path file, long maxBytes, int maxFiles) {
+        if (maxBytes <= 0 || maxFiles <= 0)
+            throw new IllegalArgumentException("File size and count must be positive");
+
+        this.file = file.toAbsolutePath();
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        this.writerThread = new Thread(this::run, "library-slowlog-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    void offer(SlowOperationRecord record) {
+        if (closed || !queue.offer(record))
+            droppedCount.incrementAndGet();
+    }
+
+    long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    private void run() {
+        List<SlowOperationRecord> batch = new ArrayList<>();
+        try {
+            while (!closed || !queue.isEmpty()) {
+                SlowOperationRecord first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null)
+                    continue;
+                batch.add(first);
+                queue.drainTo(batch);
+                write(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            closeWriter();
+        }
+    }
+
+    private void write(List<SlowOperationRecord> batch) {
+        try {
+            for (SlowOperationRecord record : batch) {
+                if (writer == null)
+                    open();
+                String line = record.toJson() + System.lineSeparator();
+                writer.write(line);
+                written += line.getBytes(StandardCharsets.UTF_8).length;
+                if (written >= maxBytes)
+                    roll();
+            }
+            if (writer != null)
+                writer.flush();
+        } catch (IOException e) {
+            droppedCount.addAndGet(batch.size());
+            System.err.println("Slow-operation log write failed: " + e.getMessage());
+            closeWriter();
+        }
+    }
+
+    private void open() throws IOException {
+        Path parent = file.getParent();
+        if (parent != null)
+            Files.createDirectories(parent);
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        written = Files.size(file);
+    }
+
+    private void roll() throws IOException {
+        closeWriter();
+        Files.deleteIfExists(rolled(maxFiles));
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            if (Files.exists(rolled(i)))
+                Files.move(rolled(i), rolled(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        Files.move(file, rolled(1), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private Path rolled(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+
+    private void closeWriter() {
+        if (writer == null)
+            return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            System.err.println("Slow-operation log close failed: " + e.getMessage());
+        }
+        writer = null;
+    }
+
+    void close() {
+        closed = true;
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
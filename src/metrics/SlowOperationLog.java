@@ -0,0 +1,310 @@
+package metrics;
+
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keeps a record of every borrow, search and DAO call that takes longer than a threshold, 100 ms unless
+ * {@code -Dlibrary.slowlog.thresholdMillis} says otherwise. The log is off until {@link #setEnabled(boolean)} or
+ * {@link #setLogFile} turns it on, or the JVM is started with {@code -Dlibrary.slowlog=true}; while it is off,
+ * tracing is a single volatile read and no thread is started. Instrumented code brackets the operation with
+ * {@link #begin} and {@link #end}, and marks the end of each phase with {@link #phase(OperationPhase)}:
+ * <pre>{@code
+ * SlowOperationLog.Trace trace = SlowOperationLog.begin(Operation.BORROW, "Library.borrowItem", "itemId", itemId);
+ * try {
+ *     ...
+ *     SlowOperationLog.phase(OperationPhase.VALIDATION);
+ *     ...
+ * } finally {
+ *     SlowOperationLog.end(trace);
+ * }
+ * }</pre>
+ * Calls nested inside a traced operation on the same thread join the outer trace, so phases marked deep in
+ * {@code BorrowingService} are attributed to the {@code Library} call that led there.
+ * <p>
+ * A fast operation costs two {@code nanoTime()} calls and a few field writes on an object the thread reuses.
+ * Arguments are only turned into strings once an operation turns out to be slow. Stacks are sampled by a
+ * background thread, started by the first operation traced, that looks at running operations every half
+ * threshold and captures the stack of any that has already run too long, so a slow record shows where the
+ * thread was while it was slow. Operations that cross the threshold between two looks are logged without a
+ * stack.
+ * <p>
+ * Records are kept in a ring of the latest {@link #RING_CAPACITY} and, after {@link #setLogFile}, appended to
+ * a rolling file as JSON lines by a background writer.
+ */
+public final class SlowOperationLog {
+    public static final int RING_CAPACITY = 256;
+    public static final long DEFAULT_THRESHOLD_MILLIS = 100;
+
+    private static final int MAX_ARGUMENT_LENGTH = 120;
+    private static final long MIN_SAMPLE_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static volatile boolean enabled = Boolean.getBoolean("library.slowlog");
+    private static volatile long thresholdNanos = TimeUnit.MILLISECONDS.toNanos(
+            Long.getLong("library.slowlog.thresholdMillis", DEFAULT_THRESHOLD_MILLIS));
+
+    private static final Queue<Trace> TRACES = new ConcurrentLinkedQueue<>();
+    private static final ThreadLocal<Trace> CURRENT = ThreadLocal.withInitial(() -> {
+        Trace trace = new Trace(Thread.currentThread());
+        TRACES.add(trace);
+        return trace;
+    });
+
+    private static final SlowOperationRecord[] RING = new SlowOperationRecord[RING_CAPACITY];
+    private static long ringWrites;
+    private static final LongAdder slowCount = new LongAdder();
+    private static volatile SlowOperationFileWriter fileWriter;
+    private static volatile boolean samplerStarted;
+
+    private SlowOperationLog() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        SlowOperationLog.enabled = enabled;
+    }
+
+    public static long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    public static void setThresholdMillis(long millis) {
+        if (millis < 0)
+            throw new IllegalArgumentException("Threshold must not be negative");
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+
+    public static Trace begin(Operation operation, String site) {
+        return begin(operation, site, null, null, null, null);
+    }
+
+    public static Trace begin(Operation operation, String site, String name, Object value) {
+        return begin(operation, site, name, value, null, null);
+    }
+
+    /**
+     * Starts tracing an operation on the current thread, or joins the one already running there. Returns
+     * {@code null} when the log is disabled; {@link #end(Trace)} accepts that.
+     */
+    public static Trace begin(Operation operation, String site, String name0, Object value0,
+                              String name1, Object value1) {
+        if (!enabled)
+            return null;
+        if (!samplerStarted)
+            startSampler();
+
+        Trace trace = CURRENT.get();
+        if (trace.depth++ == 0)
+            trace.start(operation, site, name0, value0, name1, value1);
+        return trace;
+    }
+
+    /**
+     * Attributes the time since the operation started, or since its previous phase ended, to {@code phase}.
+     * Does nothing when no operation is being traced on this thread.
+     */
+    public static void phase(OperationPhase phase) {
+        if (!enabled)
+            return;
+
+        Trace trace = CURRENT.get();
+        if (trace.depth > 0)
+            trace.mark(phase);
+    }
+
+    public static void end(Trace trace) {
+        if (trace == null || --trace.depth > 0)
+            return;
+
+        long duration = System.nanoTime() - trace.startNanos;
+        StackTraceElement[] stack = trace.sampledGeneration == trace.generation ? trace.sampledStack : null;
+        // Going idle tells the sampler to leave this trace alone
+        trace.generation++;
+
+        if (duration >= thresholdNanos)
+            report(trace, duration, stack);
+        trace.clear();
+    }
+
+    private static void report(Trace trace, long duration, StackTraceElement[] stack) {
+        Map<String, String> arguments = new LinkedHashMap<>();
+        if (trace.name0 != null)
+            arguments.put(trace.name0, describe(trace.value0));
+        if (trace.name1 != null)
+            arguments.put(trace.name1, describe(trace.value1));
+
+        Map<OperationPhase, Long> phases = new EnumMap<>(OperationPhase.class);
+        for (OperationPhase phase : OperationPhase.values()) {
+            if (trace.phaseNanos[phase.ordinal()] > 0)
+                phases.put(phase, trace.phaseNanos[phase.ordinal()]);
+        }
+
+        SlowOperationRecord record = new SlowOperationRecord(Instant.now(), trace.operation, trace.site,
+                trace.thread.getName(), arguments, duration, phases,
+                stack == null ? List.of() : Arrays.asList(stack));
+        slowCount.increment();
+        synchronized (RING) {
+            RING[(int) (ringWrites++ % RING_CAPACITY)] = record;
+        }
+
+        SlowOperationFileWriter writer = fileWriter;
+        if (writer != null)
+            writer.offer(record);
+    }
+
+    private static String describe(Object value) {
+        if (value instanceof Collection<?> collection)
+            return collection.size() + " values";
+        String text = String.valueOf(value);
+        return text.length() <= MAX_ARGUMENT_LENGTH ? text : text.substring(0, MAX_ARGUMENT_LENGTH) + "...";
+    }
+
+    /**
+     * The slow operations still held in the ring, oldest first.
+     */
+    public static List<SlowOperationRecord> recent() {
+        synchronized (RING) {
+            int size = (int) Math.min(ringWrites, RING_CAPACITY);
+            List<SlowOperationRecord> records = new ArrayList<>(size);
+            for (long i = ringWrites - size; i < ringWrites; i++)
+                records.add(RING[(int) (i % RING_CAPACITY)]);
+            return records;
+        }
+    }
+
+    public static long getSlowCount() {
+        return slowCount.sum();
+    }
+
+    public static void clear() {
+        synchronized (RING) {
+            Arrays.fill(RING, null);
+            ringWrites = 0;
+        }
+    }
+
+    /**
+     * Appends every later slow operation to {@code file}, rolling it over to {@code file.1} ... {@code file.N}
+     * once it exceeds {@code maxBytes}. Records that arrive faster than they can be written are dropped and
+     * counted rather than slowing the caller down.
+     */
+    public static synchronized void setLogFile(Path file, long maxBytes, int maxFiles) {
+        closeLogFile();
+        fileWriter = new SlowOperationFileWriter(file, maxBytes, maxFiles);
+        enabled = true;
+    }
+
+    public static synchronized void closeLogFile() {
+        SlowOperationFileWriter writer = fileWriter;
+        fileWriter = null;
+        if (writer != null)
+            writer.close();
+    }
+
+    public static long getDroppedCount() {
+        SlowOperationFileWriter writer = fileWriter;
+        return writer == null ? 0 : writer.getDroppedCount();
+    }
+
+    private static synchronized void startSampler() {
+        if (samplerStarted)
+            return;
+
+        Thread sampler = new Thread(SlowOperationLog::runSampler, "library-slowlog-sampler");
+        sampler.setDaemon(true);
+        sampler.start();
+        samplerStarted = true;
+    }
+
+    private static void runSampler() {
+        while (true) {
+            long threshold = thresholdNanos;
+            LockSupport.parkNanos(Math.max(MIN_SAMPLE_INTERVAL_NANOS, threshold / 2));
+            if (!enabled)
+                continue;
+
+            long now = System.nanoTime();
+            for (Iterator<Trace> it = TRACES.iterator(); it.hasNext(); ) {
+                Trace trace = it.next();
+                if (!trace.thread.isAlive()) {
+                    it.remove();
+                    continue;
+                }
+
+                long generation = trace.generation;
+                if ((generation & 1) == 0 || trace.sampledGeneration == generation
+                        || now - trace.startNanos < threshold)
+                    continue;
+
+                StackTraceElement[] stack = trace.thread.getStackTrace();
+                if (trace.generation == generation) {
+                    trace.sampledStack = stack;
+                    trace.sampledGeneration = generation;
+                }
+            }
+        }
+    }
+
+    /**
+     * Per-thread state of the operation being traced. Each thread reuses one instance, so tracing allocates
+     * nothing while operations stay fast.
+     */
+    public static final class Trace {
+        private final Thread thread;
+        private final long[] phaseNanos = new long[OperationPhase.values().length];
+        private int depth;
+        private Operation operation;
+        private String site;
+        private String name0;
+        private Object value0;
+        private String name1;
+        private Object value1;
+        private long lastMarkNanos;
+
+        // Read by the sampler thread. The generation is odd while an operation runs, and startNanos is written
+        // before the generation is bumped, so a sampler that sees an odd generation also sees its start time.
+        private volatile long startNanos;
+        private volatile long generation;
+        private volatile long sampledGeneration = -1;
+        private volatile StackTraceElement[] sampledStack;
+
+        private Trace(Thread thread) {
+            this.thread = thread;
+        }
+
+        private void start(Operation operation, String site, String name0, Object value0,
+                           String name1, Object value1) {
+            this.operation = operation;
+            this.site = site;
+            this.name0 = name0;
+            this.value0 = value0;
+            this.name1 = name1;
+            this.value1 = value1;
+            long now = System.nanoTime();
+            lastMarkNanos = now;
+            startNanos = now;
+            generation++;
+        }
+
+        private void mark(OperationPhase phase) {
+            long now = System.nanoTime();
+            phaseNanos[phase.ordinal()] += now - lastMarkNanos;
+            lastMarkNanos = now;
+        }
+
+        private void clear() {
+            Arrays.fill(phaseNanos, 0);
+            value0 = null;
+            value1 = null;
+            sampledStack = null;
+        }
+    }
+}
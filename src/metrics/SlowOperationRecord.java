@@ -0,0 +1,86 @@
+package metrics;
+
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One operation that took longer than the {@link SlowOperationLog} threshold. {@code phaseNanos} holds the
+ * phases the operation marked, and {@code stack} the stack sampled while it was still running, which is empty
+ * when the operation finished before the sampler looked at it.
+ */
+public record SlowOperationRecord(Instant timestamp, Operation operation, String site, String thread,
+                                  Map<String, String> arguments, long durationNanos,
+                                  Map<OperationPhase, Long> phaseNanos, List<StackTraceElement> stack) {
+
+    public SlowOperationRecord {
+        arguments = Collections.unmodifiableMap(new LinkedHashMap<>(arguments));
+        phaseNanos = phaseNanos.isEmpty() ? Map.of() : Collections.unmodifiableMap(new EnumMap<>(phaseNanos));
+        stack = List.copyOf(stack);
+    }
+
+    public long durationMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(durationNanos);
+    }
+
+    /**
+     * Renders the record as a single line of JSON, the format of the slow-operation log file.
+     */
+    public String toJson() {
+        StringBuilder json = new StringBuilder(256);
+        json.append("{\"timestamp\":\"").append(timestamp)
+                .append("\",\"operation\":\"").append(operation)
+                .append("\",\"site\":").append(quote(site))
+                .append(",\"thread\":").append(quote(thread))
+                .append(",\"durationMicros\":").append(TimeUnit.NANOSECONDS.toMicros(durationNanos))
+                .append(",\"arguments\":{");
+        appendEntries(json, arguments.entrySet().stream()
+                .map(entry -> quote(entry.getKey()) + ":" + quote(entry.getValue()))
+                .toList());
+        json.append("},\"phasesMicros\":{");
+        appendEntries(json, phaseNanos.entrySet().stream()
+                .map(entry -> quote(entry.getKey().name()) + ":" + TimeUnit.NANOSECONDS.toMicros(entry.getValue()))
+                .toList());
+        json.append("},\"stack\":[");
+        appendEntries(json, stack.stream().map(frame -> quote(frame.toString())).toList());
+        return json.append("]}").toString();
+    }
+
+    private static void appendEntries(StringBuilder json, List<String> entries) {
+        for (int i = 0; i < entries.size(); i++) {
+            if (i > 0)
+                json.append(',');
+            json.append(entries.get(i));
+        }
+    }
+
+    private static String quote(String value) {
+        if (value == null)
+            return "null";
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"' -> quoted.append("\\\"");
+                case '\\' -> quoted.append("\\\\");
+                case '\n' -> quoted.append("\\n");
+                case '\r' -> quoted.append("\\r");
+                case '\t' -> quoted.append("\\t");
+                default -> {
+                    if (c < 0x20)
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    else
+                        quoted.append(c);
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(String.format("%s %s %s took %d ms on %s, arguments=%s, phases=%s",
+                timestamp, operation, site, durationMillis(), thread, arguments, phaseNanos));
+        stack.forEach(frame -> text.append(System.lineSeparator()).append("    at ").append(frame));
+        return text.toString();
+    }
+}
@@ -0,0 +1,29 @@
+package metrics;
+
+/**
+ * Estimated heap use of one in-memory structure: {@code containerBytes} for the structure itself (its arrays,
+ * nodes and tables) and {@code elementBytes} for the objects only it holds. {@code sampledElements} tells how
+ * many elements the element estimate was extrapolated from.
+ */
+public record StructureFootprint(String name, long elements, long containerBytes, long elementBytes,
+                                 int sampledElements) {
+
+    public static StructureFootprint of(String name, long containerBytes, ObjectSizeEstimator.SizeSample sample) {
+        return new StructureFootprint(name, sample.elements(), containerBytes, sample.estimatedBytes(), sample.sampled());
+    }
+
+    public long totalBytes() {
+        return containerBytes + elementBytes;
+    }
+
+    public double bytesPerElement() {
+        return elements == 0 ? 0.0 : (double) totalBytes() / elements;
+    }
+
+    /**
+     * Size this structure would reach with {@code elements} entries of the same average size.
+     */
+    public long projectedBytes(long elements) {
+        return Math.round(bytesPerElement() * elements);
+    }
+}
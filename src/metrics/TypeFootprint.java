@@ -0,0 +1,11 @@
+package metrics;
+
+/**
+ * Estimated count and average retained size of the objects of one type within a structure.
+ */
+public record TypeFootprint(String type, long count, double averageBytes) {
+
+    public long totalBytes() {
+        return Math.round(count * averageBytes);
+    }
+}
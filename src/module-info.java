@@ -8,11 +8,15 @@ module library.management.system {
     exports interfaces;
     exports services;
     exports main;
+    exports metrics;
+    exports util;
 
     requires java.base;
     requires java.sql;
     requires java.logging;
     requires java.desktop;
+    requires jdk.jfr;
+    requires jdk.httpserver;
     requires com.h2database;
 
     opens entities to java.base;
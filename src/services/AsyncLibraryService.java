@@ -2,15 +2,28 @@ package services;
 
 import entities.Library;
 import entities.items.LibraryItem;
+import util.LibraryClock;
 
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 
 public class AsyncLibraryService {
     private final Library library;
+    private final NotificationService notificationService;
 
     public AsyncLibraryService(Library library) {
+        this(library, null);
+    }
+
+    /**
+     * With a notification service, maintenance also reminds members of loans coming due and waits for the
+     * pending notifications to go out. The service is registered as a change listener of the library.
+     */
+    public AsyncLibraryService(Library library, NotificationService notificationService) {
         this.library = library;
+        this.notificationService = notificationService;
+        if (notificationService != null)
+            library.addChangeListener(notificationService);
     }
 
     public CompletableFuture<LibraryItem> findItemByIdAsync(String id) {
@@ -36,10 +49,20 @@ public class AsyncLibraryService {
     public CompletableFuture<Void> performMaintenanceAsync() {
         return CompletableFuture.runAsync(() -> {
             System.out.println("Starting maintenance...");
-        }).thenRunAsync(() -> {
+            int newlyOverdue = library.checkOverdue().size();
+            if (newlyOverdue > 0)
+                System.out.println(newlyOverdue + " loans became overdue");
+            if (notificationService != null) {
+                int reminders = notificationService.notifyDueSoon(
+                        library.getBorrowingService().getOverdueTracker(), LibraryClock.today());
+                if (reminders > 0)
+                    System.out.println(reminders + " due-soon reminders queued");
+            }
+        }).thenCompose(v -> notificationService != null
+                ? notificationService.flush()
+                : CompletableFuture.<Void>completedFuture(null)
+        ).thenRun(() -> {
             System.out.println("Maintenance completed");
-        }).thenRunAsync(() -> {
-            System.out.println("Sending notification...");
         });
     }
 
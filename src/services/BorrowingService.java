@@ -8,66 +8,116 @@ import exceptions.BorrowException;
 import exceptions.ItemNotAvailableException;
 import exceptions.MemberLimitExceededException;
 import interfaces.LoanPolicy;
+import metrics.InstrumentedLock;
+import metrics.InstrumentedReadWriteLock;
+import metrics.LockStats;
+import metrics.ObjectSizeEstimator;
+import metrics.Operation;
+import metrics.OperationPhase;
+import metrics.SlowOperationLog;
+import metrics.StructureFootprint;
+import util.LibraryClock;
 
 import java.time.LocalDate;
 import java.util.*;
-import java.util.concurrent.locks.ReentrantLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.Function;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 public class BorrowingService {
-    private final ReentrantLock borrowLock = new ReentrantLock(true);
-    private final ReentrantReadWriteLock recordLock = new ReentrantReadWriteLock();
+    private final InstrumentedLock borrowLock = new InstrumentedLock("BorrowingService.borrowLock", true);
+    private final InstrumentedReadWriteLock recordLock = new InstrumentedReadWriteLock("BorrowingService.recordLock");
     private volatile boolean maintenanceMode = false;
+    private volatile ReservationService reservationService;
 
     private final BorrowingConfig config;
     private final List<BorrowRecord> activeRecords = new ArrayList<>();
+    private final OverdueTracker overdueTracker;
+    private final FineLedger fineLedger;
+    // Loans found overdue and not yet returned by detectNewlyOverdue, in the order found; also guards advancing
+    // the tracker. Returns and renewals take their loans out, so it stays small if nobody calls detectNewlyOverdue
+    private final Set<BorrowRecord> unreportedOverdue = new LinkedHashSet<>();
 
     public BorrowingService() {
-        this.config = new BorrowingConfig.Builder().build();
+        this(new BorrowingConfig.Builder().build());
     }
 
     public BorrowingService(BorrowingConfig config) {
         this.config = config;
+        LocalDate today = LibraryClock.today();
+        this.overdueTracker = new OverdueTracker(today);
+        this.fineLedger = new FineLedger(this::dailyFine, today);
     }
 
     public void setMaintenanceMode(boolean enabled) {
         this.maintenanceMode = enabled;
     }
 
+    void setReservationService(ReservationService reservationService) {
+        this.reservationService = reservationService;
+    }
+
+    /**
+     * Runs {@code action} under the borrow lock, so it sees no borrow half done. Used by the reservation service
+     * to move items between members.
+     */
+    void runWithBorrowLock(String operation, Runnable action) {
+        borrowLock.lock(operation);
+        try {
+            action.run();
+        } finally {
+            unlockBorrowLock();
+        }
+    }
+
+    // Hold journal lines recorded under the lock are written only once it is free
+    private void unlockBorrowLock() {
+        borrowLock.unlock();
+        ReservationService reservations = reservationService;
+        if (reservations != null)
+            reservations.flushJournal();
+    }
+
     public BorrowResult borrowItem(LibraryItem item, Member member, Integer customDays) {
         if (maintenanceMode) {
             return BorrowResult.failure("System under maintenance");
         }
 
-        borrowLock.lock();
+        SlowOperationLog.Trace trace = SlowOperationLog.begin(Operation.BORROW, "BorrowingService.borrowItem",
+                "itemId", item != null ? item.getId() : null, "memberId", member != null ? member.getId() : null);
         try {
-            return validateAndBorrow(item, member, customDays);
+            borrowLock.lock("borrowItem");
+            SlowOperationLog.phase(OperationPhase.LOCK_WAIT);
+            try {
+                return validateAndBorrow(item, member, customDays);
+            } finally {
+                unlockBorrowLock();
+            }
         } finally {
-            borrowLock.unlock();
+            SlowOperationLog.end(trace);
         }
     }
 
     public BorrowResult validateAndBorrow(LibraryItem item, Member member, Integer customDays) {
+        SlowOperationLog.Trace trace = SlowOperationLog.begin(Operation.BORROW, "BorrowingService.validateAndBorrow",
+                "itemId", item != null ? item.getId() : null, "memberId", member != null ? member.getId() : null);
         try {
             BorrowResult validateResult = validateBorrow(item, member, customDays);
             if (validateResult != null)
                 return validateResult;
 
             if (!config.isAllowMultipleBorrows()) {
-                long activeCount = activeRecords.stream()
-                        .filter(r -> r.getMember().equals(member) && r.getReturnDate() == null)
-                        .count();
+                long activeCount = countActiveBorrows(member);
                 if (activeCount >= config.getMaxBorrowsPerMember()) {
                     throw new MemberLimitExceededException(item.getId(), member.getId(), (int) activeCount, config.getMaxBorrowsPerMember());
                 }
             }
 
-            if (!item.getAvailable())
+            ReservationService reservations = reservationService;
+            if (reservations != null ? !reservations.claimForBorrow(item, member) : !item.getAvailable())
                 throw new ItemNotAvailableException(item.getId(), member.getId());
+            SlowOperationLog.phase(OperationPhase.VALIDATION);
 
             item.setAvailable(false);
             item.setStatus(ItemStatus.BORROWED);
@@ -77,32 +127,50 @@ public class BorrowingService {
             if (item instanceof LoanPolicy policy) {
                 record.setDueDate(record.getBorrowDate().plusDays(policy.getMaxLoanDays()));
             }
+            SlowOperationLog.phase(OperationPhase.RECORD_CREATION);
             addBorrowRecord(record);
+            SlowOperationLog.phase(OperationPhase.PERSISTENCE);
 
             return BorrowResult.success(record);
         } catch (MemberLimitExceededException | ItemNotAvailableException e) {
             return BorrowResult.failure(e.getMessage());
         } catch (Exception e) {
             return BorrowResult.failure("Unexpected error: " + e.getMessage());
+        } finally {
+            SlowOperationLog.end(trace);
         }
     }
 
     public void addBorrowRecord(BorrowRecord record) {
-        recordLock.writeLock().lock();
+        recordLock.writeLock().lock("addBorrowRecord");
         try {
             activeRecords.add(record);
+            overdueTracker.track(record);
+        } finally {
+            recordLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registers records that were loaded from storage, taking the record lock once for the whole batch.
+     */
+    public void addBorrowRecords(Collection<BorrowRecord> records) {
+        recordLock.writeLock().lock("addBorrowRecords");
+        try {
+            activeRecords.addAll(records);
+            overdueTracker.trackAll(records);
         } finally {
             recordLock.writeLock().unlock();
         }
     }
 
     public void borrowItemWithException(LibraryItem item, Member member) throws BorrowException {
-        if (!item.canBeBorrowed()) {
+        if (!item.canBeBorrowed() && !isHeldFor(item, member)) {
             throw new BorrowException("Item cannot be borrowed",
                     item.getId(), member.getId());
         }
 
-        if (!item.getAvailable()) {
+        if (!item.getAvailable() && !isHeldFor(item, member)) {
             throw new ItemNotAvailableException(item.getId(), member.getId());
         }
         long activeBorrows = getActiveBorrows().size();
@@ -129,7 +197,7 @@ public class BorrowingService {
         if (member == null)
             return BorrowResult.failure("Member is null");
 
-        if (!item.canBeBorrowed())
+        if (!item.canBeBorrowed() && !isHeldFor(item, member))
             return BorrowResult.failure("Item cannot be borrowed");
 
         if (customDays != null) {
@@ -142,20 +210,44 @@ public class BorrowingService {
         return null;
     }
 
+    private boolean isHeldFor(LibraryItem item, Member member) {
+        ReservationService reservations = reservationService;
+        return item instanceof LoanPolicy && reservations != null && reservations.isHeldFor(item, member);
+    }
+
     public BorrowResult borrowItem(LibraryItem item, Member member) {
         return borrowItem(item, member, null);
     }
 
     public Optional<BorrowRecord> returnItem(LibraryItem item) {
-        Optional<BorrowRecord> recordOpt = findActiveRecord(item);
-
-        recordOpt.ifPresent(record -> {
-            item.setAvailable(true);
-            item.setStatus(ItemStatus.AVAILABLE);
-            record.setReturnDate(LocalDate.now());
-            activeRecords.remove(record);
-        });
-
+        Optional<BorrowRecord> recordOpt;
+        recordLock.writeLock().lock("returnItem");
+        try {
+            recordOpt = findActiveRecord(item);
+
+            // The record is closed before the item is released, so a concurrent borrow never sees two open records
+            recordOpt.ifPresent(record -> {
+                record.setReturnDate(LibraryClock.today());
+                activeRecords.remove(record);
+                overdueTracker.untrack(record);
+                fineLedger.settleReturn(record);
+                item.setStatus(ItemStatus.AVAILABLE);
+                item.setAvailable(true);
+            });
+        } finally {
+            recordLock.writeLock().unlock();
+        }
+        recordOpt.ifPresent(this::dropUnreportedOverdue);
+
+        // Members queued for the item get it before any other borrower; a borrow that slipped in first hands it
+        // over itself, in claimForBorrow
+        ReservationService reservations = reservationService;
+        if (recordOpt.isPresent() && reservations != null && reservations.hasWaiters(item)) {
+            runWithBorrowLock("returnItem", () -> {
+                if (item.getAvailable())
+                    reservations.handOff(item);
+            });
+        }
         return recordOpt;
     }
 
@@ -168,24 +260,38 @@ public class BorrowingService {
 
         LocalDate newDueDate = record.getDueDate().plusDays(additionalDays);
         record.setDueDate(newDueDate);
+        overdueTracker.reschedule(record);
+        fineLedger.reschedule(record);
+        if (!record.isMarkedOverdue())
+            dropUnreportedOverdue(record);
 
         return true;
     }
 
+    /**
+     * The fine a loan carries: days past due, up to its return or up to today if it is still open, times its
+     * daily fine.
+     */
     public double calculateFine(BorrowRecord record) {
-        if (record.getReturnDate() == null || !record.isOverdue())
+        if (!record.isOverdue())
             return 0.0;
 
-        long daysOverdue = record.getDaysOverdue();
+        return accruedFine(record);
+    }
+
+    private double accruedFine(BorrowRecord record) {
+        return record.getDaysOverdue() * dailyFine(record);
+    }
 
+    private double dailyFine(BorrowRecord record) {
         if (record.getItem() instanceof LoanPolicy policy)
-            return daysOverdue * policy.getDailyFine();
+            return policy.getDailyFine();
 
-        return daysOverdue * config.getDefaultDailyFine();
+        return config.getDefaultDailyFine();
     }
 
     public double calculateFineWithFunction(BorrowRecord record, Function<Long, Double> function) {
-        if (record.getReturnDate() == null || !record.isOverdue())
+        if (!record.isOverdue())
             return 0.0;
 
         long daysOverdue = record.getDaysOverdue();
@@ -193,6 +299,17 @@ public class BorrowingService {
 
     }
 
+    private long countActiveBorrows(Member member) {
+        recordLock.readLock().lock("countActiveBorrows");
+        try {
+            return activeRecords.stream()
+                    .filter(r -> r.getMember().equals(member) && r.getReturnDate() == null)
+                    .count();
+        } finally {
+            recordLock.readLock().unlock();
+        }
+    }
+
     private Optional<BorrowRecord> findActiveRecord(LibraryItem item) {
         return activeRecords.stream()
                 .filter(r -> r.getItem().equals(item) && r.getReturnDate() == null)
@@ -200,7 +317,7 @@ public class BorrowingService {
     }
 
     private BorrowRecord createBorrowRecord(LibraryItem item, Member member, Integer customDays) {
-        LocalDate borrowDate = LocalDate.now();
+        LocalDate borrowDate = LibraryClock.today();
         LocalDate dueDate;
 
         if (item instanceof LoanPolicy policy) {
@@ -220,8 +337,86 @@ public class BorrowingService {
         return record;
     }
 
+    public int getActiveBorrowCount() {
+        recordLock.readLock().lock("getActiveBorrowCount");
+        try {
+            return activeRecords.size();
+        } finally {
+            recordLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Marks the loans that have become overdue since the previous call and returns them. Only the loans due
+     * since then are looked at, however many are open.
+     */
+    public List<BorrowRecord> detectNewlyOverdue() {
+        synchronized (unreportedOverdue) {
+            advanceOverdue(LibraryClock.today());
+            // A loan returned or renewed since a read found it overdue is no longer news
+            List<BorrowRecord> newlyOverdue = unreportedOverdue.stream()
+                    .filter(record -> record.getReturnDate() == null && record.isMarkedOverdue())
+                    .toList();
+            unreportedOverdue.clear();
+            return newlyOverdue;
+        }
+    }
+
+    private void dropUnreportedOverdue(BorrowRecord record) {
+        synchronized (unreportedOverdue) {
+            unreportedOverdue.remove(record);
+        }
+    }
+
+    // The fine ledger starts accruing a loan on the day the tracker finds it overdue. Reads that bring the totals
+    // up to date call this too, so the loans found are kept for the next detectNewlyOverdue to report
+    private void advanceOverdue(LocalDate today) {
+        synchronized (unreportedOverdue) {
+            List<BorrowRecord> newlyOverdue = overdueTracker.advanceTo(today);
+            fineLedger.accrueTo(today);
+            fineLedger.startAccruing(newlyOverdue);
+            unreportedOverdue.addAll(newlyOverdue);
+        }
+    }
+
+    /**
+     * Counts the open loans that are past due, from the overdue tracker, and the fines owed and not yet paid,
+     * from the fine ledger. Both are kept up to date as loans fall due, so this only looks at the loans that
+     * fell due since the last check. Loans that became overdue are still reported by the next
+     * {@link #detectNewlyOverdue()}.
+     */
+    public OverdueSummary summarizeOverdue() {
+        advanceOverdue(LibraryClock.today());
+        return new OverdueSummary(overdueTracker.getOverdueCount(), fineLedger.getTotalOutstanding());
+    }
+
+    public OverdueTracker getOverdueTracker() {
+        return overdueTracker;
+    }
+
+    public FineLedger getFineLedger() {
+        return fineLedger;
+    }
+
+    /**
+     * Estimates the heap use of the active-record list. The records are shared with the library's own record
+     * list, so only the list itself is counted.
+     */
+    public StructureFootprint estimateFootprint(ObjectSizeEstimator estimator) {
+        recordLock.readLock().lock("estimateFootprint");
+        try {
+            return new StructureFootprint("BorrowingService.activeRecords", activeRecords.size(),
+                    estimator.listOverhead(activeRecords, activeRecords.size()), 0, 0);
+        } finally {
+            recordLock.readLock().unlock();
+        }
+    }
+
+    public record OverdueSummary(long overdueLoans, double finesOutstanding) {
+    }
+
     public List<BorrowRecord> getActiveBorrows() {
-        recordLock.readLock().lock();
+        recordLock.readLock().lock("getActiveBorrows");
         try {
             return new ArrayList<>(activeRecords);
         } finally {
@@ -230,13 +425,13 @@ public class BorrowingService {
     }
 
     public List<BorrowRecord> getMemberActiveBorrows(Member member) {
-        return activeRecords.stream()
+        return getActiveBorrows().stream()
                 .filter(r -> r.getMember().equals(member) && r.getReturnDate() == null)
                 .toList();
     }
 
     public List<BorrowRecord> getOverdueBorrows() {
-        return activeRecords.stream()
+        return getActiveBorrows().stream()
                 .filter(BorrowRecord::isOverdue)
                 .toList();
     }
@@ -257,12 +452,12 @@ public class BorrowingService {
     }
 
     public Stream<BorrowRecord> activeBorrowsStream() {
-        return activeRecords.stream()
+        return getActiveBorrows().stream()
                 .filter(record -> record.getReturnDate() == null);
     }
 
     public Map<Member, List<BorrowRecord>> getBorrowsByMember() {
-        return activeRecords.stream()
+        return getActiveBorrows().stream()
                 .collect(Collectors.groupingBy(BorrowRecord::getMember));
     }
 
@@ -271,17 +466,44 @@ public class BorrowingService {
                 .max(Comparator.comparingLong(BorrowRecord::getBorrowDurationInDays));
     }
 
+    /**
+     * Fines owed across all members, for open and returned loans alike, less what has been paid. Read from the
+     * fine ledger's running total once today's fines are accrued.
+     */
     public double calculateTotalFines() {
-        return activeRecords.stream()
-                .filter(BorrowRecord::isOverdue)
-                .mapToDouble(this::calculateFine)
-                .sum();
+        advanceOverdue(LibraryClock.today());
+        return fineLedger.getTotalOutstanding();
+    }
+
+    public double calculateMemberFines(Member member) {
+        advanceOverdue(LibraryClock.today());
+        return fineLedger.getOutstanding(member.getId());
     }
 
     public <T extends LibraryItem> List<BorrowRecord> getBorrowRecordsForType(Class<T> itemType, List<BorrowRecord> records) {
         return records.stream().filter(record -> itemType.isInstance(record.getClass())).toList();
     }
 
+    /**
+     * Point-in-time view of the service's locks, cheap enough to sample from a monitoring thread.
+     */
+    public LockState getLockState() {
+        return new LockState(borrowLock.isLocked(), borrowLock.getQueueLength(),
+                recordLock.isWriteLocked(), recordLock.getReadLockCount(), recordLock.getQueueLength());
+    }
+
+    /**
+     * Wait and hold times of the borrow lock and of the read and write sides of the record lock. The figures
+     * stay empty unless lock instrumentation is enabled in {@link metrics.LibraryMetrics}.
+     */
+    public List<LockStats> getLockStats() {
+        return List.of(borrowLock.getStats(), recordLock.getReadStats(), recordLock.getWriteStats());
+    }
+
+    public record LockState(boolean borrowLockHeld, int borrowLockQueueLength, boolean recordWriteLocked,
+                            int recordReadHolds, int recordLockQueueLength) {
+    }
+
     public static class BorrowResult {
         private final boolean success;
         private final BorrowRecord record;
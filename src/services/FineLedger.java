@@ -0,0 +1,219 @@
+package services;
+
+import entities.people.Member;
+import entities.transactions.BorrowRecord;
+import enums.FineEntryType;
+
+import java.time.LocalDate;
+import java.util.*;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Running account of the fines members owe. Each overdue loan accrues its daily fine once per day, when
+ * {@link #accrueTo(LocalDate)} moves the ledger to a new day; the totals for the library and for each member are
+ * updated as the fines are booked, so reading them never looks at a loan. Returning or renewing a loan books the
+ * difference between what it has accrued and the fine it carries on its current due date, and payments reduce
+ * what a member owes. The latest amounts booked, up to the ledger's audit capacity, are kept in an audit trail
+ * indexed by member; older entries are dropped, while the totals keep counting them.
+ * <p>
+ * Amounts are held in hundredths, so the running totals stay exact however many entries are booked.
+ */
+public class FineLedger {
+    public static final int DEFAULT_AUDIT_CAPACITY = 100_000;
+
+    private final ToDoubleFunction<BorrowRecord> dailyFine;
+    private final Map<BorrowRecord, LoanAccount> accruing = new IdentityHashMap<>();
+    private final Map<Integer, MemberAccount> members = new HashMap<>();
+    private final int auditCapacity;
+    private final Deque<FineEntry> auditTrail = new ArrayDeque<>();
+    private final Map<Integer, Deque<FineEntry>> auditByMember = new HashMap<>();
+    private long auditSequence;
+    private long accruedDay;
+    private long totalAccrued;
+    private long totalPaid;
+
+    public FineLedger(ToDoubleFunction<BorrowRecord> dailyFine, LocalDate today) {
+        this(dailyFine, today, DEFAULT_AUDIT_CAPACITY);
+    }
+
+    public FineLedger(ToDoubleFunction<BorrowRecord> dailyFine, LocalDate today, int auditCapacity) {
+        if (auditCapacity <= 0)
+            throw new IllegalArgumentException("Audit capacity must be positive");
+
+        this.dailyFine = dailyFine;
+        this.auditCapacity = auditCapacity;
+        this.accruedDay = today.toEpochDay();
+    }
+
+    /**
+     * Starts accruing fines on loans that have just become overdue. Each one is brought up to the day the ledger
+     * was last accrued to.
+     */
+    public synchronized void startAccruing(Collection<BorrowRecord> records) {
+        for (BorrowRecord record : records) {
+            LoanAccount account = accruing.computeIfAbsent(record, r -> new LoanAccount(cents(dailyFine.applyAsDouble(r))));
+            book(record, account, accruedDay, FineEntryType.ACCRUAL);
+        }
+    }
+
+    /**
+     * Accrues each overdue loan's fine for every day since the last accrual. Only the first call on a given day
+     * does any work.
+     */
+    public synchronized void accrueTo(LocalDate today) {
+        long day = today.toEpochDay();
+        if (day <= accruedDay)
+            return;
+
+        accruedDay = day;
+        for (Map.Entry<BorrowRecord, LoanAccount> entry : accruing.entrySet())
+            book(entry.getKey(), entry.getValue(), day, FineEntryType.ACCRUAL);
+    }
+
+    /**
+     * Books the final fine of a returned loan, from its due date to its return date, and stops accruing it. A
+     * late return the overdue check had not reached yet is charged as well.
+     */
+    public synchronized void settleReturn(BorrowRecord record) {
+        LoanAccount account = accruing.remove(record);
+        if (account == null) {
+            book(record, new LoanAccount(cents(dailyFine.applyAsDouble(record))), record.getReturnDate().toEpochDay(),
+                    FineEntryType.ACCRUAL);
+            return;
+        }
+        book(record, account, record.getReturnDate().toEpochDay(), FineEntryType.ADJUSTMENT);
+    }
+
+    /**
+     * Recomputes the fine of a renewed loan against its new due date. A loan renewed past the current day gives
+     * back what it had accrued and stops accruing until it falls due again.
+     */
+    public synchronized void reschedule(BorrowRecord record) {
+        LoanAccount account = accruing.get(record);
+        if (account == null)
+            return;
+
+        book(record, account, accruedDay, FineEntryType.ADJUSTMENT);
+        if (account.accrued == 0)
+            accruing.remove(record);
+    }
+
+    /**
+     * Records a payment against what {@code member} owes.
+     */
+    public synchronized void recordPayment(Member member, double amount, LocalDate date) {
+        long paid = cents(amount);
+        if (paid <= 0)
+            throw new IllegalArgumentException("Payment must be positive");
+
+        MemberAccount account = members.get(member.getId());
+        if (account == null || paid > account.accrued - account.paid)
+            throw new IllegalArgumentException("Payment exceeds the fines owed by member " + member.getId());
+
+        account.paid += paid;
+        totalPaid += paid;
+        audit(new FineEntry(++auditSequence, date, FineEntryType.PAYMENT, member.getId(), null, -amount(paid), 0));
+    }
+
+    // Brings a loan's booked fine to what it owes on {@code day} and records the difference
+    private void book(BorrowRecord record, LoanAccount account, long day, FineEntryType type) {
+        long daysOverdue = Math.max(0, day - record.getDueDate().toEpochDay());
+        long delta = daysOverdue * account.dailyFine - account.accrued;
+        if (delta == 0)
+            return;
+
+        account.accrued += delta;
+        totalAccrued += delta;
+        int memberId = record.getMember().getId();
+        members.computeIfAbsent(memberId, id -> new MemberAccount()).accrued += delta;
+        audit(new FineEntry(++auditSequence, LocalDate.ofEpochDay(day), type, memberId, record.getItem().getId(),
+                amount(delta), daysOverdue));
+    }
+
+    // The oldest entry in the trail is also the oldest of its member's, so both drop from the front
+    private void audit(FineEntry entry) {
+        if (auditTrail.size() == auditCapacity) {
+            FineEntry oldest = auditTrail.pollFirst();
+            Deque<FineEntry> memberTrail = auditByMember.get(oldest.memberId());
+            memberTrail.pollFirst();
+            if (memberTrail.isEmpty())
+                auditByMember.remove(oldest.memberId());
+        }
+        auditTrail.addLast(entry);
+        auditByMember.computeIfAbsent(entry.memberId(), id -> new ArrayDeque<>()).addLast(entry);
+    }
+
+    public synchronized double getTotalOutstanding() {
+        return amount(totalAccrued - totalPaid);
+    }
+
+    public synchronized double getTotalAccrued() {
+        return amount(totalAccrued);
+    }
+
+    public synchronized double getTotalPaid() {
+        return amount(totalPaid);
+    }
+
+    public synchronized double getOutstanding(int memberId) {
+        MemberAccount account = members.get(memberId);
+        return account != null ? amount(account.accrued - account.paid) : 0.0;
+    }
+
+    public synchronized int getAccruingCount() {
+        return accruing.size();
+    }
+
+    public synchronized LocalDate getAccruedDate() {
+        return LocalDate.ofEpochDay(accruedDay);
+    }
+
+    /**
+     * The latest amounts booked, oldest first. Sequence numbers keep counting the entries dropped before them.
+     */
+    public synchronized List<FineEntry> getAuditTrail() {
+        return new ArrayList<>(auditTrail);
+    }
+
+    public synchronized List<FineEntry> getAuditTrail(int memberId) {
+        Deque<FineEntry> memberTrail = auditByMember.get(memberId);
+        return memberTrail != null ? new ArrayList<>(memberTrail) : new ArrayList<>();
+    }
+
+    /**
+     * Number of entries booked since the ledger was created, including those dropped from the audit trail.
+     */
+    public synchronized long getAuditCount() {
+        return auditSequence;
+    }
+
+    private static long cents(double amount) {
+        return Math.round(amount * 100);
+    }
+
+    private static double amount(long cents) {
+        return cents / 100.0;
+    }
+
+    private static final class LoanAccount {
+        private final long dailyFine;
+        private long accrued;
+
+        private LoanAccount(long dailyFine) {
+            this.dailyFine = dailyFine;
+        }
+    }
+
+    private static final class MemberAccount {
+        private long accrued;
+        private long paid;
+    }
+
+    /**
+     * One amount booked to a member's account. Accruals and adjustments carry the loan's item and the days it was
+     * overdue on {@code date}; payments are negative and carry no item.
+     */
+    public record FineEntry(long sequence, LocalDate date, FineEntryType type, int memberId, String itemId,
+                            double amount, long daysOverdue) {
+    }
+}
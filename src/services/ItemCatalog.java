@@ -2,6 +2,8 @@ package services;
 
 import entities.items.LibraryItem;
 import enums.LibraryItemType;
+import metrics.ObjectSizeEstimator;
+import metrics.StructureFootprint;
 
 import java.util.ArrayList;
 import java.util.EnumMap;
@@ -31,6 +33,20 @@ public class ItemCatalog {
                 .toList();
     }
 
+    /**
+     * Estimates the catalog's own heap use. The items are the library's, so only the map and its lists are
+     * counted.
+     */
+    public StructureFootprint estimateFootprint(ObjectSizeEstimator estimator) {
+        long items = 0;
+        long containerBytes = estimator.shallowSize(catalog) + estimator.arraySize(Object.class, catalog.size());
+        for (List<LibraryItem> list : catalog.values()) {
+            items += list.size();
+            containerBytes += estimator.listOverhead(list, list.size());
+        }
+        return new StructureFootprint("ItemCatalog.catalog", items, containerBytes, 0, 0);
+    }
+
     public Map<LibraryItemType, Integer> getTypeCounts() {
         Map<LibraryItemType, Integer> counts = new EnumMap<>(LibraryItemType.class);
         catalog.forEach((type, items) -> counts.put(type, items.size()));
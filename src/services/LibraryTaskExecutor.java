@@ -51,11 +51,39 @@ public class LibraryTaskExecutor {
 
     public void scheduleOverdueCheck(long initialDelay, long period, TimeUnit unit) {
         scheduledExecutorService.scheduleAtFixedRate(() -> {
-            System.out.println("Checking overdue items...");
+            try {
+                int newlyOverdue = library.checkOverdue().size();
+                if (newlyOverdue > 0)
+                    System.out.println(newlyOverdue + " loans became overdue");
+            } catch (RuntimeException e) {
+                System.err.println("Overdue check failed: " + e.getMessage());
+            }
+        }, initialDelay, period, unit);
+    }
 
+    /**
+     * Expires overdue holds every {@code period}, handing each item on to the next member in its queue.
+     */
+    public void scheduleHoldExpiry(ReservationService reservationService, long initialDelay, long period, TimeUnit unit) {
+        scheduledExecutorService.scheduleAtFixedRate(() -> {
+            try {
+                reservationService.expireHolds();
+            } catch (RuntimeException e) {
+                System.err.println("Hold expiry failed: " + e.getMessage());
+            }
         }, initialDelay, period, unit);
     }
 
+    public PoolStats getPoolStats() {
+        if (executorService instanceof ThreadPoolExecutor pool)
+            return new PoolStats(pool.getPoolSize(), pool.getActiveCount(), pool.getQueue().size(),
+                    pool.getCompletedTaskCount());
+        return new PoolStats(0, 0, 0, 0);
+    }
+
+    public record PoolStats(int poolSize, int activeThreads, int queuedTasks, long completedTasks) {
+    }
+
     public void shutdown() {
         executorService.shutdown();
         scheduledExecutorService.shutdown();
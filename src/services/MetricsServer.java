@@ -0,0 +1,224 @@
+package services;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import entities.Library;
+import enums.LibraryItemType;
+import jdbc.CacheStats;
+import metrics.LatencySnapshot;
+import metrics.LibraryMetrics;
+import metrics.LockStats;
+import metrics.Operation;
+import metrics.PrometheusWriter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Serves the library's counters, gauges and latency histograms in the Prometheus text format on
+ * {@code http://<address>/metrics}. A scrape only reads counters and fixed-size histograms, so it costs the
+ * same however many items and loans the library holds. The overdue count and outstanding fines come from the
+ * borrowing service's overdue tracker, which a background thread moves forward every
+ * {@code overdueRefreshSeconds}; scrapes report the latest result.
+ * <p>
+ * DAO caches and executors can be added with {@link #registerCache(String, Supplier)} and
+ * {@link #registerPool(String, LibraryTaskExecutor)}.
+ */
+public class MetricsServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 9404;
+    public static final String PATH = "/metrics";
+    public static final long DEFAULT_OVERDUE_REFRESH_SECONDS = 60;
+
+    private final Library library;
+    private final HttpServer server;
+    private final ExecutorService handlerExecutor;
+    private final ScheduledExecutorService refresher;
+    private final long overdueRefreshSeconds;
+    private final Map<String, Supplier<CacheStats>> caches = new ConcurrentHashMap<>();
+    private final Map<String, LibraryTaskExecutor> pools = new ConcurrentHashMap<>();
+
+    private volatile BorrowingService.OverdueSummary overdue = new BorrowingService.OverdueSummary(0, 0.0);
+    private volatile long overdueRefreshedAtMillis;
+
+    /**
+     * Binds to {@link #DEFAULT_PORT} on the loopback interface.
+     */
+    public MetricsServer(Library library) throws IOException {
+        this(library, new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT),
+                DEFAULT_OVERDUE_REFRESH_SECONDS);
+    }
+
+    public MetricsServer(Library library, InetSocketAddress address, long overdueRefreshSeconds) throws IOException {
+        if (overdueRefreshSeconds <= 0)
+            throw new IllegalArgumentException("Overdue refresh interval must be positive");
+
+        this.library = library;
+        this.server = HttpServer.create(address, 0);
+        this.handlerExecutor = Executors.newSingleThreadExecutor(r -> daemon(r, "library-metrics-http"));
+        this.refresher = Executors.newSingleThreadScheduledExecutor(r -> daemon(r, "library-metrics-refresh"));
+        this.overdueRefreshSeconds = overdueRefreshSeconds;
+    }
+
+    public MetricsServer registerCache(String name, Supplier<CacheStats> stats) {
+        caches.put(name, stats);
+        return this;
+    }
+
+    public MetricsServer registerPool(String name, LibraryTaskExecutor executor) {
+        pools.put(name, executor);
+        return this;
+    }
+
+    /**
+     * Starts serving and refreshing the overdue figures. Call it once.
+     */
+    public MetricsServer start() {
+        server.createContext(PATH, this::handle);
+        server.setExecutor(handlerExecutor);
+        refresher.scheduleWithFixedDelay(this::refreshOverdue, 0, overdueRefreshSeconds, TimeUnit.SECONDS);
+        server.start();
+        return this;
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.getResponseHeaders().set("Allow", "GET");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", PrometheusWriter.CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        }
+    }
+
+    /**
+     * Renders the current metrics. Exposed so callers without HTTP access, such as a log line, can reuse it.
+     */
+    public String scrape() {
+        PrometheusWriter writer = new PrometheusWriter();
+        BorrowingService borrowing = library.getBorrowingService();
+
+        writer.family("library_borrow_operations_total", "counter", "Successful borrows since startup")
+                .sample("library_borrow_operations_total", library.getTotalBorrowOperations());
+        writer.family("library_borrows_by_type_total", "counter", "Successful borrows by item type");
+        for (Map.Entry<LibraryItemType, Integer> entry : library.getBorrowCountByType().entrySet())
+            writer.sample("library_borrows_by_type_total", "type", entry.getKey().name(), entry.getValue());
+
+        writer.family("library_active_loans", "gauge", "Loans that have not been returned")
+                .sample("library_active_loans", borrowing.getActiveBorrowCount());
+        BorrowingService.OverdueSummary summary = overdue;
+        writer.family("library_overdue_loans", "gauge", "Open loans past their due date")
+                .sample("library_overdue_loans", summary.overdueLoans());
+        writer.family("library_fines_outstanding", "gauge", "Fines owed and not yet paid")
+                .sample("library_fines_outstanding", summary.finesOutstanding());
+        writer.family("library_overdue_refreshed_timestamp_seconds", "gauge",
+                        "When the overdue count and fines were last computed")
+                .sample("library_overdue_refreshed_timestamp_seconds", overdueRefreshedAtMillis / 1000.0);
+
+        writeCaches(writer);
+        writePools(writer);
+        writeLocks(writer, library.getStats().getLockStats());
+
+        writer.family("library_operation_duration_seconds", "histogram", "Latency of library and DAO operations");
+        for (Map.Entry<Operation, LatencySnapshot> entry : LibraryMetrics.snapshots().entrySet())
+            writer.histogram("library_operation_duration_seconds", "operation", entry.getKey().getMetricName(),
+                    entry.getValue());
+
+        return writer.toString();
+    }
+
+    private void writeCaches(PrometheusWriter writer) {
+        if (caches.isEmpty())
+            return;
+
+        Map<String, CacheStats> stats = new TreeMap<>();
+        caches.forEach((name, supplier) -> stats.put(name, supplier.get()));
+
+        writer.family("library_cache_hits_total", "counter", "Row cache hits");
+        stats.forEach((name, cache) -> writer.sample("library_cache_hits_total", "cache", name, cache.hitCount()));
+        writer.family("library_cache_misses_total", "counter", "Row cache misses");
+        stats.forEach((name, cache) -> writer.sample("library_cache_misses_total", "cache", name, cache.missCount()));
+        writer.family("library_cache_evictions_total", "counter", "Row cache evictions");
+        stats.forEach((name, cache) -> writer.sample("library_cache_evictions_total", "cache", name,
+                cache.evictionCount()));
+        writer.family("library_cache_hit_ratio", "gauge", "Share of row cache lookups that were hits");
+        stats.forEach((name, cache) -> writer.sample("library_cache_hit_ratio", "cache", name, cache.hitRatio()));
+        writer.family("library_cache_size", "gauge", "Rows held in the cache");
+        stats.forEach((name, cache) -> writer.sample("library_cache_size", "cache", name, cache.size()));
+    }
+
+    private void writePools(PrometheusWriter writer) {
+        if (pools.isEmpty())
+            return;
+
+        Map<String, LibraryTaskExecutor.PoolStats> stats = new TreeMap<>();
+        pools.forEach((name, executor) -> stats.put(name, executor.getPoolStats()));
+
+        writer.family("library_pool_threads", "gauge", "Threads in the worker pool");
+        stats.forEach((name, pool) -> writer.sample("library_pool_threads", "pool", name, pool.poolSize()));
+        writer.family("library_pool_active_threads", "gauge", "Worker threads running a task");
+        stats.forEach((name, pool) -> writer.sample("library_pool_active_threads", "pool", name,
+                pool.activeThreads()));
+        writer.family("library_pool_queued_tasks", "gauge", "Tasks waiting for a worker thread");
+        stats.forEach((name, pool) -> writer.sample("library_pool_queued_tasks", "pool", name, pool.queuedTasks()));
+        writer.family("library_pool_completed_tasks_total", "counter", "Tasks completed by the pool");
+        stats.forEach((name, pool) -> writer.sample("library_pool_completed_tasks_total", "pool", name,
+                pool.completedTasks()));
+    }
+
+    private static void writeLocks(PrometheusWriter writer, Iterable<LockStats> locks) {
+        writer.family("library_lock_acquisitions_total", "counter", "Timed lock acquisitions");
+        locks.forEach(lock -> writer.sample("library_lock_acquisitions_total", "lock", lock.name(),
+                lock.acquisitions()));
+        writer.family("library_lock_contended_total", "counter", "Timed lock acquisitions that had to wait");
+        locks.forEach(lock -> writer.sample("library_lock_contended_total", "lock", lock.name(),
+                lock.contendedAcquisitions()));
+        writer.family("library_lock_wait_seconds", "histogram", "Time spent waiting for a lock");
+        locks.forEach(lock -> writer.histogram("library_lock_wait_seconds", "lock", lock.name(), lock.waitTime()));
+        writer.family("library_lock_hold_seconds", "histogram", "Time a lock was held");
+        locks.forEach(lock -> writer.histogram("library_lock_hold_seconds", "lock", lock.name(), lock.holdTime()));
+    }
+
+    private void refreshOverdue() {
+        try {
+            overdue = library.getBorrowingService().summarizeOverdue();
+            overdueRefreshedAtMillis = System.currentTimeMillis();
+        } catch (RuntimeException e) {
+            System.err.println("Overdue refresh failed: " + e.getMessage());
+        }
+    }
+
+    private static Thread daemon(Runnable r, String name) {
+        Thread thread = new Thread(r, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        refresher.shutdownNow();
+        handlerExecutor.shutdownNow();
+    }
+}
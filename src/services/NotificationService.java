@@ -0,0 +1,505 @@
+package services;
+
+import entities.Notification;
+import entities.NotificationBatch;
+import entities.transactions.BorrowRecord;
+import entities.transactions.Reservation;
+import enums.NotificationType;
+import interfaces.LibraryChangeListener;
+import interfaces.NotificationSink;
+import io.OutboxNotificationSink;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Tells members about overdue loans, loans coming due and holds ready for pick-up. Registered as a
+ * {@link LibraryChangeListener}, it hears about overdue loans and ready holds as the library finds them;
+ * {@link #notifyDueSoon(OverdueTracker, LocalDate)} adds the reminders for loans coming due.
+ * <p>
+ * Submitting never blocks: a notification goes into a bounded queue or, when the queue is full, is dropped and
+ * counted, so a storm of notifications cannot hold up a borrow or a return. The same notification submitted again
+ * within the dedupe window is dropped as well. A dispatcher thread drains the queue once per batching window,
+ * gathers each member's notifications into one batch, and releases batches to the sender threads no faster than
+ * the rate limit allows. A delivery that fails is retried with exponential backoff and jitter, and goes through
+ * the rate limit again; after the last attempt its notifications are counted as failed.
+ * <p>
+ * Call {@link #start()} to start the dispatcher; until then notifications are only queued.
+ */
+public class NotificationService implements LibraryChangeListener, AutoCloseable {
+    private static final long DEDUPE_PURGE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final NotificationSink sink;
+    // The default outbox is created here, so close() closes it too; a sink from the config belongs to the caller
+    private final OutboxNotificationSink ownedOutbox;
+    private final NotificationConfig config;
+    private final BlockingQueue<Notification> inbox;
+    private final Map<DedupeKey, Long> recentlySubmitted = new ConcurrentHashMap<>();
+    private final Queue<PendingBatch> retries = new ConcurrentLinkedQueue<>();
+    private final ExecutorService senders;
+    private final ScheduledExecutorService retryScheduler;
+    private volatile Thread dispatcher;
+    private final AtomicLong nextBatchId = new AtomicLong(1);
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final List<CompletableFuture<Void>> flushWaiters = new ArrayList<>();
+    private volatile boolean running = true;
+
+    private final AtomicLong submitted = new AtomicLong();
+    private final AtomicLong deduplicated = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+
+    // Owned by the dispatcher thread
+    private final Map<Integer, List<Notification>> waiting = new LinkedHashMap<>();
+    private int waitingCount;
+    private double tokens;
+    private long lastRefillNanos;
+    private long lastDedupePurgeNanos;
+
+    public NotificationService() {
+        this(new NotificationConfig.Builder().build());
+    }
+
+    public NotificationService(NotificationConfig config) {
+        this.config = config;
+        this.ownedOutbox = config.getSink() == null ? new OutboxNotificationSink(config.getOutboxDirectory()) : null;
+        this.sink = ownedOutbox != null ? ownedOutbox : config.getSink();
+        this.inbox = new ArrayBlockingQueue<>(config.getQueueCapacity());
+        this.senders = Executors.newFixedThreadPool(config.getSenderThreads(), daemonThreads("notification-sender-"));
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(daemonThreads("notification-retry-"));
+        this.tokens = burstSize();
+        this.lastRefillNanos = System.nanoTime();
+        this.lastDedupePurgeNanos = lastRefillNanos;
+    }
+
+    /**
+     * Starts the dispatcher thread. Calling it again has no effect.
+     */
+    public synchronized NotificationService start() {
+        if (dispatcher == null && running) {
+            Thread thread = new Thread(this::dispatchLoop, "notification-dispatcher");
+            thread.setDaemon(true);
+            thread.start();
+            dispatcher = thread;
+        }
+        return this;
+    }
+
+    @Override
+    public void itemOverdue(BorrowRecord record) {
+        submit(Notification.overdue(record));
+    }
+
+    @Override
+    public void holdReady(Reservation hold) {
+        submit(Notification.holdReady(hold));
+    }
+
+    /**
+     * Reminds the members whose loans fall due {@code dueSoonDays} after {@code today}. Each loan is reminded
+     * once, on that day. Returns the number of reminders accepted.
+     */
+    public int notifyDueSoon(OverdueTracker tracker, LocalDate today) {
+        int accepted = 0;
+        for (BorrowRecord record : tracker.getDueOn(today.plusDays(config.getDueSoonDays()))) {
+            if (submit(Notification.dueSoon(record)))
+                accepted++;
+        }
+        return accepted;
+    }
+
+    /**
+     * Queues a notification for delivery without waiting. Returns {@code false} if it repeats one submitted
+     * within the dedupe window, or if the queue is full or the service closed.
+     */
+    public boolean submit(Notification notification) {
+        submitted.incrementAndGet();
+        if (!running) {
+            dropped.incrementAndGet();
+            return false;
+        }
+
+        DedupeKey key = new DedupeKey(notification.type(), notification.memberId(), notification.itemId(),
+                notification.date());
+        long now = System.nanoTime();
+        Long seen = recentlySubmitted.putIfAbsent(key, now);
+        if (seen != null && (now - seen < config.getDedupeWindowNanos() || !recentlySubmitted.replace(key, seen, now))) {
+            deduplicated.incrementAndGet();
+            return false;
+        }
+
+        outstanding.incrementAndGet();
+        if (!inbox.offer(notification)) {
+            // Forget it, so the same notification can be submitted again once the queue has room
+            recentlySubmitted.remove(key, now);
+            dropped.incrementAndGet();
+            completed(1);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Completes once every notification accepted so far has been delivered or has failed for good. The
+     * dispatcher stops waiting for the current batching window, but the rate limit still applies.
+     */
+    public CompletableFuture<Void> flush() {
+        CompletableFuture<Void> flushed = new CompletableFuture<>();
+        synchronized (flushWaiters) {
+            if (outstanding.get() == 0) {
+                flushed.complete(null);
+                return flushed;
+            }
+            if (!running) {
+                flushed.completeExceptionally(new IllegalStateException("Notification service is closed"));
+                return flushed;
+            }
+            flushWaiters.add(flushed);
+        }
+        LockSupport.unpark(dispatcher);
+        return flushed;
+    }
+
+    public NotificationStats getStats() {
+        return new NotificationStats(submitted.get(), deduplicated.get(), dropped.get(), delivered.get(),
+                retried.get(), failed.get(), outstanding.get());
+    }
+
+    private void dispatchLoop() {
+        long windowNanos = config.getBatchWindowNanos();
+        while (running) {
+            try {
+                dispatchRound();
+            } catch (RuntimeException e) {
+                System.err.println("Notification dispatch failed: " + e.getMessage());
+            }
+
+            // While someone waits on a flush, come back as soon as the next token is due rather than a window later
+            boolean backlog = !inbox.isEmpty() || !waiting.isEmpty() || !retries.isEmpty();
+            LockSupport.parkNanos(this, backlog && isFlushing() ? Math.min(windowNanos, nanosPerToken()) : windowNanos);
+        }
+    }
+
+    private boolean isFlushing() {
+        synchronized (flushWaiters) {
+            return !flushWaiters.isEmpty();
+        }
+    }
+
+    private void dispatchRound() {
+        List<Notification> drained = new ArrayList<>();
+        inbox.drainTo(drained, Math.max(0, config.getQueueCapacity() - waitingCount));
+        for (Notification notification : drained)
+            waiting.computeIfAbsent(notification.memberId(), id -> new ArrayList<>()).add(notification);
+        waitingCount += drained.size();
+
+        refillTokens();
+        PendingBatch retry;
+        while (tokens >= 1 && (retry = retries.poll()) != null) {
+            tokens--;
+            send(retry);
+        }
+
+        Iterator<List<Notification>> members = waiting.values().iterator();
+        while (tokens >= 1 && members.hasNext()) {
+            List<Notification> notifications = members.next();
+            members.remove();
+            waitingCount -= notifications.size();
+            tokens--;
+
+            Notification first = notifications.get(0);
+            send(new PendingBatch(new NotificationBatch(nextBatchId.getAndIncrement(), first.memberId(),
+                    first.memberName(), first.memberEmail(), notifications, Instant.now())));
+        }
+
+        long now = System.nanoTime();
+        if (now - lastDedupePurgeNanos >= DEDUPE_PURGE_INTERVAL_NANOS) {
+            long window = config.getDedupeWindowNanos();
+            recentlySubmitted.values().removeIf(seen -> now - seen >= window);
+            lastDedupePurgeNanos = now;
+        }
+    }
+
+    private void refillTokens() {
+        long now = System.nanoTime();
+        double rate = config.getMaxBatchesPerSecond();
+        tokens = Math.min(burstSize(), tokens + (now - lastRefillNanos) * rate / TimeUnit.SECONDS.toNanos(1));
+        lastRefillNanos = now;
+    }
+
+    // Up to a second's worth of batches may go at once after a quiet spell
+    private double burstSize() {
+        return Math.max(1, config.getMaxBatchesPerSecond());
+    }
+
+    private long nanosPerToken() {
+        return (long) (TimeUnit.SECONDS.toNanos(1) / config.getMaxBatchesPerSecond());
+    }
+
+    private void send(PendingBatch pending) {
+        try {
+            senders.execute(() -> deliver(pending));
+        } catch (RejectedExecutionException e) {
+            failed.addAndGet(pending.size());
+            completed(pending.size());
+        }
+    }
+
+    private void deliver(PendingBatch pending) {
+        try {
+            sink.deliver(pending.batch);
+            delivered.addAndGet(pending.size());
+            completed(pending.size());
+        } catch (IOException | RuntimeException e) {
+            pending.attempts++;
+            if (pending.attempts >= config.getMaxAttempts() || !running) {
+                System.err.println("Notification batch " + pending.batch.id() + " for member "
+                        + pending.batch.memberId() + " failed after " + pending.attempts + " attempts: "
+                        + e.getMessage());
+                failed.addAndGet(pending.size());
+                completed(pending.size());
+                return;
+            }
+
+            retried.incrementAndGet();
+            try {
+                retryScheduler.schedule(() -> retries.add(pending), backoffNanos(pending.attempts), TimeUnit.NANOSECONDS);
+            } catch (RejectedExecutionException rejected) {
+                failed.addAndGet(pending.size());
+                completed(pending.size());
+            }
+        }
+    }
+
+    // Exponential backoff with "equal jitter": somewhere between half the backoff and all of it
+    private long backoffNanos(int attempts) {
+        long backoff = config.getInitialBackoffNanos();
+        for (int i = 1; i < attempts && backoff < config.getMaxBackoffNanos(); i++)
+            backoff *= 2;
+        backoff = Math.min(backoff, config.getMaxBackoffNanos());
+        long half = backoff / 2;
+        return half + ThreadLocalRandom.current().nextLong(half + 1);
+    }
+
+    private void completed(int notifications) {
+        if (outstanding.addAndGet(-notifications) != 0)
+            return;
+
+        List<CompletableFuture<Void>> done;
+        synchronized (flushWaiters) {
+            if (outstanding.get() != 0 || flushWaiters.isEmpty())
+                return;
+            done = new ArrayList<>(flushWaiters);
+            flushWaiters.clear();
+        }
+        done.forEach(waiter -> waiter.complete(null));
+    }
+
+    /**
+     * Stops accepting notifications and shuts the threads down. Batches already with a sender get a few seconds
+     * to finish; anything still queued is not delivered. The default outbox is closed as well.
+     */
+    @Override
+    public void close() {
+        Thread current;
+        synchronized (this) {
+            running = false;
+            current = dispatcher;
+        }
+        LockSupport.unpark(current);
+        senders.shutdown();
+        retryScheduler.shutdownNow();
+        try {
+            if (current != null)
+                current.join(TimeUnit.SECONDS.toMillis(5));
+            if (!senders.awaitTermination(5, TimeUnit.SECONDS))
+                senders.shutdownNow();
+        } catch (InterruptedException e) {
+            senders.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        if (ownedOutbox != null) {
+            try {
+                ownedOutbox.close();
+            } catch (IOException e) {
+                System.err.println("Notification outbox close failed: " + e.getMessage());
+            }
+        }
+
+        List<CompletableFuture<Void>> abandoned;
+        synchronized (flushWaiters) {
+            abandoned = new ArrayList<>(flushWaiters);
+            flushWaiters.clear();
+        }
+        abandoned.forEach(waiter ->
+                waiter.completeExceptionally(new IllegalStateException("Notification service is closed")));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadNumber = new AtomicInteger(1);
+        return r -> {
+            Thread thread = new Thread(r, prefix + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private record DedupeKey(NotificationType type, int memberId, String itemId, LocalDate date) {
+    }
+
+    private static final class PendingBatch {
+        private final NotificationBatch batch;
+        private int attempts;
+
+        private PendingBatch(NotificationBatch batch) {
+            this.batch = batch;
+        }
+
+        private int size() {
+            return batch.notifications().size();
+        }
+    }
+
+    public record NotificationStats(long submitted, long deduplicated, long dropped, long delivered, long retried,
+                                    long failed, int outstanding) {
+    }
+
+    public static class NotificationConfig {
+        private NotificationSink sink;
+        private Path outboxDirectory = Path.of("library_data", "outbox");
+        private int queueCapacity = 10_000;
+        private Duration batchWindow = Duration.ofSeconds(1);
+        private double maxBatchesPerSecond = 50;
+        private int senderThreads = 4;
+        private int maxAttempts = 5;
+        private Duration initialBackoff = Duration.ofSeconds(1);
+        private Duration maxBackoff = Duration.ofMinutes(5);
+        private Duration dedupeWindow = Duration.ofDays(1);
+        private int dueSoonDays = 2;
+
+        public NotificationSink getSink() {
+            return sink;
+        }
+
+        public Path getOutboxDirectory() {
+            return outboxDirectory;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public long getBatchWindowNanos() {
+            return batchWindow.toNanos();
+        }
+
+        public double getMaxBatchesPerSecond() {
+            return maxBatchesPerSecond;
+        }
+
+        public int getSenderThreads() {
+            return senderThreads;
+        }
+
+        public int getMaxAttempts() {
+            return maxAttempts;
+        }
+
+        public long getInitialBackoffNanos() {
+            return initialBackoff.toNanos();
+        }
+
+        public long getMaxBackoffNanos() {
+            return maxBackoff.toNanos();
+        }
+
+        public long getDedupeWindowNanos() {
+            return dedupeWindow.toNanos();
+        }
+
+        public int getDueSoonDays() {
+            return dueSoonDays;
+        }
+
+        public static class Builder {
+            private final NotificationConfig config = new NotificationConfig();
+
+            /**
+             * Where batches are delivered. Without one they go to a file outbox in {@link #outboxDirectory(Path)}.
+             */
+            public Builder sink(NotificationSink sink) {
+                config.sink = sink;
+                return this;
+            }
+
+            public Builder outboxDirectory(Path directory) {
+                config.outboxDirectory = directory;
+                return this;
+            }
+
+            public Builder queueCapacity(int capacity) {
+                config.queueCapacity = capacity;
+                return this;
+            }
+
+            public Builder batchWindow(Duration window) {
+                config.batchWindow = window;
+                return this;
+            }
+
+            public Builder maxBatchesPerSecond(double rate) {
+                config.maxBatchesPerSecond = rate;
+                return this;
+            }
+
+            public Builder senderThreads(int threads) {
+                config.senderThreads = threads;
+                return this;
+            }
+
+            public Builder maxAttempts(int attempts) {
+                config.maxAttempts = attempts;
+                return this;
+            }
+
+            public Builder initialBackoff(Duration backoff) {
+                config.initialBackoff = backoff;
+                return this;
+            }
+
+            public Builder maxBackoff(Duration backoff) {
+                config.maxBackoff = backoff;
+                return this;
+            }
+
+            public Builder dedupeWindow(Duration window) {
+                config.dedupeWindow = window;
+                return this;
+            }
+
+            public Builder dueSoonDays(int days) {
+                config.dueSoonDays = days;
+                return this;
+            }
+
+            public NotificationConfig build() {
+                if (config.queueCapacity <= 0 || config.senderThreads <= 0 || config.maxAttempts <= 0)
+                    throw new IllegalArgumentException("Queue capacity, sender threads and attempts must be positive");
+                if (config.maxBatchesPerSecond <= 0)
+                    throw new IllegalArgumentException("Rate limit must be positive");
+                return config;
+            }
+        }
+    }
+}
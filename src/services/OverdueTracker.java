@@ -0,0 +1,130 @@
+package services;
+
+import entities.transactions.BorrowRecord;
+
+import java.time.LocalDate;
+import java.util.*;
+
+/**
+ * Finds the loans that have become overdue since the last check without looking at the others. Open loans are
+ * filed in buckets by due date; {@link #advanceTo(LocalDate)} empties the buckets whose day has passed, marks
+ * their loans overdue and returns them, so a daily check costs time in proportion to the loans that fell due
+ * that day. The fines the overdue loans accrue are booked by the {@link FineLedger}.
+ */
+public class OverdueTracker {
+    // Days are counted from this one
+    private final long baseDay;
+
+    private final NavigableMap<Long, Set<BorrowRecord>> dueBuckets = new TreeMap<>();
+    private final Map<BorrowRecord, Long> dueDays = new IdentityHashMap<>();
+    private final Set<BorrowRecord> overdue = Collections.newSetFromMap(new IdentityHashMap<>());
+    private long checkedDay;
+
+    public OverdueTracker(LocalDate today) {
+        this.baseDay = today.toEpochDay();
+        this.checkedDay = 0;
+    }
+
+    /**
+     * Starts watching an open loan. A loan that is already past due is reported by the next
+     * {@link #advanceTo(LocalDate)}.
+     */
+    public synchronized void track(BorrowRecord record) {
+        long dueDay = day(record.getDueDate());
+        dueDays.put(record, dueDay);
+        dueBuckets.computeIfAbsent(dueDay, day -> Collections.newSetFromMap(new IdentityHashMap<>())).add(record);
+    }
+
+    public synchronized void trackAll(Collection<BorrowRecord> records) {
+        for (BorrowRecord record : records)
+            track(record);
+    }
+
+    /**
+     * Stops watching a loan, because it was returned or is about to be given a new due date.
+     */
+    public synchronized void untrack(BorrowRecord record) {
+        Long dueDay = dueDays.remove(record);
+        if (dueDay == null)
+            return;
+
+        if (overdue.remove(record))
+            return;
+
+        Set<BorrowRecord> bucket = dueBuckets.get(dueDay);
+        if (bucket != null && bucket.remove(record) && bucket.isEmpty())
+            dueBuckets.remove(dueDay);
+    }
+
+    /**
+     * Files a renewed loan under its new due date. A loan renewed past the last check stops being overdue; one
+     * that is still overdue stays marked and is not reported again.
+     */
+    public synchronized void reschedule(BorrowRecord record) {
+        if (!dueDays.containsKey(record))
+            return;
+        untrack(record);
+
+        long dueDay = day(record.getDueDate());
+        if (record.isMarkedOverdue() && dueDay < checkedDay) {
+            dueDays.put(record, dueDay);
+            markOverdue(record);
+        } else {
+            record.setMarkedOverdue(false);
+            track(record);
+        }
+    }
+
+    /**
+     * Marks every loan due before {@code today} that was not yet overdue and returns them, earliest due first.
+     */
+    public synchronized List<BorrowRecord> advanceTo(LocalDate today) {
+        long day = day(today);
+        if (day > checkedDay)
+            checkedDay = day;
+
+        List<BorrowRecord> newlyOverdue = new ArrayList<>();
+        Map.Entry<Long, Set<BorrowRecord>> bucket;
+        while ((bucket = dueBuckets.firstEntry()) != null && bucket.getKey() < checkedDay) {
+            dueBuckets.pollFirstEntry();
+            for (BorrowRecord record : bucket.getValue()) {
+                markOverdue(record);
+                newlyOverdue.add(record);
+            }
+        }
+        return newlyOverdue;
+    }
+
+    private void markOverdue(BorrowRecord record) {
+        overdue.add(record);
+        record.setMarkedOverdue(true);
+    }
+
+    /**
+     * The open loans due on {@code date} that are not overdue yet; a single bucket lookup.
+     */
+    public synchronized List<BorrowRecord> getDueOn(LocalDate date) {
+        Set<BorrowRecord> bucket = dueBuckets.get(day(date));
+        return bucket != null ? new ArrayList<>(bucket) : new ArrayList<>();
+    }
+
+    public synchronized int getOverdueCount() {
+        return overdue.size();
+    }
+
+    public synchronized List<BorrowRecord> getOverdueRecords() {
+        return new ArrayList<>(overdue);
+    }
+
+    public synchronized LocalDate getCheckedDate() {
+        return LocalDate.ofEpochDay(baseDay + checkedDay);
+    }
+
+    public synchronized int getTrackedCount() {
+        return dueDays.size();
+    }
+
+    private long day(LocalDate date) {
+        return date.toEpochDay() - baseDay;
+    }
+}
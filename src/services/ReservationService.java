@@ -1,11 +1,495 @@
 package services;
 
 import entities.items.Book;
+import entities.items.LibraryItem;
 import entities.people.Member;
+import entities.transactions.BorrowRecord;
 import entities.transactions.Reservation;
+import enums.ItemStatus;
+import enums.LibraryItemType;
+import enums.MemberStatus;
+import enums.ReservationStatus;
+import exceptions.ReservationException;
+import interfaces.ReservationPolicy;
+import io.HoldJournal;
+import metrics.LibraryMetrics;
+import metrics.Operation;
+import util.TimingWheel;
+import util.LibraryClock;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+
+/**
+ * Keeps a first-come, first-served hold queue for every item that implements {@link ReservationPolicy}. When a
+ * reserved item is returned it goes straight to the first member still waiting, who then has
+ * {@link ReservationPolicy#getMaxReservationDays()} days to borrow it before the hold expires and passes on.
+ * A member may have at most {@link ReservationPolicy#getMaxSimultaneousReservations()} waiting or ready
+ * reservations of each item type.
+ * <p>
+ * Reserving and cancelling take no lock: each queue is a lock-free linked queue, each member's count per item
+ * type is a compare-and-set counter, and a cancelled reservation is only marked and left for the next hand-off
+ * or purge to unlink. Moving the item itself, from a return or an expired hold to the next member, happens
+ * under the borrow lock of the {@link BorrowingService}, so a borrower can never take an item that is being
+ * handed to someone in the queue.
+ * <p>
+ * Ready holds sit in a {@link TimingWheel} keyed by the end of their last pick-up day, so
+ * {@link #expireHolds(LocalDate)} only touches the holds that are actually due. With
+ * {@link #openJournal(Path, Function, IntFunction)} every hold handed out or released is also written to a
+ * {@link HoldJournal}, and the pending holds are restored from it on the next start. The lines are queued while
+ * the borrow lock is held and written once it is released, so no borrower waits on the file. Members still
+ * waiting in a queue are not journaled.
+ */
 public class ReservationService {
-    public Reservation reserveBook(Book book, Member member) {
-        throw new UnsupportedOperationException("Not supported yet.");
+    // Cancelled reservations a queue may hold before it is purged, in addition to the waiting ones
+    private static final int PURGE_SLACK = 64;
+    // Holds end at midnight, so a one-minute tick is finer than any deadline needs
+    private static final long EXPIRY_TICK_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    private final BorrowingService borrowingService;
+    private final Map<String, HoldQueue> queues = new ConcurrentHashMap<>();
+    private final Map<String, Reservation> holds = new ConcurrentHashMap<>();
+    private final Map<Integer, AtomicIntegerArray> reservationCounts = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final TimingWheel<Reservation> expiryWheel =
+            new TimingWheel<>(EXPIRY_TICK_MILLIS, LibraryClock.current().millis());
+    private final Map<Long, TimingWheel.Timeout<Reservation>> expiryTimeouts = new HashMap<>();
+    private volatile HoldJournal journal;
+    // Journal writes queued under the borrow lock, in lock order, for flushJournal to make once it is released
+    private final Queue<JournalWrite> journalWrites = new ConcurrentLinkedQueue<>();
+    private final List<Consumer<Reservation>> holdListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<LibraryItem>> itemListeners = new CopyOnWriteArrayList<>();
+
+    private ReservationService(BorrowingService borrowingService) {
+        this.borrowingService = borrowingService;
+    }
+
+    /**
+     * Creates the reservation service for {@code borrowingService} and attaches it, so borrows and returns
+     * go through the hold queues.
+     */
+    public static ReservationService attachTo(BorrowingService borrowingService) {
+        ReservationService service = new ReservationService(borrowingService);
+        borrowingService.setReservationService(service);
+        return service;
+    }
+
+    /**
+     * Registers a callback for every hold that becomes ready for pick-up. It runs under the borrow lock, so it
+     * must hand the hold off rather than do slow work itself.
+     */
+    public void addHoldListener(Consumer<Reservation> listener) {
+        holdListeners.add(Objects.requireNonNull(listener, "Listener cannot be null"));
+    }
+
+    public void removeHoldListener(Consumer<Reservation> listener) {
+        holdListeners.remove(listener);
+    }
+
+    /**
+     * Registers a listener told whenever a hold changes an item's availability. Listeners run under the borrow
+     * lock, so they must not block.
+     */
+    public void addItemListener(Consumer<LibraryItem> listener) {
+        itemListeners.add(Objects.requireNonNull(listener, "Listener cannot be null"));
+    }
+
+    public void removeItemListener(Consumer<LibraryItem> listener) {
+        itemListeners.remove(listener);
+    }
+
+    public Reservation reserveBook(Book book, Member member) throws ReservationException {
+        return reserve(book, member);
+    }
+
+    /**
+     * Puts {@code member} at the back of the item's hold queue. If the item is on the shelf the reservation is
+     * ready straight away and the item is held for the member.
+     */
+    public Reservation reserve(LibraryItem item, Member member) throws ReservationException {
+        long start = LibraryMetrics.start();
+        try {
+            if (item == null || member == null)
+                throw new ReservationException("Item and member are required");
+            if (!(item instanceof ReservationPolicy policy))
+                throw new ReservationException("Item cannot be reserved: " + item.getId());
+            if (member.getStatus() != MemberStatus.ACTIVE)
+                throw new ReservationException("Member " + member.getId() + " is not active");
+
+            HoldQueue queue = queues.computeIfAbsent(item.getId(), id -> new HoldQueue());
+            Reservation reservation = new Reservation(nextId.getAndIncrement(), item, member, LibraryClock.today());
+            if (queue.byMember.putIfAbsent(member.getId(), reservation) != null)
+                throw new ReservationException("Member " + member.getId() + " has already reserved " + item.getId());
+
+            if (!acquireSlot(member, item.getItemType(), policy.getMaxSimultaneousReservations())) {
+                queue.byMember.remove(member.getId(), reservation);
+                throw new ReservationException("Member " + member.getId() + " already has "
+                        + policy.getMaxSimultaneousReservations() + " " + item.getItemType() + " reservations");
+            }
+
+            queue.waiting.offer(reservation);
+            queue.waitingCount.incrementAndGet();
+
+            // A return that finished before the offer left the item on the shelf without seeing this reservation
+            if (item.getAvailable()) {
+                borrowingService.runWithBorrowLock("reserve", () -> {
+                    if (item.getAvailable())
+                        handOff(item);
+                });
+            }
+            return reservation;
+        } finally {
+            LibraryMetrics.record(Operation.RESERVE, start);
+        }
+    }
+
+    /**
+     * Withdraws a reservation. A waiting reservation is only marked as cancelled; a ready one releases the item
+     * to the next member in the queue. Returns {@code false} if the reservation was no longer active.
+     */
+    public boolean cancel(Reservation reservation) {
+        if (reservation.compareAndSetStatus(ReservationStatus.WAITING, ReservationStatus.CANCELLED)) {
+            HoldQueue queue = queues.get(reservation.getItem().getId());
+            queue.waitingCount.decrementAndGet();
+            release(reservation, queue);
+            if (queue.cancelledCount.incrementAndGet() > queue.waitingCount.get() + PURGE_SLACK)
+                queue.purge();
+            return true;
+        }
+
+        if (reservation.getStatus() != ReservationStatus.READY)
+            return false;
+
+        AtomicBoolean cancelled = new AtomicBoolean();
+        borrowingService.runWithBorrowLock("cancelReservation", () -> {
+            if (reservation.compareAndSetStatus(ReservationStatus.READY, ReservationStatus.CANCELLED)) {
+                releaseHold(reservation);
+                handOff(reservation.getItem());
+                cancelled.set(true);
+            }
+        });
+        return cancelled.get();
+    }
+
+    public boolean cancel(LibraryItem item, Member member) {
+        HoldQueue queue = queues.get(item.getId());
+        Reservation reservation = queue != null ? queue.byMember.get(member.getId()) : null;
+        return reservation != null && cancel(reservation);
+    }
+
+    /**
+     * Expires the holds whose pick-up window ended before {@code today} and passes each item on to the next
+     * member waiting for it. Returns the number of holds expired.
+     */
+    public int expireHolds(LocalDate today) {
+        return expireHolds(startOfDay(today));
+    }
+
+    public int expireHolds() {
+        return expireHolds(LibraryClock.current().millis());
+    }
+
+    private int expireHolds(long nowMillis) {
+        AtomicInteger count = new AtomicInteger();
+        borrowingService.runWithBorrowLock("expireHolds", () -> {
+            List<Reservation> due = new ArrayList<>();
+            synchronized (expiryWheel) {
+                expiryWheel.advanceTo(nowMillis, due::add);
+            }
+            for (Reservation hold : due) {
+                if (hold.compareAndSetStatus(ReservationStatus.READY, ReservationStatus.EXPIRED)) {
+                    releaseHold(hold);
+                    handOff(hold.getItem());
+                    count.incrementAndGet();
+                }
+            }
+        });
+        return count.get();
+    }
+
+    /**
+     * Restores the holds that {@code file} lists as pending and journals every later hold there. A hold is
+     * dropped if its item or member no longer exists or the item is on loan; an item whose hold is dropped goes
+     * back on the shelf. Holds whose pick-up
+     * window ended while the library was down expire on the next {@link #expireHolds()}. Returns the number of
+     * holds restored.
+     */
+    public int openJournal(Path file, Function<String, Optional<LibraryItem>> items,
+                           IntFunction<Optional<Member>> members) throws IOException {
+        HoldJournal opened = new HoldJournal(file);
+        List<Long> dropped = new ArrayList<>();
+        AtomicInteger restored = new AtomicInteger();
+        borrowingService.runWithBorrowLock("openJournal", () -> {
+            // The persisted available flag is false for a held item, so an open loan is what keeps it off the shelf
+            Set<String> onLoan = new HashSet<>();
+            for (BorrowRecord record : borrowingService.getActiveBorrows())
+                onLoan.add(record.getItem().getId());
+
+            for (HoldJournal.HoldEntry entry : opened.getPendingHolds()) {
+                nextId.accumulateAndGet(entry.reservationId() + 1, Math::max);
+                Optional<LibraryItem> item = items.apply(entry.itemId());
+                Optional<Member> member = members.apply(entry.memberId());
+                if (item.isPresent() && member.isPresent()
+                        && restoreHold(entry, item.get(), member.get(), onLoan.contains(entry.itemId()))) {
+                    restored.incrementAndGet();
+                } else {
+                    dropped.add(entry.reservationId());
+                    item.filter(i -> !i.getAvailable() && !onLoan.contains(i.getId()) && !holds.containsKey(i.getId()))
+                            .ifPresent(this::handOff);
+                }
+            }
+        });
+        for (long reservationId : dropped)
+            opened.recordRelease(reservationId);
+
+        closeJournal();
+        journal = opened;
+        return restored.get();
+    }
+
+    public void closeJournal() throws IOException {
+        flushJournal();
+        HoldJournal current = journal;
+        journal = null;
+        if (current != null)
+            current.close();
+    }
+
+    private boolean restoreHold(HoldJournal.HoldEntry entry, LibraryItem item, Member member, boolean onLoan) {
+        if (!(item instanceof ReservationPolicy) || onLoan || holds.containsKey(item.getId()))
+            return false;
+
+        Reservation hold = new Reservation(entry.reservationId(), item, member, entry.reserveDate());
+        hold.compareAndSetStatus(ReservationStatus.WAITING, ReservationStatus.READY);
+        hold.setExpiryDate(entry.expiryDate());
+        queues.computeIfAbsent(item.getId(), id -> new HoldQueue()).byMember.put(member.getId(), hold);
+        countsFor(member).incrementAndGet(item.getItemType().ordinal());
+        holds.put(item.getId(), hold);
+        item.setAvailable(false);
+        item.setStatus(ItemStatus.RESERVED);
+        scheduleExpiry(hold);
+        notifyItemUpdated(item);
+        return true;
+    }
+
+    public Optional<Reservation> getHold(LibraryItem item) {
+        return Optional.ofNullable(holds.get(item.getId()));
+    }
+
+    public Optional<Reservation> getReservation(LibraryItem item, Member member) {
+        HoldQueue queue = queues.get(item.getId());
+        return Optional.ofNullable(queue != null ? queue.byMember.get(member.getId()) : null);
+    }
+
+    /**
+     * Number of members still waiting for the item, not counting the one it is held for.
+     */
+    public int getQueueLength(LibraryItem item) {
+        HoldQueue queue = queues.get(item.getId());
+        return queue != null ? Math.max(0, queue.waitingCount.get()) : 0;
+    }
+
+    public int getActiveReservationCount(Member member, LibraryItemType type) {
+        AtomicIntegerArray counts = reservationCounts.get(member.getId());
+        return counts != null ? counts.get(type.ordinal()) : 0;
+    }
+
+    boolean hasWaiters(LibraryItem item) {
+        return getQueueLength(item) > 0;
+    }
+
+    boolean isHeldFor(LibraryItem item, Member member) {
+        Reservation hold = holds.get(item.getId());
+        return hold != null && hold.getMember().getId() == member.getId();
+    }
+
+    /**
+     * Decides whether {@code member} may borrow {@code item} now, fulfilling the member's hold if there is one.
+     * An item on the shelf with members waiting is first handed to the head of the queue. Must be called with
+     * the borrow lock held.
+     */
+    boolean claimForBorrow(LibraryItem item, Member member) {
+        if (item.getStatus() == ItemStatus.RESERVED)
+            return fulfil(holds.get(item.getId()), member);
+        if (!item.getAvailable())
+            return false;
+        if (!hasWaiters(item))
+            return true;
+
+        Reservation hold = handOff(item);
+        return hold == null || fulfil(hold, member);
+    }
+
+    /**
+     * Gives the item to the first member still waiting for it, or puts it back on the shelf if nobody is.
+     * Must be called with the borrow lock held and the item not on loan.
+     */
+    Reservation handOff(LibraryItem item) {
+        HoldQueue queue = queues.get(item.getId());
+        Reservation next;
+        while (queue != null && (next = queue.waiting.poll()) != null) {
+            if (next.compareAndSetStatus(ReservationStatus.WAITING, ReservationStatus.READY)) {
+                queue.waitingCount.decrementAndGet();
+                int days = ((ReservationPolicy) item).getMaxReservationDays();
+                next.setExpiryDate(LibraryClock.today().plusDays(days));
+                holds.put(item.getId(), next);
+                item.setAvailable(false);
+                item.setStatus(ItemStatus.RESERVED);
+                scheduleExpiry(next);
+                journalHold(next);
+                notifyItemUpdated(item);
+                notifyHoldReady(next);
+                return next;
+            }
+            queue.cancelledCount.decrementAndGet();
+        }
+
+        item.setStatus(ItemStatus.AVAILABLE);
+        item.setAvailable(true);
+        notifyItemUpdated(item);
+        return null;
+    }
+
+    private boolean fulfil(Reservation hold, Member member) {
+        if (hold == null || hold.getMember().getId() != member.getId()
+                || !hold.compareAndSetStatus(ReservationStatus.READY, ReservationStatus.FULFILLED))
+            return false;
+
+        releaseHold(hold);
+        return true;
+    }
+
+    private boolean acquireSlot(Member member, LibraryItemType type, int max) {
+        AtomicIntegerArray counts = countsFor(member);
+        int slot = type.ordinal();
+        while (true) {
+            int current = counts.get(slot);
+            if (current >= max)
+                return false;
+            if (counts.compareAndSet(slot, current, current + 1))
+                return true;
+        }
+    }
+
+    private AtomicIntegerArray countsFor(Member member) {
+        return reservationCounts.computeIfAbsent(member.getId(),
+                id -> new AtomicIntegerArray(LibraryItemType.values().length));
+    }
+
+    private void releaseHold(Reservation hold) {
+        holds.remove(hold.getItem().getId(), hold);
+        release(hold, queues.get(hold.getItem().getId()));
+
+        synchronized (expiryWheel) {
+            TimingWheel.Timeout<Reservation> timeout = expiryTimeouts.remove(hold.getId());
+            if (timeout != null)
+                expiryWheel.cancel(timeout);
+        }
+        HoldJournal current = journal;
+        if (current != null)
+            journalWrites.offer(() -> current.recordRelease(hold.getId()));
+    }
+
+    // A hold lasts through its expiry date and is due at the start of the day after
+    private void scheduleExpiry(Reservation hold) {
+        long deadline = startOfDay(hold.getExpiryDate().plusDays(1));
+        synchronized (expiryWheel) {
+            expiryTimeouts.put(hold.getId(), expiryWheel.schedule(hold, deadline));
+        }
+    }
+
+    private void notifyHoldReady(Reservation hold) {
+        for (Consumer<Reservation> listener : holdListeners) {
+            try {
+                listener.accept(hold);
+            } catch (RuntimeException e) {
+                System.err.println("Hold listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void notifyItemUpdated(LibraryItem item) {
+        for (Consumer<LibraryItem> listener : itemListeners) {
+            try {
+                listener.accept(item);
+            } catch (RuntimeException e) {
+                System.err.println("Item listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private void journalHold(Reservation hold) {
+        HoldJournal current = journal;
+        if (current == null)
+            return;
+        HoldJournal.HoldEntry entry = new HoldJournal.HoldEntry(hold.getId(), hold.getItem().getId(),
+                hold.getMember().getId(), hold.getReserveDate(), hold.getExpiryDate());
+        journalWrites.offer(() -> current.recordHold(entry));
+    }
+
+    /**
+     * Writes the journal lines queued under the borrow lock. Called by the borrowing service after it releases
+     * the lock. One caller drains at a time, so a release is never written before its hold.
+     */
+    void flushJournal() {
+        if (journalWrites.isEmpty())
+            return;
+        synchronized (journalWrites) {
+            for (JournalWrite write; (write = journalWrites.poll()) != null; ) {
+                try {
+                    write.run();
+                } catch (IOException e) {
+                    System.err.println("Hold journal write failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private static long startOfDay(LocalDate date) {
+        return LibraryClock.current().startOfDayMillis(date);
+    }
+
+    private void release(Reservation reservation, HoldQueue queue) {
+        queue.byMember.remove(reservation.getMember().getId(), reservation);
+        reservationCounts.get(reservation.getMember().getId())
+                .decrementAndGet(reservation.getItem().getItemType().ordinal());
+    }
+
+    @FunctionalInterface
+    private interface JournalWrite {
+        void run() throws IOException;
+    }
+
+    private static final class HoldQueue {
+        private final ConcurrentLinkedQueue<Reservation> waiting = new ConcurrentLinkedQueue<>();
+        private final Map<Integer, Reservation> byMember = new ConcurrentHashMap<>();
+        private final AtomicInteger waitingCount = new AtomicInteger();
+        // Cancelled reservations still linked into the queue; approximate while a purge runs
+        private final AtomicInteger cancelledCount = new AtomicInteger();
+        private final AtomicBoolean purging = new AtomicBoolean();
+
+        private void purge() {
+            if (!purging.compareAndSet(false, true))
+                return;
+            try {
+                cancelledCount.set(0);
+                waiting.removeIf(reservation -> reservation.getStatus() != ReservationStatus.WAITING);
+            } finally {
+                purging.set(false);
+            }
+        }
     }
 }
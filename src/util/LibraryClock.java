@@ -0,0 +1,110 @@
+package util;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Objects;
+
+/**
+ * The library's notion of today. {@link LocalDate#now()} reads the clock and resolves the time zone's rules on
+ * every call, which shows up in loops that check due dates. This clock remembers the current day and the instant
+ * of the next midnight in its zone, so as long as that instant has not passed, today's date costs one read of
+ * the underlying clock's millis and a comparison.
+ * <p>
+ * Date logic throughout the library asks {@link #current()}, which is the system clock in the default zone
+ * unless another one has been {@linkplain #install(LibraryClock) installed}. Tests, benchmarks and simulations
+ * install a {@linkplain #fixed(LocalDate) fixed} clock, or any {@link Clock}, to run with deterministic time.
+ */
+public final class LibraryClock {
+    private static volatile LibraryClock current = new LibraryClock(Clock.systemDefaultZone());
+
+    private final Clock clock;
+    private volatile Day day;
+
+    public LibraryClock(Clock clock) {
+        this.clock = Objects.requireNonNull(clock, "Clock cannot be null");
+        this.day = dayAt(clock.millis());
+    }
+
+    public static LibraryClock system(ZoneId zone) {
+        return new LibraryClock(Clock.system(zone));
+    }
+
+    /**
+     * A clock stopped at the start of {@code date} in UTC.
+     */
+    public static LibraryClock fixed(LocalDate date) {
+        return new LibraryClock(Clock.fixed(date.atStartOfDay(ZoneOffset.UTC).toInstant(), ZoneOffset.UTC));
+    }
+
+    public static LibraryClock current() {
+        return current;
+    }
+
+    /**
+     * Makes {@code clock} the one the library reads from now on. Dates already recorded are left as they are.
+     */
+    public static void install(LibraryClock clock) {
+        current = Objects.requireNonNull(clock, "Clock cannot be null");
+    }
+
+    /**
+     * Today's date on the installed clock.
+     */
+    public static LocalDate today() {
+        return current.date();
+    }
+
+    public LocalDate date() {
+        return day().date();
+    }
+
+    public long epochDay() {
+        return day().epochDay();
+    }
+
+    public long millis() {
+        return clock.millis();
+    }
+
+    public Instant instant() {
+        return clock.instant();
+    }
+
+    public ZoneId getZone() {
+        return clock.getZone();
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * Milliseconds since the epoch at the start of {@code date} in this clock's zone.
+     */
+    public long startOfDayMillis(LocalDate date) {
+        return date.atStartOfDay(clock.getZone()).toInstant().toEpochMilli();
+    }
+
+    // The cached day is still valid inside [startMillis, nextMidnightMillis); a clock set back recomputes too
+    private Day day() {
+        Day cached = day;
+        long now = clock.millis();
+        if (now >= cached.startMillis() && now < cached.nextMidnightMillis())
+            return cached;
+
+        Day next = dayAt(now);
+        day = next;
+        return next;
+    }
+
+    private Day dayAt(long millis) {
+        LocalDate date = Instant.ofEpochMilli(millis).atZone(clock.getZone()).toLocalDate();
+        return new Day(date, date.toEpochDay(), startOfDayMillis(date), startOfDayMillis(date.plusDays(1)));
+    }
+
+    private record Day(LocalDate date, long epochDay, long startMillis, long nextMidnightMillis) {
+    }
+}
@@ -0,0 +1,175 @@
+package util;
+
+import metrics.ObjectSizeEstimator;
+import metrics.StructureFootprint;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool of shared instances of equal strings. Item metadata such as authors, publishers, directors, studios,
+ * subjects and narrators takes few distinct values across a large catalog, yet every item built or loaded holds
+ * a copy of its own; passing each value through {@link #intern(String)} keeps one instance per distinct value and
+ * lets the copies be collected.
+ * <p>
+ * The pool only holds its strings weakly, so a value no item uses any more is collected as usual and its entry
+ * is dropped on a later call. Unlike {@link String#intern()}, the pool lives on the ordinary heap and can report
+ * what it saved. Lookups take no lock.
+ */
+public final class StringPool {
+    private static final StringPool SHARED = new StringPool();
+
+    // Keyed by Entry for the values pooled; looked up with a Probe, which compares equal to the entry of its value
+    private final Map<Object, Entry> entries = new ConcurrentHashMap<>();
+    private final ReferenceQueue<String> cleared = new ReferenceQueue<>();
+    private final ObjectSizeEstimator estimator = ObjectSizeEstimator.getDefault();
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder pooledBytes = new LongAdder();
+
+    /**
+     * The pool item constructors, setters and loaders share.
+     */
+    public static StringPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the pooled string equal to {@code value}, pooling {@code value} itself if there is none yet.
+     * {@code null} is returned as is.
+     */
+    public String intern(String value) {
+        if (value == null)
+            return null;
+
+        expungeCleared();
+        lookups.increment();
+        Probe probe = new Probe(value);
+        while (true) {
+            Entry entry = entries.get(probe);
+            if (entry != null) {
+                String pooled = entry.get();
+                if (pooled != null) {
+                    hits.increment();
+                    if (pooled != value)
+                        bytesSaved.add(entry.bytes);
+                    return pooled;
+                }
+                // Collected but not yet queued; make room for the new value
+                discard(entry);
+                continue;
+            }
+
+            Entry created = new Entry(value, probe.hash, estimator.stringSize(value), cleared);
+            if (entries.putIfAbsent(created, created) == null) {
+                pooledBytes.add(created.bytes);
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Whether {@code object} is the very instance the pool holds for its value.
+     */
+    public boolean isPooled(Object object) {
+        if (!(object instanceof String value))
+            return false;
+        Entry entry = entries.get(new Probe(value));
+        return entry != null && entry.get() == value;
+    }
+
+    /**
+     * Number of distinct values pooled, including any collected since the last call that have not been dropped.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    public PoolStats getStats() {
+        return new PoolStats(lookups.sum(), hits.sum(), bytesSaved.sum(), entries.size(), pooledBytes.sum());
+    }
+
+    /**
+     * Estimates the heap use of the pool's table and entries, and of the pooled strings, which items sharing
+     * them do not count.
+     */
+    public StructureFootprint estimateFootprint(String name, ObjectSizeEstimator estimator) {
+        expungeCleared();
+        int size = entries.size();
+        long tables = estimator.hashMapOverhead(entries, size, false) + size * estimator.shallowSize(Entry.class);
+        return new StructureFootprint(name, size, tables, pooledBytes.sum(), size);
+    }
+
+    private void expungeCleared() {
+        for (Object reference; (reference = cleared.poll()) != null; )
+            discard((Entry) reference);
+    }
+
+    private void discard(Entry entry) {
+        if (entries.remove(entry, entry))
+            pooledBytes.add(-entry.bytes);
+    }
+
+    /**
+     * Counts since the pool was created. {@code hits} are lookups answered with a value already pooled, and
+     * {@code bytesSaved} is the size of the duplicate strings those answers replaced.
+     */
+    public record PoolStats(long lookups, long hits, long bytesSaved, int pooled, long pooledBytes) {
+        public double hitRate() {
+            return lookups == 0 ? 0.0 : (double) hits / lookups;
+        }
+    }
+
+    private static final class Entry extends WeakReference<String> {
+        private final int hash;
+        private final long bytes;
+
+        private Entry(String value, int hash, long bytes, ReferenceQueue<String> queue) {
+            super(value, queue);
+            this.hash = hash;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        // A collected entry is only equal to itself
+        @Override
+        public boolean equals(Object other) {
+            if (this == other)
+                return true;
+            String value = get();
+            if (value == null)
+                return false;
+            if (other instanceof Probe probe)
+                return value.equals(probe.value);
+            return other instanceof Entry entry && hash == entry.hash && value.equals(entry.get());
+        }
+    }
+
+    private static final class Probe {
+        private final String value;
+        private final int hash;
+
+        private Probe(String value) {
+            this.value = value;
+            this.hash = value.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Entry entry && value.equals(entry.get());
+        }
+    }
+}
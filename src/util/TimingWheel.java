@@ -0,0 +1,203 @@
+package util;
+
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel: a set of deadlines that can be added and removed in constant time and fire in
+ * deadline order as {@link #advanceTo(long, Consumer)} moves the clock forward. Time is cut into ticks of
+ * {@code tickMillis}. The lowest of {@value #LEVELS} levels has one slot per tick for the next
+ * {@value #SLOTS} ticks; each higher level has slots {@value #SLOTS} times as wide, and its entries move down a
+ * level when the clock reaches their slot. An entry moves down at most once per level, so each deadline costs
+ * constant time from scheduling to expiry however many others are pending. Deadlines are rounded up to the
+ * next tick, and ones past the wheel's range of {@code SLOTS^LEVELS} ticks fire at its end.
+ * <p>
+ * The wheel is not thread-safe; callers that share one must guard it with a lock.
+ */
+public final class TimingWheel<T> {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 6;
+    private static final long MAX_DELTA = (1L << (SLOT_BITS * LEVELS)) - 1;
+
+    private final long tickMillis;
+    private final Timeout<T>[][] slots;
+    private final int[] levelSizes = new int[LEVELS];
+    private long currentTick;
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMillis, long startMillis) {
+        if (tickMillis <= 0)
+            throw new IllegalArgumentException("Tick must be positive");
+
+        this.tickMillis = tickMillis;
+        this.currentTick = Math.floorDiv(startMillis, tickMillis);
+        this.slots = (Timeout<T>[][]) new Timeout<?>[LEVELS][SLOTS];
+        for (Timeout<T>[] level : slots) {
+            for (int i = 0; i < SLOTS; i++)
+                level[i] = Timeout.sentinel();
+        }
+    }
+
+    /**
+     * Adds {@code payload} to fire once the clock reaches {@code deadlineMillis}. A deadline that has already
+     * passed fires on the next advance.
+     */
+    public Timeout<T> schedule(T payload, long deadlineMillis) {
+        Timeout<T> timeout = new Timeout<>(payload, deadlineMillis, Math.floorDiv(deadlineMillis - 1, tickMillis) + 1);
+        place(timeout, currentTick + 1);
+        return timeout;
+    }
+
+    /**
+     * Removes a timeout that has not fired yet. Returns {@code false} if it already fired or was cancelled.
+     */
+    public boolean cancel(Timeout<T> timeout) {
+        if (!timeout.isPending())
+            return false;
+        unlink(timeout);
+        return true;
+    }
+
+    /**
+     * Moves the clock to {@code nowMillis} and hands every payload whose deadline has been reached to
+     * {@code expired}, earliest tick first. Returns the number fired. {@code expired} must not schedule or cancel
+     * on this wheel.
+     */
+    public int advanceTo(long nowMillis, Consumer<? super T> expired) {
+        long targetTick = Math.floorDiv(nowMillis, tickMillis);
+        int fired = 0;
+        while (currentTick < targetTick) {
+            if (size == 0) {
+                currentTick = targetTick;
+                break;
+            }
+
+            // Nothing fires or moves down before the first non-empty level's next slot comes due
+            int emptyLevels = 0;
+            while (levelSizes[emptyLevels] == 0)
+                emptyLevels++;
+            if (emptyLevels > 0) {
+                long nextDue = ((currentTick >>> (SLOT_BITS * emptyLevels)) + 1) << (SLOT_BITS * emptyLevels);
+                currentTick = Math.min(nextDue - 1, targetTick);
+                if (currentTick == targetTick)
+                    break;
+            }
+
+            currentTick++;
+            cascade();
+
+            Timeout<T> head = slots[0][(int) (currentTick & SLOT_MASK)];
+            for (Timeout<T> timeout = head.next; timeout != head; ) {
+                Timeout<T> next = timeout.next;
+                unlink(timeout);
+                fired++;
+                expired.accept(timeout.payload);
+                timeout = next;
+            }
+        }
+        return fired;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public long getCurrentMillis() {
+        return currentTick * tickMillis;
+    }
+
+    // When a level's slot index wraps to zero, the next slot of the level above is due and moves down a level
+    private void cascade() {
+        for (int level = 1; level < LEVELS; level++) {
+            if (((currentTick >>> (SLOT_BITS * (level - 1))) & SLOT_MASK) != 0)
+                return;
+
+            Timeout<T> head = slots[level][(int) ((currentTick >>> (SLOT_BITS * level)) & SLOT_MASK)];
+            for (Timeout<T> timeout = head.next; timeout != head; ) {
+                Timeout<T> next = timeout.next;
+                unlink(timeout);
+                place(timeout, currentTick);
+                timeout = next;
+            }
+        }
+    }
+
+    // Entries moving down may be due on the current tick, whose slot is about to fire; new ones go to the next
+    private void place(Timeout<T> timeout, long earliestTick) {
+        long tick = Math.max(timeout.deadlineTick, earliestTick);
+        long delta = Math.min(tick - currentTick, MAX_DELTA);
+        tick = currentTick + delta;
+
+        int level = 0;
+        while (delta >= (1L << (SLOT_BITS * (level + 1))))
+            level++;
+        timeout.level = level;
+        timeout.linkBefore(slots[level][(int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK)]);
+        levelSizes[level]++;
+        size++;
+    }
+
+    private void unlink(Timeout<T> timeout) {
+        timeout.unlink();
+        levelSizes[timeout.level]--;
+        size--;
+    }
+
+    /**
+     * A scheduled payload. Each one is a node of the doubly linked list of its slot, which is what lets
+     * {@link #cancel(Timeout)} remove it without a search.
+     */
+    public static final class Timeout<T> {
+        private final T payload;
+        private final long deadlineMillis;
+        private final long deadlineTick;
+        private int level;
+        private Timeout<T> prev;
+        private Timeout<T> next;
+
+        private Timeout(T payload, long deadlineMillis, long deadlineTick) {
+            this.payload = payload;
+            this.deadlineMillis = deadlineMillis;
+            this.deadlineTick = deadlineTick;
+        }
+
+        private static <T> Timeout<T> sentinel() {
+            Timeout<T> head = new Timeout<>(null, 0, 0);
+            head.prev = head;
+            head.next = head;
+            return head;
+        }
+
+        public T payload() {
+            return payload;
+        }
+
+        public long deadlineMillis() {
+            return deadlineMillis;
+        }
+
+        public boolean isPending() {
+            return next != null;
+        }
+
+        private void linkBefore(Timeout<T> head) {
+            prev = head.prev;
+            next = head;
+            head.prev.next = this;
+            head.prev = this;
+        }
+
+        private void unlink() {
+            prev.next = next;
+            next.prev = prev;
+            prev = null;
+            next = null;
+        }
+    }
+}